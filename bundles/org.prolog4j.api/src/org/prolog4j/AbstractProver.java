@@ -26,6 +26,12 @@ package org.prolog4j;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Serves as base class for prover implementation.
@@ -36,6 +42,15 @@ public abstract class AbstractProver implements Prover, Serializable {
 	
 	/** The conversion policy of the prover. */
 	private final ConversionPolicy conversionPolicy;
+
+	/** The executor that solves goals asynchronously, null for the default. */
+	private transient volatile Executor executor;
+
+	/** The queries of the goals solved by the prover, created on first use. */
+	private transient volatile QueryCache queryCache;
+
+	/** The cache of the answers of the solved goals, null if disabled. */
+	private transient volatile AnswerCache answerCache;
 	
 	public AbstractProver(ConversionPolicy conversionPolicy) {
 		this.conversionPolicy = conversionPolicy;
@@ -43,19 +58,249 @@ public abstract class AbstractProver implements Prover, Serializable {
 
 	@Override
 	public final <A> Solution<A> solve(String goal, Object... actualArgs) {
+		checkGoal(goal);
+		AnswerCache cache = getCheckedAnswerCache();
+		if (cache == null) {
+			return cachedQuery(goal).solve(actualArgs);
+		}
+		if (AnswerCache.mayModify(goal)) {
+			try {
+				return cachedQuery(goal).solve(actualArgs);
+			} finally {
+				cache.invalidate();
+			}
+		}
+		List<Map<String, Object>> answers = cache.lookup(goal, actualArgs);
+		if (answers != null) {
+			return new CachedSolution<A>(conversionPolicy, answers);
+		}
+		long generation = cache.getGeneration();
+		return cacheAnswers(cache, goal, actualArgs, generation, cachedQuery(goal).<A>solve(actualArgs));
+	}
+
+	@Override
+	public <A> CompletableFuture<Solution<A>> solveAsync(String goal, Object... actualArgs) {
+		AnswerCache cache = getCheckedAnswerCache();
+		Query query;
+		try {
+			checkGoal(goal);
+			if (cache != null && !AnswerCache.mayModify(goal)) {
+				List<Map<String, Object>> answers = cache.lookup(goal, actualArgs);
+				if (answers != null) {
+					return CompletableFuture.completedFuture(new CachedSolution<A>(conversionPolicy, answers));
+				}
+			}
+			query = cachedQuery(goal);
+		} catch (RuntimeException e) {
+			CompletableFuture<Solution<A>> future = new CompletableFuture<Solution<A>>();
+			future.completeExceptionally(e);
+			return future;
+		}
+		// the query is shared by all callers of the goal, so the executor is passed per call
+		Executor callExecutor = executor == null ? ProverExecutors.defaultExecutor() : executor;
+		CompletableFuture<Solution<A>> future = query.solveAsync(callExecutor, actualArgs);
+		if (cache == null) {
+			return future;
+		}
+		if (AnswerCache.mayModify(goal)) {
+			return future.whenComplete((solution, error) -> cache.invalidate());
+		}
+		long generation = cache.getGeneration();
+		CompletableFuture<Solution<A>> cachingFuture = future
+				.thenApply(solution -> cacheAnswers(cache, goal, actualArgs, generation, solution));
+		cachingFuture.whenComplete((solution, error) -> {
+			if (cachingFuture.isCancelled()) {
+				future.cancel(false);
+			}
+		});
+		return cachingFuture;
+	}
+
+	/**
+	 * Searches for all solutions of a goal and stores their answers in the
+	 * answer cache.
+	 * 
+	 * @param <A> the type of an element of the solutions
+	 * @param cache the answer cache
+	 * @param goal the goal
+	 * @param actualArgs the actual arguments of the goal
+	 * @param generation the generation of the cache before the goal has been
+	 *            solved
+	 * @param solution the solutions of the goal
+	 * @return the cached solutions, or the given solutions if they cannot be
+	 *         cached
+	 */
+	private <A> Solution<A> cacheAnswers(AnswerCache cache, String goal, Object[] actualArgs, long generation,
+			Solution<A> solution) {
+		Map<String, Object> bindings = solution.getBindings();
+		if (bindings == null) {
+			return solution;
+		}
+		List<Map<String, Object>> answers = new ArrayList<Map<String, Object>>();
+		if (solution.isSuccess()) {
+			do {
+				answers.add(solution.getBindings());
+			} while (solution.fetch());
+		}
+		return new CachedSolution<A>(conversionPolicy,
+				cache.store(goal, actualArgs, generation, answers));
+	}
+
+	@Override
+	public void setAnswerCache(AnswerCache cache) {
+		this.answerCache = cache;
+	}
+
+	@Override
+	public AnswerCache getAnswerCache() {
+		return answerCache;
+	}
+
+	/**
+	 * Returns the answer cache after invalidating it if a converter has been
+	 * registered since the answers have been cached.
+	 * 
+	 * @return the answer cache or null if caching is disabled
+	 */
+	private AnswerCache getCheckedAnswerCache() {
+		AnswerCache cache = answerCache;
+		if (cache != null) {
+			cache.checkConversions(conversionPolicy.getVersion());
+		}
+		return cache;
+	}
+
+	/**
+	 * Invalidates the answer cache, because the knowledge base has been
+	 * modified. Implementations call this method whenever they modify the
+	 * knowledge base.
+	 */
+	protected void invalidateAnswers() {
+		AnswerCache cache = answerCache;
+		if (cache != null) {
+			cache.invalidate();
+		}
+	}
+
+	@Override
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Solves the goals one after the other. Errors are caught per goal and
+	 * returned as {@link ErrorSolution}.
+	 */
+	@Override
+	public <A> List<Solution<A>> solveBatch(List<BoundGoal> goals) {
+		List<Solution<A>> solutions = new ArrayList<Solution<A>>(goals.size());
+		for (BoundGoal goal : goals) {
+			try {
+				solutions.add(this.<A>solve(goal.getGoal(), goal.getActualArgs()));
+			} catch (RuntimeException e) {
+				solutions.add(new ErrorSolution<A>(e));
+			}
+		}
+		return solutions;
+	}
+
+	/**
+	 * Returns the cache of the queries of the goals solved by
+	 * {@link #solve(String, Object...)}, {@link #solveAsync(String, Object...)}
+	 * and {@link #solveBatch(List)}.
+	 * 
+	 * @return the query cache
+	 */
+	public QueryCache getQueryCache() {
+		QueryCache cache = queryCache;
+		if (cache == null) {
+			synchronized (this) {
+				cache = queryCache;
+				if (cache == null) {
+					cache = new QueryCache(QueryCache.DEFAULT_CAPACITY);
+					queryCache = cache;
+				}
+			}
+		}
+		return cache;
+	}
+
+	/**
+	 * Returns the query of a goal from the query cache, so that the goal is
+	 * not parsed again. The query must not be bound explicitly.
+	 * 
+	 * @param goal the Prolog goal
+	 * @return the query
+	 */
+	protected Query cachedQuery(String goal) {
+		return getQueryCache().get(goal, this::query);
+	}
+
+	/**
+	 * Checks whether a goal may be solved by {@link #solve(String, Object...)}.
+	 * 
+	 * @param goal the Prolog goal
+	 * @throws InvalidQueryException if the goal is not terminated by a period
+	 * @throws IllegalArgumentException if the goal asserts a fact
+	 */
+	protected void checkGoal(String goal) {
 	    if (!goal.endsWith(".")) {
 	        throw new InvalidQueryException(goal);
 	    }
 	    if (goal.trim().startsWith("assertz")) {
 	        throw new IllegalArgumentException("Dynamic assertion only supported via dedicated method.");
 	    }
-		return query(goal).solve(actualArgs);
 	}
 
 	@Override
 	public void assertz(String fact, Object... args) {
 		Query q = query("assertz(" + fact.substring(0, fact.lastIndexOf('.')) + ").");
 		q.solve(args);
+		invalidateAnswers();
+	}
+
+	@Override
+	public void assertz(Compound fact) {
+		assertAll(fact.getFunctor(), Collections.singletonList(fact.getArgs()));
+	}
+
+	/**
+	 * Asserts the facts one after the other by
+	 * {@link #assertz(String, Object...)}, with a placeholder for every
+	 * argument. Implementations should override this method to add the facts
+	 * without parsing them.
+	 */
+	@Override
+	public void assertAll(String functor, Iterable<Object[]> rows) {
+		for (Object[] row : rows) {
+			StringBuilder fact = new StringBuilder(functor);
+			for (int i = 0; i < row.length; ++i) {
+				fact.append(i == 0 ? "(?" : ", ?");
+			}
+			fact.append(row.length == 0 ? "." : ").");
+			assertz(fact.toString(), row);
+		}
+	}
+
+	/**
+	 * Does nothing, so the facts of the predicate are kept in the knowledge
+	 * base. Implementations should override this method if the Prolog system
+	 * does not index the facts on all their arguments itself.
+	 */
+	@Override
+	public void declareStored(String functor, int arity, int[]... indexes) {
+	}
+
+	/**
+	 * Declares the predicate of the table as stored and asserts the facts of
+	 * the table by {@link #assertAll(String, Iterable)}. Implementations
+	 * should override this method to read the facts from the table directly.
+	 */
+	@Override
+	public void addTable(ColumnarTable table, int[]... indexes) {
+		table.setReadOnly();
+		declareStored(table.getFunctor(), table.getArity(), indexes);
+		assertAll(table.getFunctor(), table.rows());
 	}
 
 	@Override
@@ -66,6 +311,7 @@ public abstract class AbstractProver implements Prover, Serializable {
 			lastDot = length;
 		}
 		query("retract(" + fact.substring(0, lastDot) + ").").solve();
+		invalidateAnswers();
 	}
 
 	@Override
@@ -0,0 +1,352 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Caches the answers of goals of a prover by the goal and its actual
+ * arguments. All solutions of a goal are searched for and kept as terms when
+ * the goal is solved the first time, so solving it again neither requires the
+ * Prolog engine nor parsing the answers. The cache is enabled by
+ * {@link Prover#setAnswerCache(AnswerCache)}.
+ * <p>
+ * The least recently used answers are evicted if the number of cached goals
+ * or the total weight of the answers exceeds its limit. The weight of the
+ * answers of a goal is the number of their variable bindings plus the number
+ * of answers. Every modification of the knowledge base through the prover
+ * invalidates all cached answers, because the answers of a goal may depend on
+ * any predicate. Registering a converter in the conversion policy of the
+ * prover invalidates them as well, because the actual arguments may be
+ * converted to different terms afterwards.
+ * <p>
+ * Goals whose text mentions <code>assert</code>, <code>retract</code> or
+ * <code>abolish</code> are never cached and invalidate the cache. This is
+ * only a textual check: a goal that modifies the knowledge base through a
+ * predicate of another name is cached like any other goal. The tuProlog
+ * provers notice such modifications and invalidate the cache, so the answers
+ * of the modifying goal itself are not stored either. Other provers do not,
+ * so goals of such predicates must not be solved while the cache is enabled,
+ * or {@link #invalidate()} has to be called after solving them.
+ * <p>
+ * Goals must have finitely many solutions to be cached. Their actual
+ * arguments are compared by {@link Object#equals(Object)}, so they must not
+ * be modified while their answers are cached.
+ */
+public final class AnswerCache {
+
+	/** The key of the answers of a goal. */
+	private static final class Key {
+
+		/** The goal. */
+		private final String goal;
+
+		/** The actual arguments of the goal. */
+		private final Object[] actualArgs;
+
+		/** The hash code of the key. */
+		private final int hashCode;
+
+		/**
+		 * Creates a key.
+		 * 
+		 * @param goal the goal
+		 * @param actualArgs the actual arguments of the goal
+		 */
+		Key(String goal, Object[] actualArgs) {
+			this.goal = goal;
+			this.actualArgs = actualArgs.clone();
+			this.hashCode = 31 * goal.hashCode() + Arrays.deepHashCode(actualArgs);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return hashCode == other.hashCode && goal.equals(other.goal)
+					&& Arrays.deepEquals(actualArgs, other.actualArgs);
+		}
+
+	}
+
+	/** The cached answers of a goal. */
+	private static final class Entry {
+
+		/** The bindings of the answers. */
+		private final List<Map<String, Object>> answers;
+
+		/** The weight of the answers. */
+		private final long weight;
+
+		/**
+		 * Creates an entry.
+		 * 
+		 * @param answers the bindings of the answers
+		 */
+		Entry(List<Map<String, Object>> answers) {
+			this.answers = answers;
+			long answersWeight = answers.size();
+			for (Map<String, Object> answer : answers) {
+				answersWeight += answer.size();
+			}
+			this.weight = answersWeight;
+		}
+
+	}
+
+	/** The answers by goal and actual arguments in the order of their last use. */
+	private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+	/** The maximum number of cached goals. */
+	private final int maxEntries;
+
+	/** The maximum total weight of the cached answers. */
+	private final long maxWeight;
+
+	/** The total weight of the cached answers. */
+	private long weight;
+
+	/** Counts the invalidations, so that outdated answers are not stored. */
+	private long generation;
+
+	/** The number of goals whose answers have been found in the cache. */
+	private long hits;
+
+	/** The number of goals whose answers have not been found in the cache. */
+	private long misses;
+
+	/** The number of evicted goals. */
+	private long evictions;
+
+	/** The number of invalidations. */
+	private long invalidations;
+
+	/** The version of the conversion policy of the cached answers, -1 if unknown. */
+	private long conversionVersion = -1;
+
+	/**
+	 * Creates an answer cache.
+	 * 
+	 * @param maxEntries the maximum number of cached goals
+	 * @param maxWeight the maximum total weight of the cached answers
+	 */
+	public AnswerCache(int maxEntries, long maxWeight) {
+		if (maxEntries < 0 || maxWeight < 0) {
+			throw new IllegalArgumentException("The limits must not be negative.");
+		}
+		this.maxEntries = maxEntries;
+		this.maxWeight = maxWeight;
+	}
+
+	/**
+	 * Decides whether a goal may modify the knowledge base, so that its
+	 * answers must not be cached. Only the text of the goal is checked, see
+	 * the limitations above.
+	 * 
+	 * @param goal the goal
+	 * @return true if the goal mentions asserting or retracting clauses
+	 */
+	static boolean mayModify(String goal) {
+		return goal.contains("assert") || goal.contains("retract") || goal.contains("abolish");
+	}
+
+	/**
+	 * Invalidates the answers if a converter has been registered in the
+	 * conversion policy since they have been cached.
+	 * 
+	 * @param version the current version of the conversion policy
+	 * @see ConversionPolicy#getVersion()
+	 */
+	synchronized void checkConversions(long version) {
+		if (conversionVersion != version) {
+			if (conversionVersion != -1) {
+				invalidate();
+			}
+			conversionVersion = version;
+		}
+	}
+
+	/**
+	 * Returns the cached answers of a goal.
+	 * 
+	 * @param goal the goal
+	 * @param actualArgs the actual arguments of the goal
+	 * @return the bindings of the answers or null if they are not cached
+	 */
+	synchronized List<Map<String, Object>> lookup(String goal, Object[] actualArgs) {
+		Entry entry = entries.get(new Key(goal, actualArgs));
+		if (entry == null) {
+			++misses;
+			return null;
+		}
+		++hits;
+		return entry.answers;
+	}
+
+	/**
+	 * Returns the number of invalidations so far. The answers of a goal that
+	 * has been solved before an invalidation are not stored.
+	 * 
+	 * @return the generation of the cache
+	 */
+	synchronized long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Stores the answers of a goal unless the cache has been invalidated while
+	 * the goal has been solved.
+	 * 
+	 * @param goal the goal
+	 * @param actualArgs the actual arguments of the goal
+	 * @param solvedGeneration the generation before the goal has been solved
+	 * @param answers the bindings of the answers
+	 * @return the answers as they are cached
+	 */
+	synchronized List<Map<String, Object>> store(String goal, Object[] actualArgs, long solvedGeneration,
+			List<Map<String, Object>> answers) {
+		List<Map<String, Object>> cachedAnswers = Collections.unmodifiableList(answers);
+		Entry entry = new Entry(cachedAnswers);
+		if (solvedGeneration != generation || entry.weight > maxWeight || maxEntries == 0) {
+			return cachedAnswers;
+		}
+		Entry previous = entries.put(new Key(goal, actualArgs), entry);
+		if (previous != null) {
+			weight -= previous.weight;
+		}
+		weight += entry.weight;
+		Iterator<Entry> eldest = entries.values().iterator();
+		while (entries.size() > maxEntries || weight > maxWeight) {
+			weight -= eldest.next().weight;
+			eldest.remove();
+			++evictions;
+		}
+		return cachedAnswers;
+	}
+
+	/**
+	 * Removes all answers, because the knowledge base has been modified.
+	 */
+	public synchronized void invalidate() {
+		entries.clear();
+		weight = 0;
+		++generation;
+		++invalidations;
+	}
+
+	/**
+	 * Removes all answers and resets the statistics.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+		++generation;
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+		invalidations = 0;
+	}
+
+	/**
+	 * Returns the number of goals whose answers are cached.
+	 * 
+	 * @return the number of cached goals
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Returns the total weight of the cached answers.
+	 * 
+	 * @return the total weight
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	/**
+	 * Returns the number of goals whose answers have been found in the cache.
+	 * 
+	 * @return the number of cache hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of goals whose answers have not been found in the
+	 * cache.
+	 * 
+	 * @return the number of cache misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the ratio of the hits to all lookups.
+	 * 
+	 * @return the hit rate, 0 if there has been no lookup
+	 */
+	public synchronized double getHitRate() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Returns the number of goals whose answers have been evicted to keep the
+	 * limits.
+	 * 
+	 * @return the number of evictions
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the number of invalidations.
+	 * 
+	 * @return the number of invalidations
+	 */
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+}
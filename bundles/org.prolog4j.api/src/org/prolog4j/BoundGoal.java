@@ -0,0 +1,74 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.Arrays;
+
+/**
+ * A Prolog goal together with the actual arguments of its placeholders. Bound
+ * goals are solved together by {@link Prover#solveBatch(java.util.List)}.
+ */
+public final class BoundGoal {
+
+	/** The Prolog goal. */
+	private final String goal;
+
+	/** The actual arguments of the goal. */
+	private final Object[] actualArgs;
+
+	/**
+	 * Creates a bound goal.
+	 * 
+	 * @param goal the Prolog goal
+	 * @param actualArgs the actual arguments of the goal
+	 */
+	public BoundGoal(String goal, Object... actualArgs) {
+		this.goal = goal;
+		this.actualArgs = actualArgs.clone();
+	}
+
+	/**
+	 * Returns the Prolog goal.
+	 * 
+	 * @return the Prolog goal
+	 */
+	public String getGoal() {
+		return goal;
+	}
+
+	/**
+	 * Returns the actual arguments of the goal.
+	 * 
+	 * @return a copy of the actual arguments
+	 */
+	public Object[] getActualArgs() {
+		return actualArgs.clone();
+	}
+
+	@Override
+	public String toString() {
+		return goal + " " + Arrays.toString(actualArgs);
+	}
+
+}
@@ -0,0 +1,144 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays the answers of a goal kept by an {@link AnswerCache}. The terms of
+ * the answers are converted by the conversion policy of the prover on access.
+ * 
+ * @param <S> the type of the values of the variable of interest
+ */
+final class CachedSolution<S> extends Solution<S> {
+
+	/** The conversion policy of the prover. */
+	private final ConversionPolicy cp;
+
+	/** The bindings of the answers. */
+	private final List<Map<String, Object>> answers;
+
+	/** The index of the current answer. */
+	private int index;
+
+	/**
+	 * Creates the solutions. The last variable of the goal is the variable of
+	 * interest.
+	 * 
+	 * @param cp the conversion policy of the prover
+	 * @param answers the bindings of the answers
+	 */
+	CachedSolution(ConversionPolicy cp, List<Map<String, Object>> answers) {
+		this.cp = cp;
+		this.answers = answers;
+		if (!answers.isEmpty()) {
+			String lastVariable = null;
+			for (String variable : answers.get(0).keySet()) {
+				lastVariable = variable;
+			}
+			if (lastVariable != null) {
+				on(lastVariable);
+			}
+		}
+	}
+
+	@Override
+	public boolean isSuccess() {
+		return !answers.isEmpty();
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public <A> A get(String variable) {
+		if (clazz != null) {
+			return (A) get(variable, clazz);
+		}
+		return (A) cp.convertTerm(getTerm(variable));
+	}
+
+	@Override
+	public <A> A get(String variable, Class<A> type) {
+		return cp.convertTerm(getTerm(variable), type);
+	}
+
+	@Override
+	protected boolean fetch() {
+		if (index + 1 >= answers.size()) {
+			return false;
+		}
+		++index;
+		return true;
+	}
+
+	@Override
+	protected Map<String, Object> getBindings() {
+		return answers.get(index);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public void collect(Collection<?>... collections) {
+		if (answers.isEmpty()) {
+			return;
+		}
+		for (int i = index; i < answers.size(); ++i) {
+			int variableIndex = 0;
+			for (Object term : answers.get(i).values()) {
+				if (variableIndex >= collections.length) {
+					break;
+				}
+				((Collection<Object>) collections[variableIndex++]).add(cp.convertTerm(term));
+			}
+		}
+	}
+
+	@Override
+	public List<?>[] toLists() {
+		int variables = answers.isEmpty() ? 0 : answers.get(0).size();
+		List<?>[] lists = new List<?>[variables];
+		for (int i = 0; i < variables; ++i) {
+			lists[i] = new ArrayList<Object>();
+		}
+		collect(lists);
+		return lists;
+	}
+
+	/**
+	 * Returns the term bound to a variable by the current answer.
+	 * 
+	 * @param variable the name of the variable
+	 * @return the term
+	 * @throws UnknownVariableException if the variable is not bound
+	 */
+	private Object getTerm(String variable) {
+		if (answers.isEmpty() || !answers.get(index).containsKey(variable)) {
+			throw new UnknownVariableException(variable);
+		}
+		return answers.get(index).get(variable);
+	}
+
+}
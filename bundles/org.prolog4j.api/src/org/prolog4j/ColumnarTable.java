@@ -0,0 +1,450 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A table of ground Prolog facts of the same functor, stored column by column
+ * outside of the Java heap. Every argument position is a column of a fixed
+ * {@link ColumnType}: atoms are encoded as indexes into a dictionary of the
+ * distinct atoms of the table, integers and floats are stored as primitive
+ * 64-bit values.
+ * <p>
+ * The columns are kept in chunks of {@link #CHUNK_ROWS} facts, either in
+ * direct byte buffers or in consecutive regions of a memory-mapped file, so
+ * the heap only holds the dictionary of atoms no matter how many facts the
+ * table holds. A mapped file is just the backing store of the table and is
+ * overwritten when the table is created.
+ * <p>
+ * Facts are appended by a single thread at a time, while any number of
+ * threads may read the facts appended so far. A table is added to the
+ * knowledge base of a prover by {@link Prover#addTable(ColumnarTable, int[]...)},
+ * which makes it read-only, so that every prover sees the same facts.
+ */
+public class ColumnarTable implements AutoCloseable {
+
+	/** The type of the arguments in a column of a table. */
+	public enum ColumnType {
+
+		/** Atoms, given as strings and encoded by the dictionary of the table. */
+		ATOM(Integer.BYTES),
+
+		/** Integers in the range of <code>long</code>. */
+		INTEGER(Long.BYTES),
+
+		/** Floating point numbers in the range of <code>double</code>. */
+		FLOAT(Double.BYTES);
+
+		private final int width;
+
+		ColumnType(int width) {
+			this.width = width;
+		}
+
+		/**
+		 * Returns the number of bytes an argument of the type takes.
+		 * 
+		 * @return the width in bytes
+		 */
+		public int getWidth() {
+			return width;
+		}
+	}
+
+	/** The number of facts stored in a chunk. */
+	public static final int CHUNK_ROWS = 1 << 16;
+
+	/** The functor of the facts. */
+	private final String functor;
+
+	/** The types of the columns. */
+	private final ColumnType[] types;
+
+	/** The offsets of the columns within a chunk. */
+	private final int[] offsets;
+
+	/** The size of a chunk in bytes. */
+	private final int chunkBytes;
+
+	/** The file the chunks are mapped from, <code>null</code> for direct buffers. */
+	private final FileChannel channel;
+
+	/** The chunks holding the columns, replaced by a larger array when full. */
+	private volatile ByteBuffer[] chunks = new ByteBuffer[0];
+
+	/** The distinct atoms by their codes, replaced by a larger array when full. */
+	private volatile String[] atoms = new String[16];
+
+	/** The codes of the distinct atoms. */
+	private final Map<String, Integer> atomCodes = new HashMap<String, Integer>();
+
+	/** The number of facts. Written after the facts, so readers see complete facts only. */
+	private volatile int size = 0;
+
+	/** Whether facts can no longer be appended. */
+	private volatile boolean readOnly = false;
+
+	/**
+	 * Creates an empty table in direct byte buffers.
+	 * 
+	 * @param functor the functor of the facts
+	 * @param types the types of the arguments of the facts
+	 */
+	public ColumnarTable(String functor, ColumnType... types) {
+		this(functor, types, null);
+	}
+
+	private ColumnarTable(String functor, ColumnType[] types, FileChannel channel) {
+		if (types.length == 0) {
+			throw new IllegalArgumentException("A table must have at least one column.");
+		}
+		this.functor = functor;
+		this.types = types.clone();
+		this.offsets = new int[types.length];
+		int offset = 0;
+		for (int i = 0; i < types.length; ++i) {
+			offsets[i] = offset;
+			offset += types[i].getWidth() * CHUNK_ROWS;
+		}
+		this.chunkBytes = offset;
+		this.channel = channel;
+	}
+
+	/**
+	 * Creates an empty table in a memory-mapped file. The content of the file
+	 * is discarded.
+	 * 
+	 * @param file the file
+	 * @param functor the functor of the facts
+	 * @param types the types of the arguments of the facts
+	 * @return the table
+	 * @throws IOException if the file cannot be opened
+	 */
+	public static ColumnarTable mapped(Path file, String functor, ColumnType... types) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		return new ColumnarTable(functor, types, channel);
+	}
+
+	/**
+	 * Returns the functor of the facts.
+	 * 
+	 * @return the functor
+	 */
+	public String getFunctor() {
+		return functor;
+	}
+
+	/**
+	 * Returns the arity of the facts, which is the number of columns.
+	 * 
+	 * @return the arity
+	 */
+	public int getArity() {
+		return types.length;
+	}
+
+	/**
+	 * Returns the type of a column.
+	 * 
+	 * @param column the position of the argument, starting from zero
+	 * @return the type
+	 */
+	public ColumnType getType(int column) {
+		return types[column];
+	}
+
+	/**
+	 * Returns the number of facts.
+	 * 
+	 * @return the number of facts
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Appends a fact. Atoms must be given as strings, integers as integral
+	 * numbers up to {@link Long} and floats as numbers.
+	 * 
+	 * @param args the arguments of the fact
+	 * @throws IllegalArgumentException if the number or the types of the
+	 *             arguments do not match the columns
+	 * @throws IllegalStateException if the table is read-only
+	 */
+	public synchronized void add(Object... args) {
+		if (readOnly) {
+			throw new IllegalStateException("The table " + functor + "/" + types.length + " is read-only.");
+		}
+		if (args.length != types.length) {
+			throw new IllegalArgumentException("Expected " + types.length + " arguments, got " + args.length + ".");
+		}
+		int row = size;
+		if (row == Integer.MAX_VALUE) {
+			throw new IllegalStateException("The table is full.");
+		}
+		// the arguments are checked before anything is written
+		long[] values = new long[args.length];
+		for (int i = 0; i < args.length; ++i) {
+			values[i] = encode(i, args[i]);
+		}
+		ByteBuffer chunk = chunkForWriting(row / CHUNK_ROWS);
+		int index = row % CHUNK_ROWS;
+		for (int i = 0; i < types.length; ++i) {
+			int position = offsets[i] + index * types[i].getWidth();
+			if (types[i] == ColumnType.ATOM) {
+				chunk.putInt(position, (int) values[i]);
+			} else {
+				chunk.putLong(position, values[i]);
+			}
+		}
+		size = row + 1;
+	}
+
+	/**
+	 * Makes the table read-only. Facts appended before are complete when this
+	 * method returns, so {@link #size()} does not change any more.
+	 */
+	public synchronized void setReadOnly() {
+		readOnly = true;
+	}
+
+	/**
+	 * Determines if facts can no longer be appended.
+	 * 
+	 * @return <code>true</code> if the table is read-only
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * Encodes an argument as the bits stored in its column. New atoms are
+	 * added to the dictionary.
+	 */
+	private long encode(int column, Object arg) {
+		switch (types[column]) {
+		case ATOM:
+			if (!(arg instanceof String)) {
+				throw new IllegalArgumentException("Not an atom in column " + column + ": " + arg);
+			}
+			return encodeAtom((String) arg);
+		case INTEGER:
+			if (!(arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte)) {
+				throw new IllegalArgumentException("Not an integer in column " + column + ": " + arg);
+			}
+			return ((Number) arg).longValue();
+		default:
+			if (!(arg instanceof Number)) {
+				throw new IllegalArgumentException("Not a float in column " + column + ": " + arg);
+			}
+			return Double.doubleToRawLongBits(((Number) arg).doubleValue());
+		}
+	}
+
+	private int encodeAtom(String atom) {
+		Integer code = atomCodes.get(atom);
+		if (code == null) {
+			code = atomCodes.size();
+			String[] currentAtoms = atoms;
+			if (code == currentAtoms.length) {
+				currentAtoms = Arrays.copyOf(currentAtoms, code * 2);
+			}
+			currentAtoms[code] = atom;
+			atoms = currentAtoms;
+			atomCodes.put(atom, code);
+		}
+		return code;
+	}
+
+	private ByteBuffer chunkForWriting(int chunkIndex) {
+		ByteBuffer[] currentChunks = chunks;
+		if (chunkIndex < currentChunks.length) {
+			return currentChunks[chunkIndex];
+		}
+		ByteBuffer chunk;
+		if (channel == null) {
+			chunk = ByteBuffer.allocateDirect(chunkBytes);
+		} else {
+			try {
+				chunk = channel.map(FileChannel.MapMode.READ_WRITE, (long) chunkIndex * chunkBytes, chunkBytes);
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not extend the mapped file.", e);
+			}
+		}
+		ByteBuffer[] newChunks = Arrays.copyOf(currentChunks, chunkIndex + 1);
+		newChunks[chunkIndex] = chunk;
+		chunks = newChunks;
+		return chunk;
+	}
+
+	/**
+	 * Returns the code of an atom in the dictionary of the table.
+	 * 
+	 * @param atom the atom
+	 * @return the code or -1 if no fact of the table has the atom as argument
+	 */
+	public synchronized int getAtomCode(String atom) {
+		Integer code = atomCodes.get(atom);
+		return code == null ? -1 : code;
+	}
+
+	/**
+	 * Returns the code of an atom argument.
+	 * 
+	 * @param row the position of the fact
+	 * @param column the position of the argument, which must be of type
+	 *            {@link ColumnType#ATOM}
+	 * @return the code of the atom
+	 */
+	public int getAtomCode(int row, int column) {
+		return chunk(row).getInt(offsets[column] + (row % CHUNK_ROWS) * Integer.BYTES);
+	}
+
+	/**
+	 * Returns an atom argument.
+	 * 
+	 * @param row the position of the fact
+	 * @param column the position of the argument, which must be of type
+	 *            {@link ColumnType#ATOM}
+	 * @return the atom
+	 */
+	public String getAtom(int row, int column) {
+		int code = getAtomCode(row, column);
+		return atoms[code];
+	}
+
+	/**
+	 * Returns an integer argument.
+	 * 
+	 * @param row the position of the fact
+	 * @param column the position of the argument, which must be of type
+	 *            {@link ColumnType#INTEGER}
+	 * @return the integer
+	 */
+	public long getLong(int row, int column) {
+		return chunk(row).getLong(offsets[column] + (row % CHUNK_ROWS) * Long.BYTES);
+	}
+
+	/**
+	 * Returns a float argument.
+	 * 
+	 * @param row the position of the fact
+	 * @param column the position of the argument, which must be of type
+	 *            {@link ColumnType#FLOAT}
+	 * @return the float
+	 */
+	public double getDouble(int row, int column) {
+		return Double.longBitsToDouble(chunk(row).getLong(offsets[column] + (row % CHUNK_ROWS) * Double.BYTES));
+	}
+
+	/**
+	 * Returns an argument as a {@link String}, {@link Long} or {@link Double}
+	 * depending on the type of its column.
+	 * 
+	 * @param row the position of the fact
+	 * @param column the position of the argument
+	 * @return the argument
+	 */
+	public Object get(int row, int column) {
+		switch (types[column]) {
+		case ATOM:
+			return getAtom(row, column);
+		case INTEGER:
+			return getLong(row, column);
+		default:
+			return getDouble(row, column);
+		}
+	}
+
+	/**
+	 * Returns the arguments of a fact.
+	 * 
+	 * @param row the position of the fact
+	 * @return the arguments as returned by {@link #get(int, int)}
+	 */
+	public Object[] getRow(int row) {
+		Object[] args = new Object[types.length];
+		for (int i = 0; i < args.length; ++i) {
+			args[i] = get(row, i);
+		}
+		return args;
+	}
+
+	/**
+	 * Returns the arguments of the facts one after the other, e.g. for
+	 * {@link Prover#assertAll(String, Iterable)}. The arguments are decoded
+	 * while iterating.
+	 * 
+	 * @return the arguments of the facts as returned by {@link #getRow(int)}
+	 */
+	public Iterable<Object[]> rows() {
+		return () -> new Iterator<Object[]>() {
+			private final int end = size;
+			private int row = 0;
+
+			@Override
+			public boolean hasNext() {
+				return row < end;
+			}
+
+			@Override
+			public Object[] next() {
+				if (row >= end) {
+					throw new NoSuchElementException();
+				}
+				return getRow(row++);
+			}
+		};
+	}
+
+	private ByteBuffer chunk(int row) {
+		if (row < 0 || row >= size) {
+			throw new IndexOutOfBoundsException("No fact " + row + " in a table of " + size + " facts.");
+		}
+		return chunks[row / CHUNK_ROWS];
+	}
+
+	/**
+	 * Closes the mapped file, if any. The facts stay readable until the table
+	 * is garbage collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+	}
+
+}
@@ -24,6 +24,7 @@
 package org.prolog4j;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -62,32 +63,44 @@ import java.util.Map;
  * superclasses and the implemented interfaces are looked for, recursively. If
  * none found and there is no default way of conversion, then an exception is
  * thrown.
+ * <p>
+ * A policy can be shared by threads and provers. Terms and objects are
+ * converted without taking any lock, because the converters are looked up in
+ * registries that are never modified once published. Converters can be
+ * registered at any time: a registration publishes a new copy of the registry,
+ * and conversions that have already started keep using the previous one.
  * 
  * @see Converter
  */
 public abstract class ConversionPolicy {
 
+	/*
+	 * The registries are copied on write and never modified after they have
+	 * been published, so that terms and objects can be converted by any number
+	 * of threads while converters are being registered.
+	 */
+
 	/**
 	 * Stores the converters for transforming terms to regular objects. The keys of
 	 * the map are the patterns. If a pattern matches a term then its converter can
 	 * be applied.
 	 */
-	private HashMap<Class<?>, Converter<?>> termConverters = new HashMap<Class<?>, Converter<?>>();
+	private volatile Map<Class<?>, Converter<?>> termConverters = Collections.emptyMap();
 
 	/**
-	 * Represents the reverse insertion order of the keys to
-	 * {@link #termConverters}. (Note that LinkedHashMap is not suitable for two
-	 * reasons. At first, it cannot be iterated through reversely, at second the
-	 * insertion order is not affected if a key is re-inserted into the map.)
+	 * Stores the converters for atoms and compound terms by their name or functor.
 	 */
-	private Map<String, Converter<Object>> termPatterns = new HashMap<String, Converter<Object>>();
+	private volatile Map<String, Converter<Object>> termPatterns = Collections.emptyMap();
 
 	/**
 	 * Stores the converters for transforming regular objects to terms. The keys of
 	 * the map are the patterns. If a pattern matches an object then its converter
 	 * can be applied.
 	 */
-	private HashMap<Class<?>, Converter<?>> objectConverters = new HashMap<Class<?>, Converter<?>>();
+	private volatile Map<Class<?>, Converter<?>> objectConverters = Collections.emptyMap();
+
+	/** Counts the registrations of converters. */
+	private volatile long version;
 
 	/**
 	 * Constructs an empty <code>ConversionPolicy</code>.
@@ -105,8 +118,11 @@ public abstract class ConversionPolicy {
 	 * @param class_    the object that represents the given type
 	 * @param converter the converter
 	 */
-	protected <T> void addTermConverter(Class<T> class_, Converter<T> converter) {
-		termConverters.put(class_, converter);
+	protected synchronized <T> void addTermConverter(Class<T> class_, Converter<T> converter) {
+		Map<Class<?>, Converter<?>> converters = new HashMap<Class<?>, Converter<?>>(termConverters);
+		converters.put(class_, converter);
+		termConverters = converters;
+		++version;
 	}
 
 	/**
@@ -118,8 +134,11 @@ public abstract class ConversionPolicy {
 	 * @param functor   the functor to select the converter to use later
 	 * @param converter the converter
 	 */
-	public void addTermConverter(String functor, Converter<Object> converter) {
-		termPatterns.put(functor, converter);
+	public synchronized void addTermConverter(String functor, Converter<Object> converter) {
+		Map<String, Converter<Object>> patterns = new HashMap<String, Converter<Object>>(termPatterns);
+		patterns.put(functor, converter);
+		termPatterns = patterns;
+		++version;
 	}
 
 	/**
@@ -133,11 +152,63 @@ public abstract class ConversionPolicy {
 	 * @param converter the converter
 	 */
 	public <T> void addObjectConverter(Class<T> class_, Converter<T> converter) {
-		objectConverters.put(class_, converter);
+		putObjectConverter(class_, converter);
 	}
 	
 	public <T> void addListConverter(Class<T> class_, Converter<List<?>> converter) {
-		objectConverters.put(class_, converter);
+		putObjectConverter(class_, converter);
+	}
+
+	/**
+	 * Publishes a copy of the object converters with the new converter.
+	 * 
+	 * @param class_    the type of the objects to convert
+	 * @param converter the converter
+	 */
+	private synchronized void putObjectConverter(Class<?> class_, Converter<?> converter) {
+		Map<Class<?>, Converter<?>> converters = new HashMap<Class<?>, Converter<?>>(objectConverters);
+		converters.put(class_, converter);
+		objectConverters = converters;
+		++version;
+	}
+
+	/**
+	 * Returns the number of converters registered so far, so that results of
+	 * conversions can be discarded when another converter is registered.
+	 * 
+	 * @return the version of the policy
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Looks for the object converter applicable to the objects of a class. This is
+	 * the converter assigned to the class, to one of its directly implemented
+	 * interfaces or, recursively, to its superclass. The converter of
+	 * <code>Object[]</code> is applicable to all arrays.
+	 * 
+	 * @param objectClass the class of the objects
+	 * @return the applicable object converter or null if there is none
+	 */
+	protected Converter<?> findObjectConverter(Class<?> objectClass) {
+		Map<Class<?>, Converter<?>> objectConverters = this.objectConverters;
+		if (objectClass.isArray()) {
+			return objectConverters.get(Object[].class);
+		}
+		for (Class<?> c = objectClass; c != null; c = c.getSuperclass()) {
+			Converter<?> converter = objectConverters.get(c);
+			if (converter != null) {
+				return converter;
+			}
+			for (Class<?> interf : c.getInterfaces()) {
+				converter = objectConverters.get(interf);
+				if (converter != null) {
+					return converter;
+				}
+			}
+		}
+		return null;
 	}
 
 	/**
@@ -160,26 +231,27 @@ public abstract class ConversionPolicy {
 		if (term == null) {
 			return null;
 		}
-		if (isCompound(term)) {
-			String compoundName = getName(term);
-			if (termPatterns.containsKey(compoundName)) {
-				Object result = termPatterns.get(compoundName).convert(term);
+		Map<String, Converter<Object>> termPatterns = this.termPatterns;
+		if (!termPatterns.isEmpty() && isCompound(term)) {
+			Converter<Object> patternConverter = termPatterns.get(getName(term));
+			if (patternConverter != null) {
+				Object result = patternConverter.convert(term);
 				if (result != null) {
 					return result;
 				}
 			}
 		}
-		Class<?> termClass = term.getClass();
-		do {
-			if (termConverters.containsKey(termClass)) {
-				@SuppressWarnings("unchecked")
-				Object result = ((Converter<T>)termConverters.get(termClass)).convert(term);
+		Map<Class<?>, Converter<?>> termConverters = this.termConverters;
+		for (Class<?> c = term.getClass(); c != null; c = c.getSuperclass()) {
+			@SuppressWarnings("unchecked")
+			Converter<T> converter = (Converter<T>) termConverters.get(c);
+			if (converter != null) {
+				Object result = converter.convert(term);
 				if (result != null) {
 					return result;
 				}
 			}
-			termClass = termClass.getSuperclass();
-		} while (termClass != null);
+		}
 		throw new RuntimeException("No suitable converter found for " + term);
 	}
 
@@ -205,15 +277,14 @@ public abstract class ConversionPolicy {
 		if (term == null) {
 			return null;
 		}
-		Class<?> termClass = term.getClass();
-		do {
+		Map<Class<?>, Converter<?>> termConverters = this.termConverters;
+		for (Class<?> c = term.getClass(); c != null; c = c.getSuperclass()) {
 			@SuppressWarnings("unchecked")
-			Converter<U> converter = (Converter<U>) termConverters.get(termClass);
+			Converter<U> converter = (Converter<U>) termConverters.get(c);
 			if (converter != null) {
 				return (T) converter.convert(term, type);
 			}
-			termClass = termClass.getSuperclass();
-		} while (termClass != null);
+		}
 		throw new RuntimeException("No suitable converter found for " + term);
 	}
 
@@ -237,31 +308,10 @@ public abstract class ConversionPolicy {
 		if (object == null) {
 			return null;
 		}
-		Class<?> objectClass = object.getClass();
-		if (objectClass.isArray()) {
-			@SuppressWarnings("unchecked")
-			Converter<Object> converter = (Converter<Object>) objectConverters.get(Object[].class);
+		@SuppressWarnings("unchecked")
+		Converter<Object> converter = (Converter<Object>) findObjectConverter(object.getClass());
+		if (converter != null) {
 			return converter.convert(object);
-		} else {
-			do {
-				@SuppressWarnings("unchecked")
-				Converter<Object> converter = (Converter<Object>) objectConverters.get(objectClass);
-				if (converter != null) {
-					return converter.convert(object);
-				}
-				if (!objectClass.isArray()) {
-					for (Class<?> interf : objectClass.getInterfaces()) {
-						@SuppressWarnings("unchecked")
-						Converter<Object> converter1 = (Converter<Object>) objectConverters.get(interf);
-						if (converter1 != null) {
-							return converter1.convert(object);
-						}
-					}
-					objectClass = objectClass.getSuperclass();
-				} else {
-					// TODO
-				}
-			} while (objectClass != null);
 		}
 		throw new RuntimeException("No suitable converter found for " + object);
 	}
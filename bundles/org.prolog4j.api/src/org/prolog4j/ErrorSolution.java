@@ -0,0 +1,91 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Represents the solutions of a goal that could not be solved because of an
+ * error. It is returned by {@link Prover#solveBatch(List)}, so that an error
+ * does not prevent the other goals of the batch from being solved. Every
+ * access to the solutions throws the original error.
+ * 
+ * @param <S> The type of the values of the variable that is of special
+ *            interest
+ */
+public class ErrorSolution<S> extends Solution<S> {
+
+	/** The error that occurred while solving the goal. */
+	private final RuntimeException error;
+
+	/**
+	 * Creates the solutions of a goal that could not be solved.
+	 * 
+	 * @param error the error that occurred while solving the goal
+	 */
+	public ErrorSolution(RuntimeException error) {
+		this.error = error;
+	}
+
+	/**
+	 * Returns the error that occurred while solving the goal.
+	 * 
+	 * @return the error
+	 */
+	public RuntimeException getError() {
+		return error;
+	}
+
+	@Override
+	public boolean isSuccess() {
+		throw error;
+	}
+
+	@Override
+	public <A> A get(String variable) {
+		throw error;
+	}
+
+	@Override
+	public <A> A get(String variable, Class<A> type) {
+		throw error;
+	}
+
+	@Override
+	protected boolean fetch() {
+		throw error;
+	}
+
+	@Override
+	public void collect(Collection<?>... collections) {
+		throw error;
+	}
+
+	@Override
+	public List<?>[] toLists() {
+		throw error;
+	}
+
+}
@@ -38,6 +38,15 @@ import java.util.Map;
  */
 public interface IProverFactory {
 
+	/**
+	 * The parameter that lets the created prover use the conversion policy
+	 * shared by all provers of the factory that use it, instead of a policy of
+	 * its own. Converters registered to the shared policy are used by all these
+	 * provers. Expects a boolean value or its string representation. Default is
+	 * <code>false</code>.
+	 */
+	String SHARED_CONVERSION_POLICY = "prolog4j.sharedConversionPolicy";
+
 	/**
 	 * Creates a new prover.
 	 * 
@@ -62,4 +71,18 @@ public interface IProverFactory {
 	 * @return the created conversion policy
 	 */
 	public ConversionPolicy createConversionPolicy();
+
+	/**
+	 * Decides whether a prover shall use the shared conversion policy.
+	 * 
+	 * @param parameters the parameters of the prover
+	 * @return true if {@link #SHARED_CONVERSION_POLICY} is enabled
+	 */
+	static boolean isSharedConversionPolicy(Map<Object, Object> parameters) {
+		Object value = parameters.get(SHARED_CONVERSION_POLICY);
+		if (value instanceof Boolean) {
+			return (Boolean) value;
+		}
+		return value instanceof String && Boolean.parseBoolean(((String) value).trim());
+	}
 }
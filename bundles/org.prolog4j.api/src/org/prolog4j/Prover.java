@@ -25,6 +25,9 @@ package org.prolog4j;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * A Prover object represents a Prolog knowledge base, on which you can create
@@ -50,6 +53,71 @@ public interface Prover {
 	 */
 	<A> Solution<A> solve(String goal, Object... actualArgs);
 
+	/**
+	 * Solves a Prolog goal without blocking the calling thread. It is
+	 * equivalent with the following:
+	 * <code>query(goal).solveAsync(actualArgs)</code>
+	 * 
+	 * @param <A>
+	 *            the type of an element of the solutions
+	 * @param goal
+	 *            the Prolog goal
+	 * @param actualArgs
+	 *            the actual arguments of the goal
+	 * @return a future that provides the object for traversing the solutions
+	 * @see Query#solveAsync(Object...)
+	 */
+	<A> CompletableFuture<Solution<A>> solveAsync(String goal, Object... actualArgs);
+
+	/**
+	 * Sets the executor that solves goals asynchronously for the queries
+	 * created by {@link #solveAsync(String, Object...)}.
+	 * 
+	 * @param executor
+	 *            the executor, null for
+	 *            {@link ProverExecutors#defaultExecutor()}
+	 */
+	void setExecutor(Executor executor);
+
+	/**
+	 * Sets the cache of the answers of the goals solved by
+	 * {@link #solve(String, Object...)} and
+	 * {@link #solveAsync(String, Object...)}. Goals are solved completely
+	 * when they are not cached yet, so they must have finitely many
+	 * solutions. Every modification of the knowledge base through the prover
+	 * and every registration of a converter invalidates the cache. Goals that
+	 * modify the knowledge base are only recognized by their text, see
+	 * {@link AnswerCache}.
+	 * 
+	 * @param cache
+	 *            the answer cache, null to disable caching
+	 */
+	void setAnswerCache(AnswerCache cache);
+
+	/**
+	 * Returns the cache of the answers of the goals solved by the prover.
+	 * 
+	 * @return the answer cache or null if caching is disabled
+	 */
+	AnswerCache getAnswerCache();
+
+	/**
+	 * Solves several independent Prolog goals at once and returns one object
+	 * per goal using which its solutions can be iterated over. Implementations
+	 * may solve the goals together, which saves the overhead of solving them
+	 * one by one. An error while solving a goal does not affect the other
+	 * goals, the returned {@link ErrorSolution} throws the error when it is
+	 * accessed instead.
+	 * 
+	 * @param <A>
+	 *            the type of an element of the solutions
+	 * @param goals
+	 *            the goals with their actual arguments
+	 * @return the solutions of the goals in the order of the goals
+	 * @see #solve(String, Object...)
+	 */
+	<A> List<Solution<A>> solveBatch(List<BoundGoal> goals);
+
 	/**
 	 * Creates a Prolog query that can be solved later.
 	 * 
@@ -108,6 +176,60 @@ public interface Prover {
 	 */
 	void assertz(String fact, Object... args);
 
+	/**
+	 * Asserts a Prolog fact to the knowledge base. The fact is converted by
+	 * the conversion policy of the prover instead of being parsed.
+	 * 
+	 * @param fact the Prolog fact
+	 */
+	void assertz(Compound fact);
+
+	/**
+	 * Asserts Prolog facts of the same functor to the knowledge base in bulk.
+	 * Every row holds the arguments of one fact, which are converted by the
+	 * conversion policy of the prover instead of being parsed. The facts are
+	 * asserted in the order of the rows.
+	 * 
+	 * @param functor the functor of the facts
+	 * @param rows the arguments of the facts
+	 */
+	void assertAll(String functor, Iterable<Object[]> rows);
+
+	/**
+	 * Declares that the facts of a predicate are stored outside of the clause
+	 * database of the knowledge base, indexed on the given combinations of
+	 * arguments. Facts of the predicate that are asserted by
+	 * {@link #assertAll(String, Iterable)} or {@link #assertz(Compound)}
+	 * afterwards are added to the store. They must be ground and cannot be
+	 * retracted. Goals of the predicate are resolved by the index with the
+	 * most arguments that are all bound in the goal.
+	 * <p>
+	 * Declaring a predicate again adds the indexes it does not have yet.
+	 * Implementations that index facts on their own may ignore the
+	 * declaration and keep the facts in the knowledge base.
+	 * 
+	 * @param functor the functor of the predicate
+	 * @param arity the arity of the predicate
+	 * @param indexes the positions of the arguments of every index, starting
+	 *            from zero; the first argument is indexed if no index is given
+	 */
+	void declareStored(String functor, int arity, int[]... indexes);
+
+	/**
+	 * Adds the facts of a columnar table to the knowledge base as facts of the
+	 * functor and arity of the table. Implementations read the facts from the
+	 * table instead of converting them up front where they can, so the facts
+	 * do not take up the heap. The table is made read-only by
+	 * {@link ColumnarTable#setReadOnly()}, and its facts cannot be retracted.
+	 * 
+	 * @param table the table
+	 * @param indexes the positions of the arguments of every index, starting
+	 *            from zero, as for {@link #declareStored(String, int, int[]...)};
+	 *            the facts are searched by scanning the columns if no index is
+	 *            given
+	 */
+	void addTable(ColumnarTable table, int[]... indexes);
+
 	/**
 	 * Retracts a Prolog fact or rule from the knowledge base.
 	 * 
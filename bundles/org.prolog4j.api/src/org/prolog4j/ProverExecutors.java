@@ -0,0 +1,89 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides the executor that solves goals asynchronously unless another
+ * executor has been configured by {@link Query#executor(Executor)} or
+ * {@link Prover#setExecutor(Executor)}.
+ */
+public final class ProverExecutors {
+
+	/** The default executor, created on first use. */
+	private static volatile Executor defaultExecutor;
+
+	/** Not to be instantiated. */
+	private ProverExecutors() {
+	}
+
+	/**
+	 * Returns the default executor. It starts a virtual thread per task if the
+	 * runtime supports virtual threads, because solving a goal mostly waits
+	 * for an external process or a lock. Otherwise it uses a cached pool of
+	 * daemon threads.
+	 * 
+	 * @return the default executor
+	 */
+	public static Executor defaultExecutor() {
+		Executor executor = defaultExecutor;
+		if (executor == null) {
+			synchronized (ProverExecutors.class) {
+				executor = defaultExecutor;
+				if (executor == null) {
+					executor = createDefaultExecutor();
+					defaultExecutor = executor;
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Creates the default executor.
+	 * 
+	 * @return the new executor
+	 */
+	private static Executor createDefaultExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (Executor) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			// the runtime does not support virtual threads
+		}
+		final AtomicInteger threadNumber = new AtomicInteger();
+		ThreadFactory threadFactory = r -> {
+			Thread thread = new Thread(r, "prolog4j-async-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		return Executors.newCachedThreadPool(threadFactory);
+	}
+
+}
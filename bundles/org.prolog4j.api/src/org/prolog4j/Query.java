@@ -25,6 +25,11 @@ package org.prolog4j;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents a Prolog query. It is supposed to be created by 
@@ -32,11 +37,62 @@ import java.util.List;
  */
 public abstract class Query {
 
+	/**
+	 * The call of {@link #solveAsync(Executor, Object[])} whose search runs on
+	 * the current thread, see {@link #addCancellationAction(Runnable)}.
+	 */
+	private static final ThreadLocal<AsyncCall> ASYNC_CALL = new ThreadLocal<AsyncCall>();
+
+	/**
+	 * The actions that abort the search of a single call of
+	 * {@link #solveAsync(Executor, Object[])}, so that cancelling its future
+	 * does not abort the searches of other calls of the same query.
+	 */
+	private static final class AsyncCall {
+
+		private final Set<Runnable> actions = new CopyOnWriteArraySet<Runnable>();
+
+		private volatile boolean cancelled;
+
+		void add(Runnable action) {
+			actions.add(action);
+			if (cancelled) {
+				action.run();
+			}
+		}
+
+		void remove(Runnable action) {
+			actions.remove(action);
+		}
+
+		void cancel() {
+			cancelled = true;
+			for (Runnable action : actions) {
+				action.run();
+			}
+		}
+	}
+
 	/** The Prolog goal to be solved. */
 	private final String goal;
 	
 	/** The name of the named placeholders of the goal. */
 	private final ArrayList<String> placeholderNames;
+
+	/**
+	 * The time in milliseconds a search for solutions may take, or zero if the
+	 * search is not limited.
+	 */
+	private volatile long timeout;
+
+	/** The actions that abort the searches for solutions in progress. */
+	private final Set<Runnable> cancellationActions = new CopyOnWriteArraySet<Runnable>();
+
+	/**
+	 * The executor that solves the goal asynchronously, or null for the
+	 * default executor.
+	 */
+	private volatile Executor executor;
 	
 	/**
 	 * Creates a query object.
@@ -128,6 +184,93 @@ public abstract class Query {
 	 */
 	public abstract <A> Solution<A> solve(Object... actualArgs);
 
+	/**
+	 * Solves the Prolog goal without blocking the calling thread. The actual
+	 * arguments will be bound to the placeholders before solving the goal.
+	 * Errors are reported by completing the returned future exceptionally.
+	 * Cancelling the future aborts the search of this call and cancels its
+	 * solutions, other calls of the query are not affected.
+	 * 
+	 * @param <A>
+	 *            the type of an element of the solutions
+	 * @param actualArgs
+	 *            the actual arguments of the goal
+	 * @return a future that provides the object for traversing the solutions
+	 * @see #executor(Executor)
+	 */
+	public <A> CompletableFuture<Solution<A>> solveAsync(final Object... actualArgs) {
+		return solveAsync(getExecutor(), actualArgs);
+	}
+
+	/**
+	 * Solves the Prolog goal on the given executor instead of the executor of
+	 * the query, so that callers sharing the query do not have to modify it.
+	 * Cancelling the returned future aborts only the search of this call.
+	 * <p>
+	 * By default, the goal is solved by {@link #solve(Object...)} on the
+	 * executor. The cancellation actions registered by
+	 * {@link #addCancellationAction(Runnable)} while it searches belong to
+	 * this call. Implementations may override this method if they can wait for
+	 * the solutions without occupying a thread.
+	 * 
+	 * @param <A>
+	 *            the type of an element of the solutions
+	 * @param executor
+	 *            the executor that solves the goal
+	 * @param actualArgs
+	 *            the actual arguments of the goal
+	 * @return a future that provides the object for traversing the solutions
+	 */
+	protected <A> CompletableFuture<Solution<A>> solveAsync(final Executor executor, final Object[] actualArgs) {
+		final AsyncCall call = new AsyncCall();
+		final CompletableFuture<Solution<A>> future = CompletableFuture.supplyAsync(() -> {
+			AsyncCall outerCall = ASYNC_CALL.get();
+			ASYNC_CALL.set(call);
+			try {
+				Solution<A> solution = this.<A>solve(actualArgs);
+				// a future cancelled after the search has finished cancels the solutions
+				call.add(solution::cancel);
+				return solution;
+			} finally {
+				if (outerCall == null) {
+					ASYNC_CALL.remove();
+				} else {
+					ASYNC_CALL.set(outerCall);
+				}
+			}
+		}, executor);
+		future.whenComplete((result, error) -> {
+			if (future.isCancelled()) {
+				call.cancel();
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Sets the executor that solves the goal asynchronously.
+	 * <p>
+	 * The method returns the same query instance.
+	 * 
+	 * @param executor the executor, null for
+	 *            {@link ProverExecutors#defaultExecutor()}
+	 * @return the same query instance
+	 */
+	public Query executor(Executor executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Returns the executor that solves the goal asynchronously.
+	 * 
+	 * @return the executor
+	 */
+	protected final Executor getExecutor() {
+		Executor queryExecutor = executor;
+		return queryExecutor == null ? ProverExecutors.defaultExecutor() : queryExecutor;
+	}
+
 	/**
 	 * Binds a value to the specified argument of the goal. The argument is 
 	 * specified by its position. Numbering starts from zero.
@@ -149,5 +292,73 @@ public abstract class Query {
 	 * @return the same query instance
 	 */
 	public abstract Query bind(String variable, Object value);
+
+	/**
+	 * Limits the time that searching for solutions may take. The limit applies
+	 * to {@link #solve(Object...)} and to every further solution fetched from
+	 * the returned {@link Solution} separately. A search that exceeds the limit
+	 * is aborted and throws a {@link QueryTimeoutException}.
+	 * <p>
+	 * The method returns the same query instance.
+	 * 
+	 * @param timeout the time limit, zero or less for no limit
+	 * @param unit the unit of the time limit
+	 * @return the same query instance
+	 */
+	public Query timeout(long timeout, TimeUnit unit) {
+		this.timeout = timeout <= 0 ? 0 : Math.max(1, unit.toMillis(timeout));
+		return this;
+	}
+
+	/**
+	 * Returns the time limit of searching for solutions.
+	 * 
+	 * @return the time limit in milliseconds, zero if the search is not limited
+	 */
+	public final long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * Aborts the calls of {@link #solve(Object...)} that are in progress. The
+	 * aborted calls throw a {@link QueryCancelledException}. Later calls are
+	 * not affected. The further solutions of a {@link Solution} that has already
+	 * been returned can be cancelled by {@link Solution#cancel()}.
+	 */
+	public void cancel() {
+		for (Runnable action : cancellationActions) {
+			action.run();
+		}
+	}
+
+	/**
+	 * Registers an action that aborts a search for solutions in progress when
+	 * {@link #cancel()} is called. Implementations register the action before
+	 * they start searching and remove it when the search has finished. If the
+	 * search belongs to a call of {@link #solveAsync(Executor, Object[])}, the
+	 * action also aborts it when the future of the call is cancelled.
+	 * 
+	 * @param action the action that aborts the search
+	 */
+	protected final void addCancellationAction(Runnable action) {
+		cancellationActions.add(action);
+		AsyncCall call = ASYNC_CALL.get();
+		if (call != null) {
+			call.add(action);
+		}
+	}
+
+	/**
+	 * Removes an action registered by {@link #addCancellationAction(Runnable)}.
+	 * 
+	 * @param action the action that aborts the search
+	 */
+	protected final void removeCancellationAction(Runnable action) {
+		cancellationActions.remove(action);
+		AsyncCall call = ASYNC_CALL.get();
+		if (call != null) {
+			call.remove(action);
+		}
+	}
 	
 }
@@ -0,0 +1,165 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of the queries of a prover by their goal. The least
+ * recently used query is evicted when the capacity is exceeded, so that a goal
+ * is parsed only once for as long as its query stays in the cache.
+ * <p>
+ * The cached queries are shared by all calls of
+ * {@link Prover#solve(String, Object...)} with the same goal, so they must not
+ * be bound explicitly.
+ */
+public final class QueryCache {
+
+	/** The default number of cached queries. */
+	public static final int DEFAULT_CAPACITY = 256;
+
+	/** The queries by their goal in the order of their last use. */
+	private final LinkedHashMap<String, Query> queries;
+
+	/** The maximum number of cached queries. */
+	private int capacity;
+
+	/** The number of requests that have been served from the cache. */
+	private long hits;
+
+	/** The number of requests that required a new query. */
+	private long misses;
+
+	/**
+	 * Creates a query cache.
+	 * 
+	 * @param capacity the maximum number of cached queries, 0 disables the
+	 *            cache
+	 */
+	public QueryCache(int capacity) {
+		setCapacity(capacity);
+		this.queries = new LinkedHashMap<String, Query>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Query> eldest) {
+				return size() > QueryCache.this.capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the query of a goal. If the goal is not cached, its query is
+	 * created and cached.
+	 * 
+	 * @param goal the Prolog goal
+	 * @param compiler creates the query of the goal
+	 * @return the query
+	 */
+	public Query get(String goal, Function<String, ? extends Query> compiler) {
+		synchronized (this) {
+			Query query = queries.get(goal);
+			if (query != null) {
+				++hits;
+				return query;
+			}
+			++misses;
+		}
+		// concurrent misses of the same goal may parse it twice
+		Query query = compiler.apply(goal);
+		synchronized (this) {
+			if (capacity > 0) {
+				queries.put(goal, query);
+			}
+		}
+		return query;
+	}
+
+	/**
+	 * Returns the maximum number of cached queries.
+	 * 
+	 * @return the capacity
+	 */
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Sets the maximum number of cached queries. Exceeding queries are
+	 * evicted.
+	 * 
+	 * @param capacity the maximum number of cached queries, 0 disables the
+	 *            cache
+	 */
+	public synchronized void setCapacity(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("The capacity must not be negative.");
+		}
+		this.capacity = capacity;
+		if (queries != null) {
+			while (queries.size() > capacity) {
+				queries.remove(queries.keySet().iterator().next());
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of cached queries.
+	 * 
+	 * @return the number of cached queries
+	 */
+	public synchronized int size() {
+		return queries.size();
+	}
+
+	/**
+	 * Returns the number of requests that have been served from the cache.
+	 * 
+	 * @return the number of cache hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of requests that required a new query.
+	 * 
+	 * @return the number of cache misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Evicts all queries and resets the counters.
+	 */
+	public synchronized void clear() {
+		queries.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+}
@@ -0,0 +1,70 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+/**
+ * This exception is thrown when the search for the solutions of a query has
+ * been aborted by {@link Query#cancel()} or {@link Solution#cancel()} before
+ * it finished. It distinguishes an aborted search from a goal that has no
+ * solution.
+ */
+public class QueryCancelledException extends RuntimeException {
+
+	/** Class version for serialization. */
+	private static final long serialVersionUID = 1L;
+
+	/** The query whose solutions were searched. */
+	private final String query;
+
+	/**
+	 * Constructs a QueryCancelledException. It takes as its argument the
+	 * Prolog query whose solutions were searched.
+	 * 
+	 * @param query the Prolog query
+	 */
+	public QueryCancelledException(String query) {
+		this(query, String.format("Solving the following query has been cancelled: \"%s\".", query));
+	}
+
+	/**
+	 * Constructs a QueryCancelledException with a specific message.
+	 * 
+	 * @param query the Prolog query
+	 * @param message the detail message
+	 */
+	protected QueryCancelledException(String query, String message) {
+		super(message);
+		this.query = query;
+	}
+
+	/**
+	 * Returns the query whose solutions were searched.
+	 * 
+	 * @return the Prolog query
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+}
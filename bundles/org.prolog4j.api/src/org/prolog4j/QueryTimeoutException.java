@@ -0,0 +1,61 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+/**
+ * This exception is thrown when the search for the solutions of a query has
+ * been aborted because it exceeded the time limit set by
+ * {@link Query#timeout(long, java.util.concurrent.TimeUnit)}.
+ */
+public class QueryTimeoutException extends QueryCancelledException {
+
+	/** Class version for serialization. */
+	private static final long serialVersionUID = 1L;
+
+	/** The exceeded time limit in milliseconds. */
+	private final long timeout;
+
+	/**
+	 * Constructs a QueryTimeoutException. It takes as its arguments the Prolog
+	 * query whose solutions were searched and the time limit in milliseconds.
+	 * 
+	 * @param query the Prolog query
+	 * @param timeout the exceeded time limit in milliseconds
+	 */
+	public QueryTimeoutException(String query, long timeout) {
+		super(query, String.format("Solving the following query exceeded the time limit of %d ms: \"%s\".",
+				timeout, query));
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Returns the time limit that has been exceeded.
+	 * 
+	 * @return the time limit in milliseconds
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+
+}
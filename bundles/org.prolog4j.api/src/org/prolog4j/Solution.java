@@ -27,8 +27,15 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Represents the solutions of a query.
@@ -156,6 +163,31 @@ public abstract class Solution<S> implements Iterable<S> {
 	 * 		<code>false</code>
 	 */
 	protected abstract boolean fetch();
+
+	/**
+	 * Cancels the search for further solutions. A search in progress is
+	 * aborted and fetching further solutions throws a
+	 * {@link QueryCancelledException}, while the current solution remains
+	 * accessible. Solutions that have been computed completely in advance are
+	 * not affected.
+	 */
+	public void cancel() {
+		// by default all solutions have been computed in advance
+	}
+
+	/**
+	 * Returns the terms bound to the variables of the goal by the current
+	 * solution, in the order of the variables. An {@link AnswerCache} keeps
+	 * these terms to replay the solutions. If the goal has failed, the
+	 * bindings are empty.
+	 * 
+	 * @return the bindings of the current solution, or null if the solutions
+	 *         cannot be cached, e.g. because solving the goal failed with an
+	 *         error
+	 */
+	protected Map<String, Object> getBindings() {
+		return null;
+	}
 	
 	@Override
 	public SolutionIterator<S> iterator() {
@@ -206,6 +238,47 @@ public abstract class Solution<S> implements Iterable<S> {
 		};
 	}
 
+	/**
+	 * Returns a sequential stream of the values of the primary variable. The
+	 * solutions are fetched lazily, so short-circuiting operations such as
+	 * <code>findFirst()</code> or <code>limit(long)</code> only fetch the
+	 * solutions they need. Closing the stream cancels the search for further
+	 * solutions. Like {@link #iterator()}, the stream traverses the solutions
+	 * starting from the current one.
+	 * 
+	 * @return a stream of the values of the variable of interest
+	 */
+	public Stream<S> stream() {
+		return StreamSupport.stream(
+				() -> Spliterators.spliteratorUnknownSize(iterator(), Spliterator.ORDERED),
+				Spliterator.ORDERED, false).onClose(this::cancel);
+	}
+
+	/**
+	 * Returns a publisher of the values of the primary variable. The solutions
+	 * are fetched on the demand of the subscriber by the default executor of
+	 * {@link ProverExecutors}, so large numbers of solutions can be processed
+	 * in constant memory. There can be only one subscriber. Cancelling the
+	 * subscription cancels the search for further solutions.
+	 * 
+	 * @return a publisher of the values of the variable of interest
+	 */
+	public Flow.Publisher<S> publisher() {
+		return publisher(ProverExecutors.defaultExecutor());
+	}
+
+	/**
+	 * Returns a publisher of the values of the primary variable like
+	 * {@link #publisher()}, which fetches the solutions by the given executor.
+	 * 
+	 * @param executor the executor that fetches the solutions and signals the
+	 *            subscriber
+	 * @return a publisher of the values of the variable of interest
+	 */
+	public Flow.Publisher<S> publisher(Executor executor) {
+		return new SolutionPublisher<S>(this, executor);
+	}
+
 	/**
 	 * Collects the values of the primary variable into the given collection.
 	 * Returns its parameter.
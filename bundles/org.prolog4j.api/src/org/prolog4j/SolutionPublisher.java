@@ -0,0 +1,205 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the values of the primary variable of a {@link Solution}. The
+ * solutions are fetched on demand of the subscriber, so only the current
+ * solution is held in memory. As the solutions can only be traversed once,
+ * there can be only one subscriber.
+ * 
+ * @param <S> the type of the published values
+ */
+final class SolutionPublisher<S> implements Flow.Publisher<S> {
+
+	/** The solutions to be published. */
+	private final Solution<S> solution;
+
+	/** The executor that fetches the solutions and signals the subscriber. */
+	private final Executor executor;
+
+	/** True if a subscriber has already subscribed. */
+	private final AtomicBoolean subscribed = new AtomicBoolean();
+
+	/**
+	 * Creates a publisher.
+	 * 
+	 * @param solution the solutions to be published
+	 * @param executor the executor that fetches the solutions
+	 */
+	SolutionPublisher(Solution<S> solution, Executor executor) {
+		this.solution = solution;
+		this.executor = executor;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super S> subscriber) {
+		Objects.requireNonNull(subscriber);
+		if (!subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+				}
+
+				@Override
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException("The solutions can only be published once."));
+			return;
+		}
+		subscriber.onSubscribe(new SolutionSubscription(subscriber));
+	}
+
+	/**
+	 * The subscription of the only subscriber. Signals are serialized by
+	 * draining the demand in at most one task at a time.
+	 */
+	private final class SolutionSubscription implements Flow.Subscription, Runnable {
+
+		/** The subscriber. */
+		private final Flow.Subscriber<? super S> subscriber;
+
+		/** The number of requested values that have not been published yet. */
+		private final AtomicLong demand = new AtomicLong();
+
+		/** The number of pending drain requests. */
+		private final AtomicInteger pendingDrains = new AtomicInteger();
+
+		/** The traversal of the solutions, created by the first drain. */
+		private Iterator<S> iterator;
+
+		/** The error caused by an invalid request. */
+		private volatile Throwable invalidRequest;
+
+		/** True if the subscription has been cancelled. */
+		private volatile boolean cancelled;
+
+		/** True if a terminal signal has been sent. */
+		private boolean done;
+
+		/**
+		 * Creates a subscription.
+		 * 
+		 * @param subscriber the subscriber
+		 */
+		SolutionSubscription(Flow.Subscriber<? super S> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				invalidRequest = new IllegalArgumentException("The number of requested values must be positive.");
+			} else {
+				demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+			}
+			scheduleDrain();
+		}
+
+		@Override
+		public void cancel() {
+			if (!cancelled) {
+				cancelled = true;
+				solution.cancel();
+			}
+		}
+
+		/**
+		 * Drains the demand on the executor unless a drain is already pending.
+		 */
+		private void scheduleDrain() {
+			if (pendingDrains.getAndIncrement() == 0) {
+				executor.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			int missed = 1;
+			do {
+				drain();
+				missed = pendingDrains.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		/**
+		 * Publishes as many values as have been requested.
+		 */
+		private void drain() {
+			if (done || cancelled) {
+				return;
+			}
+			if (invalidRequest != null) {
+				fail(invalidRequest);
+				return;
+			}
+			try {
+				if (iterator == null) {
+					iterator = solution.iterator();
+				}
+				while (demand.get() > 0 && !cancelled) {
+					if (!iterator.hasNext()) {
+						done = true;
+						subscriber.onComplete();
+						return;
+					}
+					S value = iterator.next();
+					if (value == null) {
+						fail(new NullPointerException("A solution has no value for the primary variable."));
+						return;
+					}
+					demand.decrementAndGet();
+					subscriber.onNext(value);
+				}
+			} catch (RuntimeException e) {
+				if (!cancelled) {
+					fail(e);
+				}
+			}
+		}
+
+		/**
+		 * Signals an error and stops the search for further solutions.
+		 * 
+		 * @param error the error
+		 */
+		private void fail(Throwable error) {
+			done = true;
+			cancelled = true;
+			solution.cancel();
+			subscriber.onError(error);
+		}
+
+	}
+
+}
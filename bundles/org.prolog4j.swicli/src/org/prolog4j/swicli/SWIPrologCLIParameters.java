@@ -0,0 +1,115 @@
+package org.prolog4j.swicli;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+
+/**
+ * Parameters understood by the SWI Prolog CLI binding. The parameters are passed to
+ * {@link SWIPrologCLIProverFactory#createProver(Map)} and are available to the prover via
+ * {@link SWIPrologExecutable#getParameters()}.
+ *
+ * Values can either be given as typed objects or as strings.
+ */
+public final class SWIPrologCLIParameters {
+
+    /**
+     * Enables the worker mode. In worker mode, a prover keeps a long-lived SWI Prolog process
+     * with the theory already loaded instead of starting a new process per query. Expects a
+     * boolean value. Default is <code>false</code>.
+     */
+    public static final String WORKER = "swicli.worker";
+
+    /**
+     * The number of worker processes that are started together with a prover in worker mode
+     * and that are never evicted. Expects an integer value. Default is <code>1</code>.
+     */
+    public static final String POOL_MIN_SIZE = "swicli.pool.min";
+
+    /**
+     * The maximum number of worker processes a prover in worker mode uses for solving goals
+     * concurrently. Expects an integer value. Default is <code>1</code>.
+     */
+    public static final String POOL_MAX_SIZE = "swicli.pool.max";
+
+    /**
+     * The time in milliseconds after which an idle worker process is terminated if there are
+     * more than {@link #POOL_MIN_SIZE} workers. Expects a long value. Default is
+     * <code>60000</code>.
+     */
+    public static final String POOL_IDLE_TIMEOUT = "swicli.pool.idleTimeout";
+
+    /**
+     * Enables solving goals on demand in worker mode. Instead of collecting all solutions before
+     * returning, the first solution is returned as soon as it has been found and every further
+     * solution is computed when it is fetched. Expects a boolean value. Default is
+     * <code>false</code>.
+     */
+    public static final String STREAMING = "swicli.streaming";
+
+    /**
+     * The directory of the cache for compiled theories. If set, the static part of a theory is
+     * compiled to a quick load file once and loaded in compiled form by every new SWI Prolog
+     * process. Expects a path, file or string value. By default, theories are not cached.
+     */
+    public static final String CACHE_DIRECTORY = "swicli.cache.directory";
+
+    /**
+     * Enables saved states in worker mode. Whenever a worker process had to be started, it saves
+     * its loaded theory including all dynamic facts with <code>qsave_program/2</code> and later
+     * worker processes start from this saved state. The saved states are stored in the
+     * {@link #CACHE_DIRECTORY} if set and in a temporary directory otherwise. Expects a boolean
+     * value. Default is <code>false</code>.
+     */
+    public static final String SAVED_STATE = "swicli.savedState";
+
+    private SWIPrologCLIParameters() {
+        // intentionally left empty
+    }
+
+    public static boolean getBoolean(Map<Object, Object> parameters, String key, boolean defaultValue) {
+        var value = parameters.get(key);
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof String) {
+            return Boolean.parseBoolean(((String) value).trim());
+        }
+        return defaultValue;
+    }
+
+    public static long getLong(Map<Object, Object> parameters, String key, long defaultValue) {
+        var value = parameters.get(key);
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        if (value instanceof String) {
+            try {
+                return Long.parseLong(((String) value).trim());
+            } catch (NumberFormatException e) {
+                // just ignore it and use default value
+            }
+        }
+        return defaultValue;
+    }
+
+    public static Path getPath(Map<Object, Object> parameters, String key) {
+        var value = parameters.get(key);
+        if (value instanceof Path) {
+            return (Path) value;
+        }
+        if (value instanceof File) {
+            return ((File) value).toPath();
+        }
+        if (value instanceof String && !((String) value).isBlank()) {
+            return Paths.get(((String) value).trim());
+        }
+        return null;
+    }
+
+    public static int getInt(Map<Object, Object> parameters, String key, int defaultValue) {
+        return (int) getLong(parameters, key, defaultValue);
+    }
+
+}
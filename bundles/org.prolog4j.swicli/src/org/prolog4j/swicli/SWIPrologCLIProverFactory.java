@@ -72,6 +72,7 @@ public class SWIPrologCLIProverFactory implements IProverFactory {
 
     private final PrologAPIWrapper prologApiWrapper = new PrologAPIWrapper();
     private final SortedSet<PrioritizedProvider> executableProviders = new TreeSet<>();
+    private volatile ConversionPolicy sharedConversionPolicy;
 
     /**
      * Default constructor to be used by OSGi.
@@ -97,7 +98,30 @@ public class SWIPrologCLIProverFactory implements IProverFactory {
             throw new ProverCreationException("Could not create an " + SWIPrologCLIProver.class.getSimpleName()
                     + " because we could not find a usable executable.");
         }
-        return new SWIPrologCLIProver(createConversionPolicy(), prologApiWrapper.getPrologApi(), foundExecutable);
+        var conversionPolicy = IProverFactory.isSharedConversionPolicy(parameters) ? getSharedConversionPolicy()
+                : createConversionPolicy();
+        return new SWIPrologCLIProver(conversionPolicy, prologApiWrapper.getPrologApi(), foundExecutable,
+                parameters);
+    }
+
+    /**
+     * Returns the conversion policy shared by the provers created with
+     * {@link IProverFactory#SHARED_CONVERSION_POLICY}.
+     *
+     * @return the shared conversion policy
+     */
+    public ConversionPolicy getSharedConversionPolicy() {
+        var policy = sharedConversionPolicy;
+        if (policy == null) {
+            synchronized (this) {
+                policy = sharedConversionPolicy;
+                if (policy == null) {
+                    policy = createConversionPolicy();
+                    sharedConversionPolicy = policy;
+                }
+            }
+        }
+        return policy;
     }
 
     @Override
@@ -1,6 +1,7 @@
 package org.prolog4j.swicli;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public interface SWIPrologExecutable {
@@ -12,5 +13,15 @@ public interface SWIPrologExecutable {
     default Map<String, String> getEnvironment() {
         return Collections.emptyMap();
     }
+
+    /**
+     * Returns the arguments that have to be passed to the executable in front of all other
+     * arguments.
+     * 
+     * @return the arguments
+     */
+    default List<String> getArguments() {
+        return Collections.emptyList();
+    }
     
 }
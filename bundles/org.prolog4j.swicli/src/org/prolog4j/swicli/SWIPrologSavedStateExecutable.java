@@ -0,0 +1,54 @@
+package org.prolog4j.swicli;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An executable that starts SWI Prolog from a saved state created by
+ * <code>qsave_program/2</code> instead of the default boot file. The actual executable is
+ * provided by another {@link SWIPrologExecutable}, so saved states can be used with every
+ * {@link SWIPrologExecutableProvider}.
+ */
+public class SWIPrologSavedStateExecutable implements SWIPrologExecutable {
+
+    private final SWIPrologExecutable executable;
+    private final Path savedState;
+
+    public SWIPrologSavedStateExecutable(SWIPrologExecutable executable, Path savedState) {
+        this.executable = executable;
+        this.savedState = savedState;
+    }
+
+    @Override
+    public String getPath() {
+        return executable.getPath();
+    }
+
+    @Override
+    public Map<Object, Object> getParameters() {
+        return executable.getParameters();
+    }
+
+    @Override
+    public Map<String, String> getEnvironment() {
+        return executable.getEnvironment();
+    }
+
+    @Override
+    public List<String> getArguments() {
+        // the state has to be the first argument
+        var arguments = new ArrayList<String>();
+        arguments.add("-x");
+        arguments.add(savedState.toAbsolutePath()
+            .toString());
+        arguments.addAll(executable.getArguments());
+        return arguments;
+    }
+
+    public Path getSavedState() {
+        return savedState;
+    }
+
+}
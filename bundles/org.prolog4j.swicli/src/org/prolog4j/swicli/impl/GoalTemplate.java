@@ -0,0 +1,124 @@
+package org.prolog4j.swicli.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A goal pattern compiled into the fixed text between its placeholders. The placeholders are
+ * recognized like {@link org.prolog4j.Query} does it, so the slots of the template correspond to
+ * the placeholder names of the query in their order. Filling the slots builds the goal in a
+ * single pass without rescanning the pattern.
+ * <p>
+ * Templates are immutable and shared by all queries of the same pattern.
+ */
+public class GoalTemplate {
+
+    /** The number of patterns whose templates are kept. */
+    private static final int CACHE_SIZE = 1024;
+
+    /** The recently compiled templates by their pattern. */
+    private static final Map<String, GoalTemplate> CACHE = Collections
+        .synchronizedMap(new LinkedHashMap<String, GoalTemplate>(16, 0.75f, true) {
+            private static final long serialVersionUID = -4470125836424520735L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GoalTemplate> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        });
+
+    /** The text before, between and after the slots. */
+    private final String[] segments;
+    private final int length;
+
+    protected GoalTemplate(String[] segments) {
+        this.segments = segments;
+        int segmentsLength = 0;
+        for (var segment : segments) {
+            segmentsLength += segment.length();
+        }
+        this.length = segmentsLength;
+    }
+
+    /**
+     * Returns the template of a goal pattern, compiling it if it has not been used recently.
+     *
+     * @param goalPattern the goal pattern with placeholders
+     * @return the template
+     */
+    public static GoalTemplate of(String goalPattern) {
+        var template = CACHE.get(goalPattern);
+        if (template == null) {
+            template = compile(goalPattern);
+            CACHE.put(goalPattern, template);
+        }
+        return template;
+    }
+
+    /**
+     * Compiles a goal pattern. Every <code>?</code> that is not doubled starts a placeholder,
+     * which extends over the letters and digits following it. A doubled <code>??</code> stands
+     * for a single question mark.
+     *
+     * @param goalPattern the goal pattern with placeholders
+     * @return the template
+     */
+    public static GoalTemplate compile(String goalPattern) {
+        var segments = new ArrayList<String>();
+        var segment = new StringBuilder();
+        for (int i = 0; i < goalPattern.length(); ++i) {
+            char c = goalPattern.charAt(i);
+            if (c != '?') {
+                segment.append(c);
+                continue;
+            }
+            if (i < goalPattern.length() - 1 && goalPattern.charAt(i + 1) == '?') {
+                segment.append('?');
+                ++i;
+                continue;
+            }
+            while (i + 1 < goalPattern.length() && Character.isLetterOrDigit(goalPattern.charAt(i + 1))) {
+                ++i;
+            }
+            segments.add(segment.toString());
+            segment.setLength(0);
+        }
+        segments.add(segment.toString());
+        return new GoalTemplate(segments.toArray(new String[segments.size()]));
+    }
+
+    /**
+     * Returns the number of slots.
+     *
+     * @return the number of placeholders of the pattern
+     */
+    public int getSlotCount() {
+        return segments.length - 1;
+    }
+
+    /**
+     * Builds the goal by filling the slots.
+     *
+     * @param values the Prolog text of every slot
+     * @return the goal
+     */
+    public String fill(String... values) {
+        if (values.length != getSlotCount()) {
+            throw new IllegalArgumentException();
+        }
+        int valuesLength = 0;
+        for (var value : values) {
+            valuesLength += value.length();
+        }
+        var goal = new StringBuilder(length + valuesLength);
+        goal.append(segments[0]);
+        for (int i = 0; i < values.length; ++i) {
+            goal.append(values[i])
+                .append(segments[i + 1]);
+        }
+        return goal.toString();
+    }
+
+}
@@ -0,0 +1,236 @@
+package org.prolog4j.swicli.impl;
+
+import java.lang.reflect.Array;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.prolog4j.Compound;
+
+/**
+ * Writes Java values directly as Prolog text, quoted and escaped like <code>writeq/1</code> does.
+ * <p>
+ * Strings are written as atoms, integral numbers as integers, floating point numbers as floats,
+ * collections and arrays as lists and {@link Compound}s as compound terms. Any other value is
+ * written by a fallback, e.g. by converting it to a term of the Prolog model and serializing it.
+ * In contrast to the round trip through the Prolog model, no intermediate terms are created, so
+ * even large lists are written quickly.
+ * <p>
+ * Values whose class has an object converter registered by the user are written by the fallback,
+ * too, so that the converter is applied like it is by other provers, see
+ * {@link SWIPrologCLIConversionPolicy#hasDefaultObjectConverter(Class)}.
+ */
+public class PrologTermWriter {
+
+    private final Predicate<Class<?>> writtenDirectly;
+    private final Function<Object, String> fallback;
+
+    /**
+     * Creates a writer that writes all values it supports itself.
+     *
+     * @param fallback writes values that are not supported by the writer itself
+     */
+    public PrologTermWriter(Function<Object, String> fallback) {
+        this(objectClass -> true, fallback);
+    }
+
+    /**
+     * Creates the writer.
+     *
+     * @param writtenDirectly decides whether the values of a class may be written by the writer
+     *            itself, e.g. because they are converted in the default way
+     * @param fallback writes values that are not supported by the writer itself or must not be
+     *            written by it
+     */
+    public PrologTermWriter(Predicate<Class<?>> writtenDirectly, Function<Object, String> fallback) {
+        this.writtenDirectly = writtenDirectly;
+        this.fallback = fallback;
+    }
+
+    /**
+     * Writes a value as Prolog text.
+     *
+     * @param value the value
+     * @return the Prolog text
+     */
+    public String write(Object value) {
+        var out = new StringBuilder();
+        write(out, value);
+        return out.toString();
+    }
+
+    /**
+     * Appends a value as Prolog text.
+     *
+     * @param out the text to append to
+     * @param value the value
+     */
+    public void write(StringBuilder out, Object value) {
+        if (value == null || !writtenDirectly.test(value.getClass())) {
+            out.append(fallback.apply(value));
+        } else if (value instanceof String) {
+            writeString(out, (String) value);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short
+                || value instanceof Byte || value instanceof BigInteger) {
+            out.append(value);
+        } else if (value instanceof Double) {
+            writeFloat(out, (Double) value, Double.toString((Double) value));
+        } else if (value instanceof Float) {
+            writeFloat(out, (Float) value, Float.toString((Float) value));
+        } else if (value instanceof Collection<?>) {
+            writeList(out, (Collection<?>) value);
+        } else if (value != null && value.getClass()
+            .isArray()) {
+            writeArray(out, value);
+        } else if (value instanceof Compound) {
+            writeCompound(out, (Compound) value);
+        } else {
+            out.append(fallback.apply(value));
+        }
+    }
+
+    /**
+     * Writes a string as the atom it stands for in the conversion policy, see
+     * {@link SWIPrologCLIConversionPolicy#unquote(String)}.
+     */
+    protected void writeString(StringBuilder out, String value) {
+        writeAtom(out, SWIPrologCLIConversionPolicy.unquote(value));
+    }
+
+    protected void writeList(StringBuilder out, Collection<?> list) {
+        out.append('[');
+        var first = true;
+        for (var item : list) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            write(out, item);
+        }
+        out.append(']');
+    }
+
+    protected void writeArray(StringBuilder out, Object array) {
+        out.append('[');
+        var length = Array.getLength(array);
+        for (int i = 0; i < length; ++i) {
+            if (i > 0) {
+                out.append(',');
+            }
+            write(out, Array.get(array, i));
+        }
+        out.append(']');
+    }
+
+    protected void writeCompound(StringBuilder out, Compound compound) {
+        writeAtom(out, compound.getFunctor());
+        if (compound.getArity() == 0) {
+            return;
+        }
+        out.append('(');
+        var args = compound.getArgs();
+        for (int i = 0; i < args.length; ++i) {
+            if (i > 0) {
+                out.append(',');
+            }
+            write(out, args[i]);
+        }
+        out.append(')');
+    }
+
+    /**
+     * Appends a float in the syntax of SWI Prolog, which also covers infinite values and NaN.
+     */
+    protected static void writeFloat(StringBuilder out, double value, String text) {
+        if (Double.isNaN(value)) {
+            out.append("1.5NaN");
+        } else if (Double.isInfinite(value)) {
+            out.append(value > 0 ? "1.0Inf" : "-1.0Inf");
+        } else {
+            out.append(text);
+        }
+    }
+
+    /**
+     * Appends an atom. Atoms that start with a lower case letter and consist of letters, digits
+     * and underscores only are written as they are, every other atom is quoted.
+     *
+     * @param out the text to append to
+     * @param atom the name of the atom
+     */
+    public static void writeAtom(StringBuilder out, String atom) {
+        if (isPlainAtom(atom)) {
+            out.append(atom);
+        } else {
+            writeQuoted(out, atom);
+        }
+    }
+
+    /**
+     * Appends a quoted atom, escaping quotes, backslashes and control characters.
+     *
+     * @param out the text to append to
+     * @param atom the name of the atom
+     */
+    public static void writeQuoted(StringBuilder out, String atom) {
+        out.append('\'');
+        for (int i = 0; i < atom.length(); ++i) {
+            char c = atom.charAt(i);
+            switch (c) {
+            case '\'':
+                out.append("\\'");
+                break;
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\b':
+                out.append("\\b");
+                break;
+            case '\f':
+                out.append("\\f");
+                break;
+            case '\u0007':
+                out.append("\\a");
+                break;
+            case '\u000B':
+                out.append("\\v");
+                break;
+            case '\0':
+                out.append("\\0\\");
+                break;
+            default:
+                if (c < ' ' || c == '\u007F') {
+                    out.append("\\x")
+                        .append(Integer.toHexString(c))
+                        .append('\\');
+                } else {
+                    out.append(c);
+                }
+            }
+        }
+        out.append('\'');
+    }
+
+    protected static boolean isPlainAtom(String atom) {
+        if (atom.isEmpty() || atom.charAt(0) < 'a' || atom.charAt(0) > 'z') {
+            return false;
+        }
+        for (int i = 1; i < atom.length(); ++i) {
+            if (!SWIPrologCLIAnswerReader.isAlphanumeric(atom.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
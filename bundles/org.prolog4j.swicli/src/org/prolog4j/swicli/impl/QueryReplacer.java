@@ -2,8 +2,6 @@ package org.prolog4j.swicli.impl;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Optional;
 
 import org.eclipse.xtext.resource.XtextResource;
 import org.palladiosimulator.supporting.prolog.api.PrologAPI;
@@ -20,11 +18,15 @@ public class QueryReplacer {
         private final Map<String, String> replacements = new HashMap<>();
         private final ConversionPolicy conversionPolicy;
         private final PrologAPI prologAPI;
+        private final PrologTermWriter termWriter;
+        private final GoalTemplate template;
 
         public NestedQuery(String goalPattern, ConversionPolicy conversionPolicy, PrologAPI prologAPI) {
             super(goalPattern);
             this.conversionPolicy = conversionPolicy;
             this.prologAPI = prologAPI;
+            this.termWriter = new PrologTermWriter(this::isWrittenDirectly, this::convertAndSerialize);
+            this.template = GoalTemplate.of(goalPattern);
         }
 
         @Override
@@ -60,11 +62,12 @@ public class QueryReplacer {
                 registerReplacement(actualArgs[i], placeholderName, temporaryReplacements);
             }
 
-            String newGoal = getGoal();
-            for (Entry<String, String> replacement : temporaryReplacements.entrySet()) {
-                newGoal = newGoal.replaceFirst(replacement.getKey(), replacement.getValue());
+            var placeholderNames = getPlaceholderNames();
+            var values = new String[placeholderNames.size()];
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = temporaryReplacements.get(placeholderNames.get(i));
             }
-            return newGoal;
+            return template.fill(values);
         }
 
         protected void registerReplacement(Object value, String placeholderName) {
@@ -72,12 +75,31 @@ public class QueryReplacer {
         }
 
         protected void registerReplacement(Object value, String placeholderName, Map<String, String> replacements) {
-            var term = Optional.of(value)
-                .filter(Term.class::isInstance)
-                .map(Term.class::cast)
-                .orElseGet(() -> (Term) conversionPolicy.convertObject(value));
-            var termString = serializeTerm(term);
-            replacements.put(placeholderName, termString);
+            replacements.put(placeholderName, write(value));
+        }
+
+        /**
+         * Writes a value as Prolog text, like it replaces a placeholder.
+         */
+        public String write(Object value) {
+            return value instanceof Term ? serializeTerm((Term) value) : termWriter.write(value);
+        }
+
+        /**
+         * Determines whether the {@link PrologTermWriter} may write the values of a class itself,
+         * because the conversion policy would convert them in the default way.
+         */
+        protected boolean isWrittenDirectly(Class<?> valueClass) {
+            return conversionPolicy instanceof SWIPrologCLIConversionPolicy
+                    && ((SWIPrologCLIConversionPolicy) conversionPolicy).hasDefaultObjectConverter(valueClass);
+        }
+
+        /**
+         * Serializes values the {@link PrologTermWriter} does not support by converting them to
+         * terms first.
+         */
+        protected String convertAndSerialize(Object value) {
+            return serializeTerm((Term) conversionPolicy.convertObject(value));
         }
 
         protected String serializeTerm(Term term) {
@@ -127,4 +149,14 @@ public class QueryReplacer {
         return nestedQuery.buildGoalString(actualArgs);
     }
 
+    /**
+     * Writes a value as Prolog text, like it is written when it replaces a placeholder.
+     *
+     * @param value the value
+     * @return the Prolog text
+     */
+    public String write(Object value) {
+        return nestedQuery.write(value);
+    }
+
 }
@@ -0,0 +1,462 @@
+package org.prolog4j.swicli.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.palladiosimulator.supporting.prolog.model.prolog.PrologFactory;
+import org.palladiosimulator.supporting.prolog.model.prolog.expressions.Expression;
+
+/**
+ * Reads the answers printed by the goals of {@link SWIPrologCLIRun} without the Xtext parser.
+ * <p>
+ * The reader understands the answers as far as they consist of integers and floats including
+ * negative ones, atoms, compound terms, proper lists and terms built with the standard infix
+ * operators of SWI Prolog and the prefix operators <code>-</code>, <code>+</code>, <code>\</code>
+ * and <code>\+</code>, which covers the typical output of <code>writeq/1</code>. Operator terms are
+ * read as compound terms of the operator, e.g. <code>a-b</code> as <code>-(a,b)</code>. The terms
+ * are created directly by the {@link PrologFactory}, so they are converted exactly like parsed
+ * terms. Answers with any other syntax such as strings, curly terms or variables are rejected, so
+ * that the caller can fall back to the Xtext parser.
+ */
+public class SWIPrologCLIAnswerReader {
+
+    /** Signals syntax the reader does not support. */
+    private static class UnsupportedSyntaxException extends Exception {
+        private static final long serialVersionUID = 3652719403362750843L;
+
+        public UnsupportedSyntaxException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** The kinds of infix operators, which determine the priorities of their arguments. */
+    protected enum OperatorType {
+        XFX, XFY, YFX
+    }
+
+    /** An infix operator. */
+    protected static class Operator {
+        private final int priority;
+        private final OperatorType type;
+
+        public Operator(int priority, OperatorType type) {
+            this.priority = priority;
+            this.type = type;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public int getMaxLeftPriority() {
+            return type == OperatorType.YFX ? priority : priority - 1;
+        }
+
+        public int getMaxRightPriority() {
+            return type == OperatorType.XFY ? priority : priority - 1;
+        }
+    }
+
+    private static final PrologFactory FACTORY = PrologFactory.eINSTANCE;
+
+    /** The priority of arguments of compound terms, lists and bindings. */
+    private static final int ARGUMENT_PRIORITY = 999;
+
+    /** The priority of terms in parentheses. */
+    private static final int MAX_PRIORITY = 1200;
+
+    private static final String SYMBOL_CHARS = "+-*/\\^<>=~:.?@#&$";
+
+    /** The priorities of the prefix operators, which are all of type <code>fy</code>. */
+    private static final Map<String, Integer> PREFIX_OPERATORS = Map.of("-", 200, "+", 200, "\\", 200, "\\+", 900);
+
+    /** The standard infix operators of SWI Prolog by name. */
+    private static final Map<String, Operator> INFIX_OPERATORS = new HashMap<>();
+
+    static {
+        addInfixOperators(1200, OperatorType.XFX, ":-", "-->");
+        addInfixOperators(1100, OperatorType.XFY, ";");
+        addInfixOperators(1050, OperatorType.XFY, "->", "*->");
+        addInfixOperators(1000, OperatorType.XFY, ",");
+        addInfixOperators(990, OperatorType.XFX, ":=");
+        addInfixOperators(700, OperatorType.XFX, "=", "\\=", "==", "\\==", "@<", "@>", "@=<", "@>=", "=..", "is",
+                "=:=", "=\\=", "<", ">", "=<", ">=", ">:<", ":<", "as");
+        addInfixOperators(600, OperatorType.XFY, ":");
+        addInfixOperators(500, OperatorType.YFX, "+", "-", "/\\", "\\/", "xor");
+        addInfixOperators(400, OperatorType.YFX, "*", "/", "//", "rdiv", "<<", ">>", "mod", "rem", "div", "divmod");
+        addInfixOperators(200, OperatorType.XFX, "**");
+        addInfixOperators(200, OperatorType.XFY, "^");
+    }
+
+    private final String text;
+    private int position = 0;
+
+    protected SWIPrologCLIAnswerReader(String text) {
+        this.text = text;
+    }
+
+    private static void addInfixOperators(int priority, OperatorType type, String... names) {
+        for (var name : names) {
+            INFIX_OPERATORS.put(name, new Operator(priority, type));
+        }
+    }
+
+    /**
+     * Reads the answers of a goal built by {@link SWIPrologCLIRun#prepareGoal(String)}.
+     *
+     * @param text the output of the goal without warnings and errors
+     * @return the bindings of every answer or <code>null</code> if the text contains syntax the
+     *         reader does not support
+     */
+    public static List<Map<String, Object>> readAnswers(String text) {
+        try {
+            return new SWIPrologCLIAnswerReader(text).readAnswers();
+        } catch (UnsupportedSyntaxException e) {
+            return null;
+        }
+    }
+
+    protected List<Map<String, Object>> readAnswers() throws UnsupportedSyntaxException {
+        var answers = new ArrayList<Map<String, Object>>();
+        skipWhitespace();
+        while (!lookingAt("false")) {
+            answers.add(readAnswer());
+            skipWhitespace();
+            expect(';');
+            skipWhitespace();
+        }
+        position += "false".length();
+        skipWhitespace();
+        if (position != text.length()) {
+            throw new UnsupportedSyntaxException();
+        }
+        return answers;
+    }
+
+    protected Map<String, Object> readAnswer() throws UnsupportedSyntaxException {
+        var answer = new LinkedHashMap<String, Object>();
+        if (lookingAt("true")) {
+            position += "true".length();
+            return answer;
+        }
+        while (true) {
+            var variable = readVariableName();
+            skipWhitespace();
+            expect('=');
+            skipWhitespace();
+            answer.put(variable, readTerm());
+            skipWhitespace();
+            if (!lookingAt(",")) {
+                return answer;
+            }
+            position++;
+            skipWhitespace();
+        }
+    }
+
+    protected String readVariableName() throws UnsupportedSyntaxException {
+        var start = position;
+        if (position >= text.length() || !(Character.isUpperCase(text.charAt(position)) || text.charAt(position) == '_')) {
+            throw new UnsupportedSyntaxException();
+        }
+        while (position < text.length() && isAlphanumeric(text.charAt(position))) {
+            position++;
+        }
+        return text.substring(start, position);
+    }
+
+    protected Expression readTerm() throws UnsupportedSyntaxException {
+        return readTerm(ARGUMENT_PRIORITY);
+    }
+
+    /**
+     * Reads a term whose priority does not exceed the given one. Infix operators are applied by
+     * precedence climbing, operators of a higher priority are left for the caller.
+     */
+    protected Expression readTerm(int maxPriority) throws UnsupportedSyntaxException {
+        var left = readPrimaryTerm();
+        var leftPriority = 0;
+        while (true) {
+            var start = position;
+            skipWhitespace();
+            var name = readOperatorName();
+            var operator = name == null ? null : INFIX_OPERATORS.get(name);
+            if (operator == null || operator.getPriority() > maxPriority
+                    || leftPriority > operator.getMaxLeftPriority()) {
+                position = start;
+                return left;
+            }
+            skipWhitespace();
+            var right = readTerm(operator.getMaxRightPriority());
+            var term = FACTORY.createCompoundTerm();
+            term.setValue(name);
+            term.getArguments()
+                .add(left);
+            term.getArguments()
+                .add(right);
+            left = term;
+            leftPriority = operator.getPriority();
+        }
+    }
+
+    protected Expression readPrimaryTerm() throws UnsupportedSyntaxException {
+        if (position >= text.length()) {
+            throw new UnsupportedSyntaxException();
+        }
+        char c = text.charAt(position);
+        if (isDigit(c) || c == '-' && position + 1 < text.length() && isDigit(text.charAt(position + 1))) {
+            return readNumber();
+        }
+        if (c >= 'a' && c <= 'z') {
+            return readAtomOrCompound();
+        }
+        if (c == '\'') {
+            var term = FACTORY.createAtomicQuotedString();
+            term.setValue(readQuotedAtom());
+            if (lookingAt("(")) {
+                // a quoted functor
+                throw new UnsupportedSyntaxException();
+            }
+            return term;
+        }
+        if (c == '[') {
+            return readList();
+        }
+        if (c == '(') {
+            position++;
+            skipWhitespace();
+            var term = readTerm(MAX_PRIORITY);
+            skipWhitespace();
+            expect(')');
+            return term;
+        }
+        if (isSymbolChar(c)) {
+            return readSymbolAtomOrPrefixTerm();
+        }
+        throw new UnsupportedSyntaxException();
+    }
+
+    /**
+     * Reads an atom of symbol characters, which is either an operand, the functor of a compound
+     * term or a prefix operator applied to the following term.
+     */
+    protected Expression readSymbolAtomOrPrefixTerm() throws UnsupportedSyntaxException {
+        var term = FACTORY.createCompoundTerm();
+        term.setValue(readOperatorName());
+        if (lookingAt("(")) {
+            position++;
+            readArguments(term.getArguments(), ')');
+            return term;
+        }
+        var priority = PREFIX_OPERATORS.get(term.getValue());
+        if (priority != null) {
+            var start = position;
+            skipWhitespace();
+            if (position < text.length() && startsTerm(text.charAt(position))) {
+                term.getArguments()
+                    .add(readTerm(priority));
+                return term;
+            }
+            position = start;
+        }
+        return term;
+    }
+
+    /**
+     * Reads the name of an operator, which is a sequence of symbol characters, a word or one of
+     * the solo characters <code>,</code> and <code>;</code>.
+     *
+     * @return the name or <code>null</code> if there is no operator at the current position
+     */
+    protected String readOperatorName() {
+        if (position >= text.length()) {
+            return null;
+        }
+        var start = position;
+        char c = text.charAt(position);
+        if (c == ',' || c == ';') {
+            position++;
+        } else if (isSymbolChar(c)) {
+            while (position < text.length() && isSymbolChar(text.charAt(position))) {
+                position++;
+            }
+        } else if (c >= 'a' && c <= 'z') {
+            while (position < text.length() && isAlphanumeric(text.charAt(position))) {
+                position++;
+            }
+        } else {
+            return null;
+        }
+        return text.substring(start, position);
+    }
+
+    protected Expression readNumber() throws UnsupportedSyntaxException {
+        var start = position;
+        if (lookingAt("-")) {
+            position++;
+        }
+        skipDigits();
+        var isFloat = false;
+        if (position + 1 < text.length() && text.charAt(position) == '.' && isDigit(text.charAt(position + 1))) {
+            isFloat = true;
+            position++;
+            skipDigits();
+        }
+        if (position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+            isFloat = true;
+            position++;
+            if (position < text.length() && (text.charAt(position) == '+' || text.charAt(position) == '-')) {
+                position++;
+            }
+            if (position >= text.length() || !isDigit(text.charAt(position))) {
+                throw new UnsupportedSyntaxException();
+            }
+            skipDigits();
+        }
+        if (position < text.length() && isAlphanumeric(text.charAt(position))) {
+            // special notations such as 1.0Inf or 0'c
+            throw new UnsupportedSyntaxException();
+        }
+        var number = text.substring(start, position);
+        try {
+            if (isFloat) {
+                var term = FACTORY.createAtomicDouble();
+                term.setValue(Double.parseDouble(number));
+                return term;
+            }
+            var term = FACTORY.createAtomicNumber();
+            term.setValue(Integer.parseInt(number));
+            return term;
+        } catch (NumberFormatException e) {
+            // integers exceeding the value range of the model
+            throw new UnsupportedSyntaxException();
+        }
+    }
+
+    protected Expression readAtomOrCompound() throws UnsupportedSyntaxException {
+        var start = position;
+        while (position < text.length() && isAlphanumeric(text.charAt(position))) {
+            position++;
+        }
+        var term = FACTORY.createCompoundTerm();
+        term.setValue(text.substring(start, position));
+        if (lookingAt("(")) {
+            position++;
+            readArguments(term.getArguments(), ')');
+        }
+        return term;
+    }
+
+    protected Expression readList() throws UnsupportedSyntaxException {
+        position++;
+        var term = FACTORY.createList();
+        skipWhitespace();
+        if (lookingAt("]")) {
+            position++;
+            return term;
+        }
+        readArguments(term.getHeads(), ']');
+        return term;
+    }
+
+    protected void readArguments(List<Expression> arguments, char end) throws UnsupportedSyntaxException {
+        while (true) {
+            skipWhitespace();
+            arguments.add(readTerm());
+            skipWhitespace();
+            if (position >= text.length()) {
+                throw new UnsupportedSyntaxException();
+            }
+            char c = text.charAt(position++);
+            if (c == end) {
+                return;
+            }
+            if (c != ',') {
+                // partial lists and operators
+                throw new UnsupportedSyntaxException();
+            }
+        }
+    }
+
+    protected String readQuotedAtom() throws UnsupportedSyntaxException {
+        var value = new StringBuilder();
+        position++;
+        while (position < text.length()) {
+            char c = text.charAt(position++);
+            if (c == '\'') {
+                if (lookingAt("'")) {
+                    value.append('\'');
+                    position++;
+                    continue;
+                }
+                return value.toString();
+            }
+            if (c == '\\') {
+                if (position >= text.length()) {
+                    break;
+                }
+                char escaped = text.charAt(position++);
+                switch (escaped) {
+                case '\\':
+                case '\'':
+                    value.append(escaped);
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                default:
+                    throw new UnsupportedSyntaxException();
+                }
+                continue;
+            }
+            value.append(c);
+        }
+        throw new UnsupportedSyntaxException();
+    }
+
+    protected void expect(char c) throws UnsupportedSyntaxException {
+        if (position >= text.length() || text.charAt(position) != c) {
+            throw new UnsupportedSyntaxException();
+        }
+        position++;
+    }
+
+    protected boolean lookingAt(String prefix) {
+        return text.startsWith(prefix, position);
+    }
+
+    protected void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    protected void skipDigits() {
+        while (position < text.length() && isDigit(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    protected static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    protected static boolean isSymbolChar(char c) {
+        return SYMBOL_CHARS.indexOf(c) >= 0;
+    }
+
+    protected static boolean startsTerm(char c) {
+        return isDigit(c) || c >= 'a' && c <= 'z' || c == '\'' || c == '[' || c == '(' || isSymbolChar(c);
+    }
+
+    protected static boolean isAlphanumeric(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_';
+    }
+
+}
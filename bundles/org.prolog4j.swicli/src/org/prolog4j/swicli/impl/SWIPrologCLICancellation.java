@@ -0,0 +1,124 @@
+package org.prolog4j.swicli.impl;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.prolog4j.QueryCancelledException;
+import org.prolog4j.QueryTimeoutException;
+
+/**
+ * The cancellation handle of a single search for solutions. The SWI Prolog process that runs the
+ * search is attached to the handle while it is busy and is terminated if the search is cancelled
+ * or exceeds its time limit. Terminating the process is the only way to abort a search reliably,
+ * because the process does not read further requests while it is solving a goal.
+ */
+public class SWIPrologCLICancellation implements AutoCloseable {
+
+    /** Terminates the processes of searches that exceed their time limit. */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        var timer = new Thread(r, "SWI Prolog query timer");
+        timer.setDaemon(true);
+        return timer;
+    });
+
+    private final long timeout;
+    private final ScheduledFuture<?> timer;
+    private Runnable terminator;
+    private boolean cancelled = false;
+    private boolean timedOut = false;
+
+    /**
+     * Creates the handle and starts the timer.
+     *
+     * @param timeout the time limit of the search in milliseconds, zero for no limit
+     * @param gracePeriod the time in milliseconds the process may take beyond the time limit
+     *            before it is terminated, e.g. because it enforces the time limit on its own
+     */
+    public SWIPrologCLICancellation(long timeout, long gracePeriod) {
+        this.timeout = timeout;
+        this.timer = timeout > 0 ? TIMER.schedule(this::expire, timeout + gracePeriod, TimeUnit.MILLISECONDS) : null;
+    }
+
+    /**
+     * Returns the time limit of the search.
+     *
+     * @return the time limit in milliseconds, zero if the search is not limited
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Attaches the process that runs the search. If the search has already been aborted, the
+     * process is terminated right away.
+     *
+     * @param terminator terminates the process
+     */
+    public synchronized void attach(Runnable terminator) {
+        this.terminator = terminator;
+        if (isAborted()) {
+            terminator.run();
+        }
+    }
+
+    /**
+     * Detaches the process, so that it is not terminated any more.
+     */
+    public synchronized void detach() {
+        this.terminator = null;
+    }
+
+    /**
+     * Cancels the search.
+     */
+    public synchronized void cancel() {
+        cancelled = true;
+        terminate();
+    }
+
+    /**
+     * Aborts the search because it exceeded its time limit.
+     */
+    protected synchronized void expire() {
+        timedOut = true;
+        terminate();
+    }
+
+    public synchronized boolean isAborted() {
+        return cancelled || timedOut;
+    }
+
+    /**
+     * Reports an aborted search.
+     *
+     * @param query the query whose solutions are searched
+     * @throws QueryTimeoutException if the search exceeded its time limit
+     * @throws QueryCancelledException if the search has been cancelled
+     */
+    public synchronized void throwIfAborted(String query) {
+        if (timedOut) {
+            throw new QueryTimeoutException(query, timeout);
+        }
+        if (cancelled) {
+            throw new QueryCancelledException(query);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (timer != null) {
+            timer.cancel(false);
+        }
+        terminator = null;
+    }
+
+    protected void terminate() {
+        if (terminator != null) {
+            terminator.run();
+            terminator = null;
+        }
+    }
+
+}
@@ -4,7 +4,10 @@ import java.io.StringReader;
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.eclipse.xtext.parser.IParseResult;
@@ -31,40 +34,43 @@ public class SWIPrologCLIConversionPolicy extends ConversionPolicy {
     private static final Class<Collection<?>> CLZ_COLLECTION = (Class<Collection<?>>) ((Class<?>) Collection.class);
     private final PrologParser parser;
 
+    /** The object converters registered by the policy itself. */
+    private final Set<Converter<?>> defaultObjectConverters = Collections.newSetFromMap(new IdentityHashMap<>());
+
     public SWIPrologCLIConversionPolicy(PrologParser parser) {
         this.parser = parser;
 
-        addObjectConverter(String.class, new Converter<String>() {
+        addDefaultObjectConverter(String.class, new Converter<String>() {
             @Override
             public Object convert(String value) {
                 AtomicQuotedString term = FACTORY.createAtomicQuotedString();
-                term.setValue(value.replaceFirst("'([^']+)'", "$1"));
+                term.setValue(unquote(value));
                 return term;
             }
         });
 
-        addObjectConverter(Integer.class, new Converter<Integer>() {
+        addDefaultObjectConverter(Integer.class, new Converter<Integer>() {
             @Override
             public Object convert(Integer value) {
                 return term(value);
             }
         });
 
-        addObjectConverter(Long.class, new Converter<Long>() {
+        addDefaultObjectConverter(Long.class, new Converter<Long>() {
             @Override
             public Object convert(Long value) {
                 return term(value.intValue());
             }
         });
 
-        addObjectConverter(Double.class, new Converter<Double>() {
+        addDefaultObjectConverter(Double.class, new Converter<Double>() {
             @Override
             public Object convert(Double value) {
                 return term(value);
             }
         });
 
-        addObjectConverter(CLZ_COLLECTION, new Converter<Collection<?>>() {
+        addDefaultObjectConverter(CLZ_COLLECTION, new Converter<Collection<?>>() {
             @Override
             public Object convert(Collection<?> value) {
                 var listTerm = FACTORY.createList();
@@ -76,7 +82,7 @@ public class SWIPrologCLIConversionPolicy extends ConversionPolicy {
             }
         });
 
-        addObjectConverter(Compound.class, new Converter<Compound>() {
+        addDefaultObjectConverter(Compound.class, new Converter<Compound>() {
             @Override
             public Object convert(Compound value) {
                 var term = FACTORY.createCompoundTerm();
@@ -151,6 +157,40 @@ public class SWIPrologCLIConversionPolicy extends ConversionPolicy {
         });
     }
 
+    private <T> void addDefaultObjectConverter(Class<T> class_, Converter<T> converter) {
+        defaultObjectConverters.add(converter);
+        addObjectConverter(class_, converter);
+    }
+
+    /**
+     * Determines whether the objects of a class are converted by a converter of the policy itself
+     * or by none at all, rather than by a converter registered by the user. The
+     * {@link PrologTermWriter} writes such objects directly.
+     *
+     * @param objectClass the class of the objects
+     * @return <code>true</code> if no converter has been registered for the class by the user
+     */
+    public boolean hasDefaultObjectConverter(Class<?> objectClass) {
+        var converter = findObjectConverter(objectClass);
+        return converter == null || defaultObjectConverters.contains(converter);
+    }
+
+    /**
+     * Returns the name of the atom a string stands for. A string that is quoted as a whole, such
+     * as <code>'Socrates'</code>, stands for the atom between the quotes. Any other string stands
+     * for the atom of the same name, including its quotes.
+     *
+     * @param value the string
+     * @return the name of the atom
+     */
+    public static String unquote(String value) {
+        var length = value.length();
+        if (length > 2 && value.charAt(0) == '\'' && value.indexOf('\'', 1) == length - 1) {
+            return value.substring(1, length - 1);
+        }
+        return value;
+    }
+
     @Override
     public boolean match(Object term1, Object term2) {
         // TODO Auto-generated method stub
@@ -0,0 +1,70 @@
+package org.prolog4j.swicli.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A handle of an SWI Prolog engine running in a {@link SWIPrologCLIWorker}. The cursor does not
+ * block the worker, but the {@link SWIPrologCLIWorkerPool} keeps the worker for the cursor until
+ * it is closed.
+ */
+public class SWIPrologCLICursor implements Closeable {
+
+    private final SWIPrologCLIWorker worker;
+    private final long engineId;
+    private final long generation;
+    private final String firstOutput;
+    private boolean closed = false;
+    private Runnable closeAction;
+
+    public SWIPrologCLICursor(SWIPrologCLIWorker worker, long engineId, long generation, String firstOutput) {
+        this.worker = worker;
+        this.engineId = engineId;
+        this.generation = generation;
+        this.firstOutput = firstOutput;
+    }
+
+    /**
+     * Returns the output of creating the engine including its first answer.
+     *
+     * @return the output
+     */
+    public String getFirstOutput() {
+        return firstOutput;
+    }
+
+    /**
+     * Fetches the next answer.
+     *
+     * @param cancellation the cancellation handle of the search or <code>null</code>
+     * @return the output of the engine
+     * @throws IOException if the worker process failed in between
+     */
+    public synchronized String next(SWIPrologCLICancellation cancellation) throws IOException {
+        if (closed) {
+            return "false";
+        }
+        return worker.next(engineId, generation, cancellation);
+    }
+
+    /**
+     * Sets an action that is run after the engine has been destroyed.
+     *
+     * @param action the action
+     */
+    public synchronized void onClose(Runnable action) {
+        closeAction = action;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!closed) {
+            closed = true;
+            worker.closeEngine(engineId, generation);
+            if (closeAction != null) {
+                closeAction.run();
+            }
+        }
+    }
+
+}
@@ -1,14 +1,19 @@
 package org.prolog4j.swicli.impl;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.prolog4j.Solution;
 import org.prolog4j.UnknownVariableException;
 
 public class SWIPrologCLIFailedSolution<A> extends Solution<A> {
 
+    private final boolean error;
+
     public SWIPrologCLIFailedSolution(String resultString, String syntaxErrors) {
+        this.error = true;
         System.err.println("Errors while parsing result string:");
         System.err.println(syntaxErrors);
         System.err.println("Result string:");
@@ -16,11 +21,12 @@ public class SWIPrologCLIFailedSolution<A> extends Solution<A> {
     }
     
     public SWIPrologCLIFailedSolution(Exception e) {
+        this.error = true;
         e.printStackTrace();
     }
     
     public SWIPrologCLIFailedSolution() {
-        
+        this.error = false;
     }
     
     @Override
@@ -33,6 +39,14 @@ public class SWIPrologCLIFailedSolution<A> extends Solution<A> {
         return false;
     }
 
+    /**
+     * Only goals that actually failed can be cached, errors are not cached.
+     */
+    @Override
+    protected Map<String, Object> getBindings() {
+        return error ? null : Collections.emptyMap();
+    }
+
     @Override
     public void collect(Collection<?>... collections) {
         throw new UnsupportedOperationException();
@@ -0,0 +1,160 @@
+package org.prolog4j.swicli.impl;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A new SWI Prolog process that prints all solutions of a goal built by
+ * {@link SWIPrologCLIRun#prepareGoal(String)}, but whose output is read answer by answer. The
+ * first answer is read as soon as it is available and the remaining output is only read if the
+ * caller needs further answers, so all answers are taken from the same run. In the meantime, the
+ * process blocks as soon as the pipe of its standard output is full, so it does not search far
+ * ahead of the caller.
+ * <p>
+ * The process stays attached to the cancellation handle of the run until its output has been read
+ * completely, so the time limit of the search applies to the whole run. Closing or cancelling
+ * the run terminates the process if it is still running.
+ */
+public class SWIPrologCLIPendingRun implements Closeable {
+
+    /** Printed on a line of its own after every answer. */
+    private static final String END_OF_ANSWER = ";";
+
+    private final Process process;
+    private final CompletableFuture<Void> programWriter;
+    private final SWIPrologCLICancellation cancellation;
+    private final BufferedReader output;
+    private String firstOutput;
+    private volatile boolean complete = false;
+
+    /**
+     * Creates the run of a process that has already been started.
+     *
+     * @param process the process
+     * @param programWriter writes the program to the standard input of the process
+     * @param cancellation the cancellation handle the process is attached to
+     */
+    public SWIPrologCLIPendingRun(Process process, CompletableFuture<Void> programWriter,
+            SWIPrologCLICancellation cancellation) {
+        this.process = process;
+        this.programWriter = programWriter;
+        this.cancellation = cancellation;
+        this.output = new BufferedReader(new InputStreamReader(process.getInputStream()));
+    }
+
+    /**
+     * Reads the output up to the end of the first answer. If the goal has no answer, the output is
+     * read completely.
+     *
+     * @return the output including the first answer
+     */
+    public synchronized String readFirstOutput() throws IOException, InterruptedException, ExecutionException {
+        if (firstOutput == null) {
+            try {
+                var text = new StringBuilder();
+                String line;
+                while ((line = output.readLine()) != null) {
+                    text.append(line)
+                        .append('\n');
+                    if (END_OF_ANSWER.equals(line)) {
+                        firstOutput = text.toString();
+                        return firstOutput;
+                    }
+                }
+                complete();
+                firstOutput = text.toString();
+            } catch (IOException | InterruptedException | ExecutionException | RuntimeException e) {
+                close();
+                throw e;
+            }
+        }
+        return firstOutput;
+    }
+
+    /**
+     * Returns the output read by {@link #readFirstOutput()}.
+     *
+     * @return the output including the first answer or <code>null</code> if it has not been read
+     */
+    public synchronized String getFirstOutput() {
+        return firstOutput;
+    }
+
+    /**
+     * Returns whether the output has been read completely and the process has terminated.
+     *
+     * @return <code>true</code> if the run is complete
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Reads the output following the first answer and awaits the termination of the process.
+     *
+     * @return the remaining output, which is empty if the output has already been read completely
+     */
+    public synchronized String readRemainingOutput() throws IOException, InterruptedException, ExecutionException {
+        if (firstOutput == null) {
+            throw new IllegalStateException("The first answer has not been read.");
+        }
+        if (complete) {
+            return "";
+        }
+        try {
+            var text = new StringWriter();
+            output.transferTo(text);
+            complete();
+            return text.toString();
+        } catch (IOException | InterruptedException | ExecutionException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reports an aborted run.
+     *
+     * @param query the query whose solutions are searched
+     * @see SWIPrologCLICancellation#throwIfAborted(String)
+     */
+    public void throwIfAborted(String query) {
+        cancellation.throwIfAborted(query);
+    }
+
+    protected void complete() throws InterruptedException, ExecutionException {
+        process.waitFor();
+        programWriter.get();
+        SWIPrologCLIRun.checkExitValue(process, "");
+        complete = true;
+        cancellation.detach();
+        cancellation.close();
+    }
+
+    /**
+     * Cancels the run, so that reading its output fails with
+     * {@link org.prolog4j.QueryCancelledException}. The lock of the run is not taken, so the run
+     * can be cancelled while another thread reads its output.
+     */
+    public void cancel() {
+        cancellation.cancel();
+        cancellation.close();
+    }
+
+    /**
+     * Terminates the process if its output has not been read completely.
+     */
+    @Override
+    public void close() {
+        if (!complete) {
+            process.destroyForcibly();
+        }
+        cancellation.close();
+    }
+
+}
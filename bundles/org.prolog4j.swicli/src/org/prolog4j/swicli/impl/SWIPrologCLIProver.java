@@ -1,37 +1,128 @@
 package org.prolog4j.swicli.impl;
 
+import java.io.IOException;
 import java.io.StringReader;
-import java.util.LinkedHashSet;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 import org.eclipse.xtext.parser.IParseResult;
 import org.palladiosimulator.supporting.prolog.api.PrologAPI;
 import org.palladiosimulator.supporting.prolog.model.prolog.CompoundTerm;
 import org.prolog4j.AbstractProver;
+import org.prolog4j.BoundGoal;
+import org.prolog4j.ColumnarTable;
+import org.prolog4j.Compound;
 import org.prolog4j.ConversionPolicy;
+import org.prolog4j.ErrorSolution;
 import org.prolog4j.Query;
+import org.prolog4j.Solution;
+import org.prolog4j.swicli.SWIPrologCLIParameters;
 import org.prolog4j.swicli.SWIPrologExecutable;
 
-public class SWIPrologCLIProver extends AbstractProver {
+public class SWIPrologCLIProver extends AbstractProver implements AutoCloseable {
 
 	private static final long serialVersionUID = -48719179409278734L;
 
-	private final Set<String> predicateProperties = new LinkedHashSet<>();
-	private final StringBuilder theory = new StringBuilder();
+	/** Terminates the worker processes of provers that are no longer referenced. */
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	private final SWIPrologCLITheory theory = new SWIPrologCLITheory();
 	private final PrologAPI prologApi;
 	private final SWIPrologExecutable executable;
+	private final transient SWIPrologCLITheoryCache theoryCache;
+	private final transient SWIPrologCLIWorkerPool workerPool;
 	
 	public SWIPrologCLIProver(ConversionPolicy conversionPolicy, PrologAPI prologApi, SWIPrologExecutable executable) {
+		this(conversionPolicy, prologApi, executable, executable.getParameters());
+	}
+
+	public SWIPrologCLIProver(ConversionPolicy conversionPolicy, PrologAPI prologApi, SWIPrologExecutable executable,
+	        Map<Object, Object> parameters) {
 		super(conversionPolicy);
 		this.prologApi = prologApi;
 		this.executable = executable;
+		var cacheDirectory = SWIPrologCLIParameters.getPath(parameters, SWIPrologCLIParameters.CACHE_DIRECTORY);
+		this.theoryCache = cacheDirectory == null ? null : new SWIPrologCLITheoryCache(executable, cacheDirectory);
+		if (SWIPrologCLIParameters.getBoolean(parameters, SWIPrologCLIParameters.WORKER, false)) {
+		    var newWorkerPool = new SWIPrologCLIWorkerPool(executable, theoryCache, parameters);
+		    CLEANER.register(this, newWorkerPool::close);
+		    this.workerPool = newWorkerPool;
+		} else {
+		    this.workerPool = null;
+		}
 	}
 
 	@Override
 	public Query query(String goal) {
-	    String theoryPrefix = predicateProperties.stream().collect(Collectors.joining(System.lineSeparator())) + System.lineSeparator();
-	    return new SWIPrologCLIQuery(getConversionPolicy(), prologApi, executable, theoryPrefix + theory.toString(), goal);
+	    return new SWIPrologCLIQuery(getConversionPolicy(), prologApi, executable, workerPool, theory, theoryCache, goal);
+	}
+
+	/**
+	 * Solves all goals by a single SWI Prolog run or worker request instead of one run or request
+	 * per goal. SWI Prolog reads and solves every goal on its own, so an erroneous goal does not
+	 * affect the other goals. All solutions of the goals are computed up front.
+	 */
+	@Override
+	public <A> List<Solution<A>> solveBatch(List<BoundGoal> goals) {
+	    var solutions = new ArrayList<Solution<A>>(Collections.nCopies(goals.size(), (Solution<A>) null));
+	    var cliRun = new SWIPrologCLIRun(executable, prologApi);
+	    var indices = new ArrayList<Integer>();
+	    var queries = new ArrayList<SWIPrologCLIQuery>();
+	    var newGoals = new ArrayList<String>();
+	    var preparedGoals = new ArrayList<String>();
+	    for (int i = 0; i < goals.size(); ++i) {
+	        var goal = goals.get(i);
+	        try {
+	            checkGoal(goal.getGoal());
+	            var query = (SWIPrologCLIQuery) cachedQuery(goal.getGoal());
+	            var newGoal = query.getQueryString(goal.getActualArgs());
+	            preparedGoals.add(cliRun.prepareGoal(newGoal));
+	            newGoals.add(newGoal);
+	            queries.add(query);
+	            indices.add(i);
+	        } catch (RuntimeException e) {
+	            solutions.set(i, new ErrorSolution<A>(e));
+	        }
+	    }
+	    if (queries.isEmpty()) {
+	        return solutions;
+	    }
+
+	    List<String> outputs;
+	    try {
+	        outputs = queries.get(0).executeBatch(preparedGoals);
+	    } catch (IOException | InterruptedException | ExecutionException e) {
+	        for (int index : indices) {
+	            solutions.set(index, new SWIPrologCLIFailedSolution<A>(e));
+	        }
+	        return solutions;
+	    }
+	    for (int k = 0; k < queries.size(); ++k) {
+	        try {
+	            if (k >= outputs.size()) {
+	                throw new IllegalStateException("SWI Prolog terminated before solving the goal.");
+	            }
+	            solutions.set(indices.get(k), queries.get(k).<A>createSolution(outputs.get(k), newGoals.get(k), null));
+	        } catch (RuntimeException e) {
+	            solutions.set(indices.get(k), new ErrorSolution<A>(e));
+	        }
+	    }
+	    return solutions;
+	}
+
+	/**
+	 * Terminates the worker processes if the prover runs in worker mode.
+	 */
+	@Override
+	public void close() {
+	    if (workerPool != null) {
+	        workerPool.close();
+	    }
 	}
 
     @Override
@@ -46,9 +137,56 @@ public class SWIPrologCLIProver extends AbstractProver {
         String factName = ct.getValue();
         int factArity = ct.getArguments().size();
         String dynamicStatement = String.format(":- dynamic(%s/%d).", factName, factArity);
-        predicateProperties.add(dynamicStatement);
+        theory.declare(dynamicStatement);
         String assertzGoal = String.format(":- assertz(%s).", newFact);
-        addTheory(assertzGoal);
+        theory.update(assertzGoal);
+        invalidateAnswers();
+    }
+
+    /**
+     * Asserts the facts by a single update of the theory. The facts are written as Prolog text
+     * directly, so neither the facts nor their arguments are parsed.
+     */
+    @Override
+    public void assertAll(String functor, Iterable<Object[]> rows) {
+        var writer = new QueryReplacer(getConversionPolicy(), prologApi, "");
+        var directives = new StringBuilder();
+        var arities = new HashSet<Integer>();
+        for (var row : rows) {
+            if (arities.add(row.length)) {
+                var declaration = new StringBuilder(":- dynamic(");
+                PrologTermWriter.writeAtom(declaration, functor);
+                theory.declare(declaration.append('/')
+                    .append(row.length)
+                    .append(").")
+                    .toString());
+            }
+            directives.append(":- assertz(")
+                .append(writer.write(new Compound(functor, row)))
+                .append(").")
+                .append(System.lineSeparator());
+        }
+        if (directives.length() > 0) {
+            theory.update(directives.toString());
+            invalidateAnswers();
+        }
+    }
+
+    /**
+     * Adds the table to the theory without rendering its facts. Workers load the facts in pieces,
+     * only goals that are solved by a new process render them all at once. The indexes are
+     * ignored, because SWI Prolog indexes the facts on demand.
+     */
+    @Override
+    public void addTable(ColumnarTable table, int[]... indexes) {
+        var declaration = new StringBuilder(":- dynamic(");
+        PrologTermWriter.writeAtom(declaration, table.getFunctor());
+        theory.declare(declaration.append('/')
+            .append(table.getArity())
+            .append(").")
+            .toString());
+        theory.addTable(table);
+        invalidateAnswers();
     }
 
     @Override
@@ -58,7 +196,8 @@ public class SWIPrologCLIProver extends AbstractProver {
             newFact = newFact.substring(0, newFact.length() - 1);
         }
         String retractClause = String.format(":- retract(%s).", newFact);
-        addTheory(retractClause);
+        theory.update(retractClause);
+        invalidateAnswers();
     }
 
     @Override
@@ -68,8 +207,8 @@ public class SWIPrologCLIProver extends AbstractProver {
 
 	@Override
 	public void addTheory(String theory) {
-		this.theory.append(theory);
-		this.theory.append(System.lineSeparator());
+		this.theory.add(theory);
+		invalidateAnswers();
 	}
 
 	@Override
@@ -2,10 +2,17 @@ package org.prolog4j.swicli.impl;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -13,12 +20,13 @@ import org.eclipse.xtext.nodemodel.INode;
 import org.eclipse.xtext.nodemodel.SyntaxErrorMessage;
 import org.eclipse.xtext.parser.IParseResult;
 import org.palladiosimulator.supporting.prolog.api.PrologAPI;
-import org.palladiosimulator.supporting.prolog.model.prolog.False;
 import org.palladiosimulator.supporting.prolog.model.prolog.expressions.Expression;
 import org.palladiosimulator.supporting.prolog.parser.antlr.PrologParser;
 import org.prolog4j.ConversionPolicy;
 import org.prolog4j.InvalidQueryException;
+import org.prolog4j.ProverExecutors;
 import org.prolog4j.Query;
+import org.prolog4j.QueryTimeoutException;
 import org.prolog4j.Solution;
 import org.prolog4j.swicli.SWIPrologExecutable;
 
@@ -28,16 +36,26 @@ public class SWIPrologCLIQuery extends Query {
     private final ConversionPolicy cp;
     private final PrologAPI prologAPI;
     private final SWIPrologExecutable executable;
-    private final String theory;
+    private final SWIPrologCLIWorkerPool workerPool;
+    private final SWIPrologCLITheory theory;
+    private final SWIPrologCLITheoryCache theoryCache;
     private final PrologParser prologParser;
     private final QueryReplacer queryReplacer;
     
     public SWIPrologCLIQuery(ConversionPolicy cp, PrologAPI prologAPI, SWIPrologExecutable executable, String theory, String goalPattern) {
+        this(cp, prologAPI, executable, null, createTheory(theory), null, goalPattern);
+    }
+
+    public SWIPrologCLIQuery(ConversionPolicy cp, PrologAPI prologAPI, SWIPrologExecutable executable,
+            SWIPrologCLIWorkerPool workerPool, SWIPrologCLITheory theory, SWIPrologCLITheoryCache theoryCache,
+            String goalPattern) {
         super(goalPattern);
         this.cp = cp;
         this.prologAPI = prologAPI;
         this.executable = executable;
+        this.workerPool = workerPool;
         this.theory = theory;
+        this.theoryCache = theoryCache;
         this.prologParser = prologAPI.getParser();
         this.queryReplacer = new QueryReplacer(cp, prologAPI, goalPattern);
     }
@@ -46,36 +64,250 @@ public class SWIPrologCLIQuery extends Query {
     public <A> Solution<A> solve(Object... actualArgs) {
         String newGoal = queryReplacer.getQueryString(actualArgs);
         
-        String resultString = null;
+        if (workerPool != null && workerPool.isStreaming()) {
+            return solveOnDemand(newGoal);
+        }
+
+        if (workerPool != null) {
+            String resultString;
+            try {
+                resultString = executeQuery(newGoal, theory.getVersion());
+            } catch (IOException | InterruptedException | ExecutionException e) {
+                return new SWIPrologCLIFailedSolution<A>(e);
+            }
+            return createSolution(resultString, newGoal, null);
+        }
+
+        var cliRun = new SWIPrologCLIRun(executable, prologAPI);
+        var cancellation = new SWIPrologCLICancellation(getTimeout(), 0);
+        Runnable cancel = cancellation::cancel;
+        addCancellationAction(cancel);
+        SWIPrologCLIPendingRun run;
         try {
-            resultString = executeQuery(newGoal);
-        } catch (IOException | InterruptedException | ExecutionException e) {
+            run = startGoal(cliRun, cliRun.prepareGoal(newGoal), theory.getVersion(), cancellation);
+            run.readFirstOutput();
+        } catch (IOException | InterruptedException | ExecutionException | RuntimeException e) {
+            cancellation.close();
+            // report a terminated process as aborted search rather than as failure
+            cancellation.throwIfAborted(newGoal);
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
             return new SWIPrologCLIFailedSolution<A>(e);
+        } finally {
+            removeCancellationAction(cancel);
+        }
+        return createSolution(run, newGoal);
+    }
+
+    /**
+     * Creates the solutions of a goal from the first answer of a new SWI Prolog process. The
+     * remaining answers are read from the same process if the caller iterates beyond the first
+     * solution.
+     *
+     * @param run the run whose first answer has been read
+     * @param newGoal the goal with replaced placeholders
+     * @return the solutions
+     */
+    private <A> Solution<A> createSolution(SWIPrologCLIPendingRun run, String newGoal) {
+        try {
+            return createSolution(run.getFirstOutput(), newGoal, run);
+        } catch (RuntimeException e) {
+            run.close();
+            throw e;
         }
+    }
 
+    /**
+     * Creates the solutions of a goal from the output of SWI Prolog.
+     *
+     * @param resultString the output of the goal
+     * @param newGoal the goal with replaced placeholders
+     * @param run the run that prints the remaining answers if the output only contains the first
+     *            one, otherwise <code>null</code>
+     * @return the solutions
+     */
+    <A> Solution<A> createSolution(String resultString, String newGoal, SWIPrologCLIPendingRun run) {
         String result = extractResultString(resultString, newGoal);
         
         // success without variables
         if (result.isBlank()) {
+            closeRun(run);
             return new SWIPrologCLISolution<>(cp);
         }
         
-        // parse solution
-        IParseResult parseResult = prologParser.parse(prologParser.getGrammarAccess().getExpression_1100_xfyRule(), new StringReader(result));
+        // the output of a pending run ends after the first answer, so it is terminated like the
+        // output of a complete run
+        boolean pending = run != null && !run.isComplete();
+        String firstResult = pending ? mergeLines(Arrays.asList(result, "false")) : result;
+        
+        // read solution without the parser if possible
+        List<Map<String, Object>> answers = SWIPrologCLIAnswerReader.readAnswers(firstResult);
+        if (answers == null) {
+            // parse solution
+            IParseResult parseResult = prologParser.parse(prologParser.getGrammarAccess().getExpression_1100_xfyRule(), new StringReader(firstResult));
 
-        // solution has syntax error
-        if (parseResult.hasSyntaxErrors()) {
-            String syntaxErrors = StreamSupport.stream(parseResult.getSyntaxErrors().spliterator(), false).map(INode::getSyntaxErrorMessage).map(SyntaxErrorMessage::toString).collect(Collectors.joining(System.lineSeparator()));
-            return new SWIPrologCLIFailedSolution<A>(result, syntaxErrors);
+            // solution has syntax error
+            if (parseResult.hasSyntaxErrors()) {
+                closeRun(run);
+                String syntaxErrors = StreamSupport.stream(parseResult.getSyntaxErrors().spliterator(), false).map(INode::getSyntaxErrorMessage).map(SyntaxErrorMessage::toString).collect(Collectors.joining(System.lineSeparator()));
+                return new SWIPrologCLIFailedSolution<A>(result, syntaxErrors);
+            }
+            answers = SWIPrologCLISolution.parseResults((Expression) parseResult.getRootASTElement());
         }
         
         // result is false, i.e. failed query
-        if (parseResult.getRootASTElement() instanceof False) {
+        if (answers.isEmpty()) {
+            closeRun(run);
             return new SWIPrologCLIFailedSolution<>();
         }
         
         // result is sucess and contains variables
-        return new SWIPrologCLISolution<A>(cp, (Expression)parseResult.getRootASTElement());
+        if (pending) {
+            return new SWIPrologCLISolution<A>(cp, newGoal, answers, () -> readAllAnswers(run, result, newGoal),
+                    run::cancel);
+        }
+        return new SWIPrologCLISolution<A>(cp, answers);
+    }
+
+    private static void closeRun(SWIPrologCLIPendingRun run) {
+        if (run != null) {
+            run.close();
+        }
+    }
+
+    /**
+     * Without workers, the first answer is read by a task of
+     * {@link ProverExecutors#defaultExecutor()}, which runs on a virtual thread if the runtime
+     * supports it, so no thread of the given executor waits for the SWI Prolog process. Workers
+     * are driven by blocking requests, so their goals are solved on the executor.
+     */
+    @Override
+    protected <A> CompletableFuture<Solution<A>> solveAsync(Executor executor, Object[] actualArgs) {
+        if (workerPool != null) {
+            return super.solveAsync(executor, actualArgs);
+        }
+        String newGoal;
+        try {
+            newGoal = queryReplacer.getQueryString(actualArgs);
+        } catch (RuntimeException e) {
+            var failedSolve = new CompletableFuture<Solution<A>>();
+            failedSolve.completeExceptionally(e);
+            return failedSolve;
+        }
+        long theoryVersion = theory.getVersion();
+        SWIPrologCLIRun cliRun = new SWIPrologCLIRun(executable, prologAPI);
+        var cancellation = new SWIPrologCLICancellation(getTimeout(), 0);
+        Runnable cancel = cancellation::cancel;
+        addCancellationAction(cancel);
+        CompletableFuture<Solution<A>> future = CompletableFuture
+            .supplyAsync(() -> startGoalUnchecked(cliRun, cliRun.prepareGoal(newGoal), theoryVersion, cancellation),
+                    executor)
+            .thenApplyAsync(SWIPrologCLIQuery::readFirstOutputUnchecked, ProverExecutors.defaultExecutor())
+            .handle((run, error) -> {
+                removeCancellationAction(cancel);
+                if (error == null) {
+                    return this.<A>createSolution(run, newGoal);
+                }
+                cancellation.close();
+                // report a terminated process as aborted search rather than as failure
+                cancellation.throwIfAborted(newGoal);
+                var cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof IOException || cause instanceof UncheckedIOException) {
+                    return new SWIPrologCLIFailedSolution<A>((Exception) cause);
+                }
+                throw error instanceof CompletionException ? (CompletionException) error : new CompletionException(error);
+            });
+        // only the process of this call is terminated, other calls of the query go on
+        future.whenComplete((solution, error) -> {
+            if (future.isCancelled()) {
+                cancellation.cancel();
+            }
+        });
+        return future;
+    }
+
+    private SWIPrologCLIPendingRun startGoalUnchecked(SWIPrologCLIRun cliRun, String actualGoal, long theoryVersion,
+            SWIPrologCLICancellation cancellation) {
+        try {
+            return startGoal(cliRun, actualGoal, theoryVersion, cancellation);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static SWIPrologCLIPendingRun readFirstOutputUnchecked(SWIPrologCLIPendingRun run) {
+        try {
+            run.readFirstOutput();
+            return run;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException | ExecutionException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    /**
+     * Reads the remaining answers of a run and returns them together with the first answer.
+     */
+    private List<Map<String, Object>> readAllAnswers(SWIPrologCLIPendingRun run, String firstResult, String newGoal) {
+        String remainingOutput;
+        try {
+            remainingOutput = run.readRemainingOutput();
+        } catch (IOException | InterruptedException | ExecutionException | RuntimeException e) {
+            // report a terminated process as aborted search rather than as failure
+            run.throwIfAborted(newGoal);
+            throw new IllegalStateException("Could not search for further solutions.", e);
+        }
+        String remainingResult = extractResultString(remainingOutput, newGoal);
+        return readAnswers(mergeLines(Arrays.asList(firstResult, remainingResult)), newGoal);
+    }
+
+    /**
+     * Reads the answers printed by a goal. The answers are parsed by the Xtext parser only if the
+     * {@link SWIPrologCLIAnswerReader} does not support them.
+     */
+    private List<Map<String, Object>> readAnswers(String result, String queryString) {
+        List<Map<String, Object>> answers = SWIPrologCLIAnswerReader.readAnswers(result);
+        if (answers != null) {
+            return answers;
+        }
+        IParseResult parseResult = prologParser.parse(prologParser.getGrammarAccess().getExpression_1100_xfyRule(), new StringReader(result));
+        if (parseResult.hasSyntaxErrors()) {
+            String syntaxErrors = StreamSupport.stream(parseResult.getSyntaxErrors().spliterator(), false).map(INode::getSyntaxErrorMessage).map(SyntaxErrorMessage::toString).collect(Collectors.joining(System.lineSeparator()));
+            throw new InvalidQueryException(queryString, new Throwable(syntaxErrors));
+        }
+        return SWIPrologCLISolution.parseResults((Expression) parseResult.getRootASTElement());
+    }
+
+    private <A> Solution<A> solveOnDemand(String newGoal) {
+        SWIPrologCLICursor cursor;
+        try (var cancellation = new SWIPrologCLICancellation(getTimeout(), SWIPrologCLIWorker.TIME_LIMIT_GRACE_PERIOD)) {
+            Runnable cancel = cancellation::cancel;
+            addCancellationAction(cancel);
+            try {
+                var answerGoal = new SWIPrologCLIRun(executable, prologAPI).prepareAnswerGoal(newGoal);
+                cursor = workerPool.open(theory, theory.getVersion(), answerGoal, cancellation);
+            } catch (IOException e) {
+                cancellation.throwIfAborted(newGoal);
+                return new SWIPrologCLIFailedSolution<A>(e);
+            } finally {
+                removeCancellationAction(cancel);
+            }
+        }
+        return new SWIPrologCLIStreamingSolution<A>(cp, cursor, output -> parseAnswer(output, newGoal), newGoal,
+                getTimeout());
+    }
+
+    private Map<String, Object> parseAnswer(String output, String queryString) {
+        String result = extractResultString(output, queryString);
+        if (result.isBlank() || "false".equals(result.trim())) {
+            return null;
+        }
+
+        // parse the answer in the same form as the answers of a complete run
+        List<Map<String, Object>> answers = readAnswers(mergeLines(Arrays.asList(result, ";", "false")), queryString);
+        return answers.isEmpty() ? null : answers.get(0);
     }
 
     private String extractResultString(String resultString, String queryString) {
@@ -84,6 +316,9 @@ public class SWIPrologCLIQuery extends Query {
         List<String> warningLines = new ArrayList<>();
         List<String> regularLines = new ArrayList<>();
         for (String line : resultStringLines) {
+            if (SWIPrologCLIWorker.TIME_LIMIT_EXCEEDED.equals(line)) {
+                throw new QueryTimeoutException(queryString, getTimeout());
+            }
             if (line.toLowerCase().startsWith("warning:")) {
                 warningLines.add(line);
             } else if (line.toLowerCase().startsWith("error:")) {
@@ -110,12 +345,102 @@ public class SWIPrologCLIQuery extends Query {
         return lines.stream().collect(Collectors.joining(System.lineSeparator()));
     }
     
-    private String executeQuery(String newGoal) throws IOException, InterruptedException, ExecutionException {
+    /**
+     * Executes a goal by a worker within the time limit of the query. Workers enforce the time
+     * limit on their own and are only terminated if they do not respond in time.
+     */
+    private String executeQuery(String newGoal, long theoryVersion)
+            throws IOException, InterruptedException, ExecutionException {
+        try (var cancellation = new SWIPrologCLICancellation(getTimeout(), SWIPrologCLIWorker.TIME_LIMIT_GRACE_PERIOD)) {
+            Runnable cancel = cancellation::cancel;
+            addCancellationAction(cancel);
+            try {
+                SWIPrologCLIRun cliRun = new SWIPrologCLIRun(executable, prologAPI);
+                return executeGoal(cliRun, cliRun.prepareGoal(newGoal), theoryVersion, cancellation);
+            } catch (IOException | InterruptedException | ExecutionException | RuntimeException e) {
+                // report a terminated process as aborted search rather than as failure
+                cancellation.throwIfAborted(newGoal);
+                throw e;
+            } finally {
+                removeCancellationAction(cancel);
+            }
+        }
+    }
+
+    /**
+     * Solves several prepared goals against the theory of this query by a single SWI Prolog run
+     * or worker request. The goal of this query itself is not involved.
+     *
+     * @param preparedGoals the goals as built by {@link SWIPrologCLIRun#prepareGoal(String)}
+     * @return the output of every goal
+     */
+    List<String> executeBatch(List<String> preparedGoals) throws IOException, InterruptedException, ExecutionException {
         SWIPrologCLIRun cliRun = new SWIPrologCLIRun(executable, prologAPI);
-        String resultString = cliRun.execute(theory, newGoal);
+        String output = executeGoal(cliRun, cliRun.prepareBatchGoal(preparedGoals), theory.getVersion(), null);
+        return SWIPrologCLIRun.splitBatchOutput(output);
+    }
+
+    /**
+     * Returns the goal with the placeholders replaced by the given arguments.
+     *
+     * @param actualArgs the actual arguments of the goal
+     * @return the goal to be solved
+     */
+    String getQueryString(Object... actualArgs) {
+        return queryReplacer.getQueryString(actualArgs);
+    }
+
+    private String executeGoal(SWIPrologCLIRun cliRun, String actualGoal, long theoryVersion,
+            SWIPrologCLICancellation cancellation) throws IOException, InterruptedException, ExecutionException {
+        if (workerPool != null) {
+            return workerPool.execute(theory, theoryVersion, actualGoal, cancellation);
+        }
+        long staticVersion = theory.getStaticVersion(theoryVersion);
+        Path compiledTheory = getCompiledTheory(staticVersion);
+        if (compiledTheory != null) {
+            return cliRun.executePrepared(compiledTheory, theory.getText(staticVersion, theoryVersion), actualGoal,
+                    cancellation);
+        }
+        String resultString = cliRun.executePrepared(null, theory.getText(theoryVersion), actualGoal, cancellation);
         return resultString;
     }
 
+    private SWIPrologCLIPendingRun startGoal(SWIPrologCLIRun cliRun, String actualGoal, long theoryVersion,
+            SWIPrologCLICancellation cancellation) throws IOException {
+        long staticVersion = theory.getStaticVersion(theoryVersion);
+        Path compiledTheory = getCompiledTheory(staticVersion);
+        if (compiledTheory != null) {
+            return cliRun.startPrepared(compiledTheory, theory.getText(staticVersion, theoryVersion), actualGoal,
+                    cancellation);
+        }
+        return cliRun.startPrepared(null, theory.getText(theoryVersion), actualGoal, cancellation);
+    }
+
+    /**
+     * Returns the compiled form of the static part of the theory.
+     *
+     * @param staticVersion the version of the static part
+     * @return the quick load file or <code>null</code> if the theory has to be loaded from its
+     *         source text
+     */
+    private Path getCompiledTheory(long staticVersion) {
+        if (theoryCache == null || staticVersion == 0) {
+            return null;
+        }
+        try {
+            return theoryCache.getCompiledTheory(theory, staticVersion);
+        } catch (IOException e) {
+            // the theory is loaded from its source text instead
+            return null;
+        }
+    }
+
+    private static SWIPrologCLITheory createTheory(String text) {
+        var theory = new SWIPrologCLITheory();
+        theory.add(text);
+        return theory;
+    }
+
 //    private String buildGoalString(Object... actualArgs) {
 //        if (getPlaceholderNames().size() - replacements.size() != actualArgs.length) {
 //            throw new IllegalArgumentException();
@@ -1,18 +1,20 @@
 package org.prolog4j.swicli.impl;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Optional;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
@@ -21,10 +23,20 @@ import org.palladiosimulator.supporting.prolog.api.PrologAPI;
 import org.palladiosimulator.supporting.prolog.model.prolog.CompoundTerm;
 import org.palladiosimulator.supporting.prolog.model.prolog.expressions.Expression;
 import org.palladiosimulator.supporting.prolog.parser.antlr.PrologParser;
+import org.prolog4j.ProverExecutors;
 import org.prolog4j.swicli.SWIPrologExecutable;
 
 public class SWIPrologCLIRun {
 
+    /** The variable that holds the printed answer in goals built by {@link #prepareAnswerGoal(String)}. */
+    public static final String ANSWER_VARIABLE = "P4J_Answer";
+
+    /** Printed on a line of its own after the output of every goal of a batch. */
+    public static final String END_OF_GOAL = "$P4J_END_OF_GOAL";
+
+    /** Loads the program from the standard input. The goal must not contain double quotes. */
+    protected static final String LOAD_PROGRAM_GOAL = "load_files(user:p4j_program,[stream(user_input),encoding(utf8)])";
+
     private final SWIPrologExecutable executable;
     private final PrologParser prologParser;
 
@@ -34,37 +46,147 @@ public class SWIPrologCLIRun {
     }
 
     public String execute(String theory, String goal) throws IOException, InterruptedException, ExecutionException {
+        return execute(null, theory, goal);
+    }
+
+    /**
+     * Executes a goal against a compiled theory extended by a theory in source form.
+     * 
+     * @param compiledTheory the quick load file to be loaded first or <code>null</code>
+     * @param theory the theory to be loaded after the compiled theory
+     * @param goal the goal to solve
+     * @return the output of SWI Prolog
+     */
+    public String execute(Path compiledTheory, String theory, String goal)
+            throws IOException, InterruptedException, ExecutionException {
+        return executePrepared(compiledTheory, theory, prepareGoal(goal));
+    }
+
+    /**
+     * Executes a prepared goal against a compiled theory extended by a theory in source form.
+     * 
+     * @param compiledTheory the quick load file to be loaded first or <code>null</code>
+     * @param theory the theory to be loaded after the compiled theory
+     * @param actualGoal the goal as built by {@link #prepareGoal(String)}
+     * @return the output of SWI Prolog
+     */
+    public String executePrepared(Path compiledTheory, String theory, String actualGoal)
+            throws IOException, InterruptedException, ExecutionException {
+        return executePrepared(compiledTheory, theory, actualGoal, null);
+    }
+
+    /**
+     * Executes a prepared goal against a compiled theory extended by a theory in source form. The
+     * process is terminated if the search is cancelled or exceeds its time limit.
+     * 
+     * @param compiledTheory the quick load file to be loaded first or <code>null</code>
+     * @param theory the theory to be loaded after the compiled theory
+     * @param actualGoal the goal as built by {@link #prepareGoal(String)}
+     * @param cancellation the cancellation handle of the search or <code>null</code>
+     * @return the output of SWI Prolog
+     */
+    public String executePrepared(Path compiledTheory, String theory, String actualGoal,
+            SWIPrologCLICancellation cancellation) throws IOException, InterruptedException, ExecutionException {
+        return runPrologProgram(createProgram(compiledTheory, theory, actualGoal), cancellation);
+    }
+
+    /**
+     * Starts a prepared goal against a compiled theory extended by a theory in source form, but
+     * does not await its output.
+     * 
+     * @param compiledTheory the quick load file to be loaded first or <code>null</code>
+     * @param theory the theory to be loaded after the compiled theory
+     * @param actualGoal the goal as built by {@link #prepareGoal(String)}
+     * @param cancellation the cancellation handle of the search
+     * @return the run, whose output is read answer by answer
+     */
+    public SWIPrologCLIPendingRun startPrepared(Path compiledTheory, String theory, String actualGoal,
+            SWIPrologCLICancellation cancellation) throws IOException {
+        var process = startProcess(cancellation);
+        var programWriter = writeProgram(process, createProgram(compiledTheory, theory, actualGoal));
+        return new SWIPrologCLIPendingRun(process, programWriter, cancellation);
+    }
+
+    protected static String createProgram(Path compiledTheory, String theory, String actualGoal) {
+        var program = theory + System.lineSeparator() + ":- " + actualGoal;
+        if (compiledTheory != null) {
+            program = String.format(":- load_files(user:%s, [if(true)]).",
+                    SWIPrologCLIWorker.quote(compiledTheory.toString())) + System.lineSeparator()
+                    + program;
+        }
+        return program;
+    }
+
+    /**
+     * Builds the goal that prints all solutions of the given goal in a parsable form.
+     * 
+     * @param goal the goal to solve
+     * @return the goal to be executed by SWI Prolog
+     */
+    public String prepareGoal(String goal) {
         var variables = determineVariables(goal);
-        var actualGoal = buildGoal(goal, variables);
-        var programFileContent = theory + System.lineSeparator() + ":- " + actualGoal;
-        var programFile = createPrologFile(programFileContent);
+        return buildGoal(goal, variables);
+    }
+
+    /**
+     * Runs a program in a new SWI Prolog process. The program is passed via the standard input of
+     * the process, so no files are written.
+     * 
+     * @param program the program including the directive that runs the goal
+     * @param cancellation the cancellation handle that terminates the process or <code>null</code>
+     * @return the output of the process
+     */
+    protected String runPrologProgram(String program, SWIPrologCLICancellation cancellation)
+            throws IOException, InterruptedException, ExecutionException {
+        var process = startProcess(cancellation);
         try {
-            return runPrologProgram(programFile);            
+            var programWriter = writeProgram(process, program);
+            var processOutput = readOutput(process);
+            process.waitFor();
+            programWriter.get();
+            return checkExitValue(process, processOutput);
         } finally {
-            programFile.delete();
+            if (cancellation != null) {
+                cancellation.detach();
+            }
         }
     }
 
-    protected String runPrologProgram(File programFile) throws IOException, InterruptedException {
-        var commandLine = new ArrayList<String>();
-        commandLine.add(executable.getPath());
-        Optional.ofNullable(executable.getParameters()
-            .get("--stack-limit"))
-            .filter(String.class::isInstance)
-            .map(String.class::cast)
-            .map(limit -> String.format("--stack-limit=%s", limit))
-            .ifPresent(commandLine::add);
-        commandLine.addAll(Arrays.asList("-q", "-f", programFile.getAbsolutePath(), "-g", "halt"));
+    protected Process startProcess(SWIPrologCLICancellation cancellation) throws IOException {
+        var commandLine = createCommandLine(executable);
+        // no init file, so that the result does not depend on the environment of the user
+        commandLine.addAll(Arrays.asList("-q", "-f", "none", "-g", LOAD_PROGRAM_GOAL, "-g", "halt"));
         var pb = new ProcessBuilder(commandLine);
         pb.environment().putAll(executable.getEnvironment());
         pb.redirectErrorStream(true);
         var process = pb.start();
-        
-        String processOutput = null;
+        if (cancellation != null) {
+            cancellation.attach(process::destroyForcibly);
+        }
+        return process;
+    }
+
+    /**
+     * Writes the program to the standard input of the process. The process might produce output
+     * while reading the program, so the program is written concurrently.
+     */
+    protected static CompletableFuture<Void> writeProgram(Process process, String program) {
+        return CompletableFuture.runAsync(() -> {
+            try (var processInput = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8)) {
+                processInput.write(program);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, ProverExecutors.defaultExecutor());
+    }
+
+    protected static String readOutput(Process process) {
         try (var s = new Scanner(process.getInputStream()).useDelimiter("\\A")) {
-            processOutput = s.hasNext() ? s.next() : "";            
+            return s.hasNext() ? s.next() : "";
         }
-        process.waitFor();
+    }
+
+    protected static String checkExitValue(Process process, String processOutput) {
         var processExitValue = process.exitValue();
         if (processExitValue == 0) {
             // everything is ok
@@ -75,21 +197,99 @@ public class SWIPrologCLIRun {
         }
     }
 
+    protected static List<String> createCommandLine(SWIPrologExecutable executable) {
+        var commandLine = new ArrayList<String>();
+        commandLine.add(executable.getPath());
+        commandLine.addAll(executable.getArguments());
+        Optional.ofNullable(executable.getParameters()
+            .get("--stack-limit"))
+            .filter(String.class::isInstance)
+            .map(String.class::cast)
+            .map(limit -> String.format("--stack-limit=%s", limit))
+            .ifPresent(commandLine::add);
+        return commandLine;
+    }
+
+    /**
+     * Builds a goal that solves the given goal and binds {@link #ANSWER_VARIABLE} to the printed
+     * form of a solution. The answers are printed like the ones of {@link #prepareGoal(String)}.
+     * 
+     * @param goal the goal to solve
+     * @return the goal to be run by an SWI Prolog engine
+     */
+    public String prepareAnswerGoal(String goal) {
+        var variables = determineVariables(goal);
+        return "(" + normalizeGoal(goal) + "), with_output_to(string(" + ANSWER_VARIABLE + "), ("
+                + buildWriteGoals(variables) + "))";
+    }
+
+    /**
+     * Builds a goal that solves several prepared goals one after the other and terminates the
+     * output of every goal with {@link #END_OF_GOAL}. The goals are passed as quoted atoms and
+     * read by SWI Prolog one by one, so a goal with a syntax error or an error while solving it
+     * does not affect the other goals. Messages are printed to the standard output, so that they
+     * end up in the output of the goal that caused them.
+     * 
+     * @param preparedGoals the goals as built by {@link #prepareGoal(String)}
+     * @return the goal to be executed by SWI Prolog
+     */
+    public String prepareBatchGoal(List<String> preparedGoals) {
+        var goalAtoms = preparedGoals.stream()
+            .map(SWIPrologCLIRun::normalizeGoal)
+            .map(SWIPrologCLIWorker::quote)
+            .collect(Collectors.joining(", "));
+        return "set_stream(user_output, alias(user_error)), forall(member(P4J_Text, [" + goalAtoms
+                + "]), ((catch((term_string(P4J_Goal, P4J_Text), call(P4J_Goal)), P4J_Error, "
+                + "print_message(error, P4J_Error)) -> true ; true), nl, write('" + END_OF_GOAL + "'), nl)).";
+    }
+
+    /**
+     * Splits the output of a goal built by {@link #prepareBatchGoal(List)} into the outputs of
+     * the individual goals. The output preceding the first goal, e.g. messages of loading the
+     * theory, is part of the output of the first goal.
+     * 
+     * @param output the output of SWI Prolog
+     * @return the outputs of the goals that have been solved completely
+     */
+    public static List<String> splitBatchOutput(String output) {
+        var outputs = new ArrayList<String>();
+        var goalOutput = new StringBuilder();
+        for (var line : output.replace("\r", "").split("\n")) {
+            if (END_OF_GOAL.equals(line)) {
+                outputs.add(goalOutput.toString());
+                goalOutput.setLength(0);
+            } else {
+                goalOutput.append(line)
+                    .append('\n');
+            }
+        }
+        return outputs;
+    }
+
     protected static String buildGoal(String goal, Collection<String> variables) {
+        var goalParameter = normalizeGoal(goal);
+        var writeGoals = buildWriteGoals(variables);
+        var actualGoal = "forall((Goal = (" + goalParameter + "), call(Goal)), (" + writeGoals
+                + ", writeln(';'))), write(false).";
+        return actualGoal;
+    }
+
+    protected static String normalizeGoal(String goal) {
         var goalParameter = goal.replaceAll("[\\r\\n]", "")
             .trim();
         if (goalParameter.endsWith(".")) {
             goalParameter = goalParameter.substring(0, goalParameter.length() - 1);
         }
-        var writeGoals = variables.stream()
-            .map(SWIPrologCLIRun::getVariablePrintGoals)
-            .collect(Collectors.joining(", writeln(','), "));
+        return goalParameter;
+    }
+
+    protected static String buildWriteGoals(Collection<String> variables) {
         if (variables.isEmpty()) {
-            writeGoals = "writeln(true)";
+            return "writeln(true)";
         }
-        var actualGoal = "forall((Goal = (" + goalParameter + "), call(Goal)), (" + writeGoals
-                + ", writeln(';'))), write(false).";
-        return actualGoal;
+        return variables.stream()
+            .map(SWIPrologCLIRun::getVariablePrintGoals)
+            .collect(Collectors.joining(", writeln(','), "));
     }
 
     protected static String getVariablePrintGoals(String variableName) {
@@ -119,12 +319,4 @@ public class SWIPrologCLIRun {
         return variables;
     }
 
-    protected static File createPrologFile(String program) throws IOException {
-        var tmpFilePath = Files.createTempFile(SWIPrologCLIRun.class.getSimpleName(), ".pl");
-        var tmpFile = tmpFilePath.toFile();
-        tmpFile.deleteOnExit();
-        Files.writeString(tmpFilePath, program, StandardCharsets.UTF_8, StandardOpenOption.WRITE);
-        return tmpFile;
-    }
-
 }
@@ -0,0 +1,149 @@
+package org.prolog4j.swicli.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.prolog4j.swicli.SWIPrologExecutable;
+import org.prolog4j.swicli.SWIPrologSavedStateExecutable;
+
+/**
+ * The saved states of the workers of one {@link SWIPrologCLIWorkerPool}.
+ * <p>
+ * Only the latest saved state is kept. It is created by a worker that has just loaded a newer
+ * version of the theory than the latest saved state and is used to start all further workers,
+ * which then only have to load the changes made after the state has been saved.
+ */
+public class SWIPrologCLISavedStates implements Closeable {
+
+    protected static class SavedState {
+        private final SWIPrologSavedStateExecutable executable;
+        private final long version;
+
+        public SavedState(SWIPrologSavedStateExecutable executable, long version) {
+            this.executable = executable;
+            this.version = version;
+        }
+
+        public SWIPrologSavedStateExecutable getExecutable() {
+            return executable;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    private final SWIPrologExecutable executable;
+    private final boolean temporaryDirectory;
+    private Path directory;
+    private SavedState latest;
+    private boolean closed = false;
+
+    /**
+     * Creates the saved states.
+     *
+     * @param executable the executable to start the saved states with
+     * @param directory the directory for the saved states or <code>null</code> for a temporary
+     *            directory
+     */
+    public SWIPrologCLISavedStates(SWIPrologExecutable executable, Path directory) {
+        this.executable = executable;
+        this.directory = directory;
+        this.temporaryDirectory = directory == null;
+    }
+
+    public synchronized SavedState getLatest() {
+        return latest;
+    }
+
+    /**
+     * Determines if a worker that has loaded the given version should save its state.
+     *
+     * @param version the version of the theory loaded by the worker
+     * @return <code>true</code> if the latest saved state is older
+     */
+    public synchronized boolean isOutdated(long version) {
+        return !closed && version > 0 && (latest == null || latest.getVersion() < version);
+    }
+
+    /**
+     * Lets a worker save its state. The worker must not have executed any goals since it has
+     * been started, so the state only contains the theory.
+     *
+     * @param worker the worker
+     * @param version the version of the theory loaded by the worker
+     * @throws IOException if the state cannot be saved
+     */
+    public void save(SWIPrologCLIWorker worker, long version) throws IOException {
+        var stateFile = createStateFile();
+        try {
+            var output = worker.request(
+                    String.format("'$p4j_qsave'(%s).", SWIPrologCLIWorker.quote(stateFile.toString())));
+            if (!output.isBlank() || Files.size(stateFile) == 0) {
+                throw new IOException("Could not save the state of the SWI Prolog worker: " + output);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(stateFile);
+            throw e;
+        }
+        replace(null, new SavedState(new SWIPrologSavedStateExecutable(executable, stateFile), version));
+    }
+
+    /**
+     * Discards a saved state that workers could not be started from.
+     *
+     * @param savedState the broken saved state
+     */
+    public void discard(SavedState savedState) {
+        replace(savedState, null);
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        replace(latest, null);
+        if (temporaryDirectory && directory != null) {
+            delete(directory);
+        }
+    }
+
+    protected synchronized Path createStateFile() throws IOException {
+        if (directory == null) {
+            directory = Files.createTempDirectory(SWIPrologCLISavedStates.class.getSimpleName());
+        } else {
+            Files.createDirectories(directory);
+        }
+        return Files.createTempFile(directory, "prolog4j-", ".state");
+    }
+
+    protected synchronized void replace(SavedState expected, SavedState replacement) {
+        var previous = latest;
+        if (expected != null && previous != expected) {
+            return;
+        }
+        if (replacement != null && (closed || previous != null && previous.getVersion() >= replacement.getVersion())) {
+            // another worker has been faster
+            delete(replacement.getExecutable()
+                .getSavedState());
+            return;
+        }
+        latest = replacement;
+        if (previous != null) {
+            delete(previous.getExecutable()
+                .getSavedState());
+        }
+    }
+
+    protected static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // running processes might still use the file on some platforms
+            path.toFile()
+                .deleteOnExit();
+        }
+    }
+
+}
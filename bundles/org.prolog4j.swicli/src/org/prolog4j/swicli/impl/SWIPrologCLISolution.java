@@ -1,5 +1,6 @@
 package org.prolog4j.swicli.impl;
 
+import java.lang.ref.Cleaner;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -10,6 +11,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.palladiosimulator.supporting.prolog.model.prolog.CompoundTerm;
@@ -20,13 +22,21 @@ import org.palladiosimulator.supporting.prolog.model.prolog.expressions.LogicalA
 import org.palladiosimulator.supporting.prolog.model.prolog.expressions.LogicalOr;
 import org.palladiosimulator.supporting.prolog.model.prolog.expressions.Unification;
 import org.prolog4j.ConversionPolicy;
+import org.prolog4j.QueryCancelledException;
 import org.prolog4j.Solution;
 import org.prolog4j.UnknownVariableException;
 
 public class SWIPrologCLISolution<S> extends Solution<S> {
 
+    /** Terminates the runs of solutions whose remaining results have not been requested. */
+    private static final Cleaner CLEANER = Cleaner.create();
+
     private final ConversionPolicy cp;
-    private final List<Map<String, Object>> results;
+    private List<Map<String, Object>> results;
+    private Supplier<List<Map<String, Object>>> remainingResults;
+    private Runnable terminator;
+    private String query;
+    private boolean cancelled = false;
     private int resultIndex = 0;
     private boolean success;
     
@@ -37,12 +47,36 @@ public class SWIPrologCLISolution<S> extends Solution<S> {
     }
     
     public SWIPrologCLISolution(ConversionPolicy cp, Expression results) {
+        this(cp, parseResults(results));
+    }
+    
+    public SWIPrologCLISolution(ConversionPolicy cp, List<Map<String, Object>> results) {
         this.cp = cp;
-        this.results = parseResults(results);
+        this.results = results;
         this.success = true;
         setDefaultVariable();
     }
     
+    /**
+     * Creates a solution that only knows the first results while the search for the remaining
+     * results goes on. All results are requested as soon as the caller needs more than the first
+     * results. The search is terminated if the solution is cancelled or becomes unreachable before.
+     * 
+     * @param cp the conversion policy
+     * @param query the query, for reporting a cancelled search
+     * @param firstResults the first results
+     * @param allResults supplies all results including the first ones
+     * @param terminator terminates the search for the remaining results
+     */
+    public SWIPrologCLISolution(ConversionPolicy cp, String query, List<Map<String, Object>> firstResults,
+            Supplier<List<Map<String, Object>>> allResults, Runnable terminator) {
+        this(cp, firstResults);
+        this.query = query;
+        this.remainingResults = allResults;
+        this.terminator = terminator;
+        CLEANER.register(this, terminator);
+    }
+    
     protected void setDefaultVariable() {
         if (results.isEmpty()) {
             return;
@@ -83,6 +117,9 @@ public class SWIPrologCLISolution<S> extends Solution<S> {
 
     @Override
     protected boolean fetch() {
+        if (results.size() <= resultIndex + 1) {
+            completeResults();
+        }
         if (results.size() > resultIndex + 1) {
             resultIndex++;
             return true;
@@ -90,9 +127,18 @@ public class SWIPrologCLISolution<S> extends Solution<S> {
         return false;
     }
 
+    @Override
+    protected Map<String, Object> getBindings() {
+        if (results.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        return results.get(resultIndex);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public void collect(Collection<?>... collections) {
+        completeResults();
         for (int iVariable = 0; iVariable < collections.length; ++iVariable) {
             for (int iResult = 0; iResult < results.size(); ++iResult) {
                 Iterator<Entry<String, Object>> variableIter = results.get(iResult).entrySet().iterator();
@@ -107,6 +153,7 @@ public class SWIPrologCLISolution<S> extends Solution<S> {
 
     @Override
     public List<?>[] toLists() {
+        completeResults();
         List<?>[] tmp = new List<?>[results.size()];
         for (int i = 0; i < results.size(); ++i) {
             Map<String, Object> result = results.get(i);
@@ -115,6 +162,27 @@ public class SWIPrologCLISolution<S> extends Solution<S> {
         return tmp;
     }
     
+    @Override
+    public void cancel() {
+        cancelled = true;
+        if (terminator != null) {
+            terminator.run();
+        }
+    }
+
+    protected void completeResults() {
+        if (remainingResults != null) {
+            if (cancelled) {
+                throw new QueryCancelledException(query);
+            }
+            var allResults = remainingResults.get();
+            remainingResults = null;
+            if (allResults.size() > results.size()) {
+                results = allResults;
+            }
+        }
+    }
+
     protected Object getVariableValue(String variable) {
         return Optional.ofNullable(results)
                 .filter(c -> !c.isEmpty())
@@ -123,7 +191,7 @@ public class SWIPrologCLISolution<S> extends Solution<S> {
                 .orElseThrow(() -> new UnknownVariableException(variable));
     }
     
-    protected static List<Map<String, Object>> parseResults(Expression resultExpression) {
+    public static List<Map<String, Object>> parseResults(Expression resultExpression) {
         List<Map<String, Object>> results = new ArrayList<>();
         
         // ensure that at least one result is available
@@ -0,0 +1,205 @@
+package org.prolog4j.swicli.impl;
+
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.prolog4j.ConversionPolicy;
+import org.prolog4j.QueryCancelledException;
+import org.prolog4j.Solution;
+import org.prolog4j.UnknownVariableException;
+
+/**
+ * Solutions that are fetched one by one from an SWI Prolog engine. Only the first answer is
+ * computed before the solution is returned, every further answer is computed by {@link #fetch()}.
+ * <p>
+ * In contrast to {@link SWIPrologCLISolution}, {@link #collect(Collection...)} and
+ * {@link #toLists()} consume the answers starting from the current one.
+ * <p>
+ * Every answer is searched for within the time limit of the query. Cancelling the solution while
+ * an answer is searched for terminates the worker process of the solution, which does not solve
+ * other goals in the meantime.
+ */
+public class SWIPrologCLIStreamingSolution<S> extends Solution<S> {
+
+    /** Destroys the engines of solutions that have not been consumed completely. */
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final ConversionPolicy cp;
+    private final SWIPrologCLICursor cursor;
+    private final Function<String, Map<String, Object>> answerParser;
+    private final String query;
+    private final long timeout;
+    private final boolean success;
+    private Map<String, Object> answer;
+    private boolean exhausted = false;
+    private boolean cancelled = false;
+    private SWIPrologCLICancellation search;
+
+    /**
+     * Creates the solutions.
+     *
+     * @param cp the conversion policy
+     * @param cursor the cursor of the engine
+     * @param answerParser parses the output of the engine to the bindings of an answer and
+     *            returns <code>null</code> if there is no further answer
+     * @param query the query, for reporting aborted searches
+     * @param timeout the time limit of searching for an answer in milliseconds, zero for no
+     *            limit
+     */
+    public SWIPrologCLIStreamingSolution(ConversionPolicy cp, SWIPrologCLICursor cursor,
+            Function<String, Map<String, Object>> answerParser, String query, long timeout) {
+        this.cp = cp;
+        this.cursor = cursor;
+        this.answerParser = answerParser;
+        this.query = query;
+        this.timeout = timeout;
+        CLEANER.register(this, cursor::close);
+        this.answer = parse(cursor.getFirstOutput());
+        this.success = answer != null;
+        setDefaultVariable();
+    }
+
+    protected void setDefaultVariable() {
+        if (answer == null) {
+            return;
+        }
+
+        String lastKey = null;
+        for (String key : answer.keySet()) {
+            lastKey = key;
+        }
+
+        if (lastKey == null) {
+            return;
+        }
+
+        on(lastKey);
+    }
+
+    @Override
+    public boolean isSuccess() {
+        return success;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked") // this is actually an issue of the API
+    public <A> A get(String variable) {
+        Object result = getVariableValue(variable);
+        if (clazz != null) {
+            return (A) get(variable, clazz);
+        }
+        return (A) cp.convertTerm(result);
+    }
+
+    @Override
+    public <A> A get(String variable, Class<A> type) {
+        Object result = getVariableValue(variable);
+        return (A) cp.convertTerm(result, type);
+    }
+
+    @Override
+    protected boolean fetch() {
+        if (answer == null || exhausted) {
+            return false;
+        }
+        String output;
+        try (var cancellation = new SWIPrologCLICancellation(timeout, SWIPrologCLIWorker.TIME_LIMIT_GRACE_PERIOD)) {
+            startSearch(cancellation);
+            try {
+                output = cursor.next(cancellation);
+            } catch (IOException e) {
+                cursor.close();
+                cancellation.throwIfAborted(query);
+                throw new IllegalStateException("Could not fetch the next solution.", e);
+            } finally {
+                endSearch();
+            }
+        }
+        var nextAnswer = parse(output);
+        if (nextAnswer == null) {
+            exhausted = true;
+            return false;
+        }
+        answer = nextAnswer;
+        return true;
+    }
+
+    @Override
+    public void cancel() {
+        SWIPrologCLICancellation runningSearch;
+        synchronized (this) {
+            cancelled = true;
+            runningSearch = search;
+        }
+        if (runningSearch != null) {
+            runningSearch.cancel();
+        } else {
+            cursor.close();
+        }
+    }
+
+    protected synchronized void startSearch(SWIPrologCLICancellation cancellation) {
+        if (cancelled) {
+            throw new QueryCancelledException(query);
+        }
+        search = cancellation;
+    }
+
+    protected synchronized void endSearch() {
+        search = null;
+    }
+
+    @Override
+    protected Map<String, Object> getBindings() {
+        return answer == null ? Collections.emptyMap() : answer;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void collect(Collection<?>... collections) {
+        for (var values : toLists()) {
+            for (int iVariable = 0; iVariable < collections.length; ++iVariable) {
+                ((Collection<Object>) collections[iVariable]).add(values.get(iVariable));
+            }
+        }
+    }
+
+    @Override
+    public List<?>[] toLists() {
+        var lists = new ArrayList<List<Object>>();
+        if (answer != null && !exhausted) {
+            do {
+                lists.add(new ArrayList<>(answer.values()));
+            } while (fetch());
+        }
+        return lists.toArray(new List<?>[lists.size()]);
+    }
+
+    protected Object getVariableValue(String variable) {
+        if (answer == null || !answer.containsKey(variable)) {
+            throw new UnknownVariableException(variable);
+        }
+        return answer.get(variable);
+    }
+
+    protected Map<String, Object> parse(String output) {
+        Map<String, Object> parsedAnswer;
+        try {
+            parsedAnswer = answerParser.apply(output);
+        } catch (RuntimeException e) {
+            cursor.close();
+            throw e;
+        }
+        if (parsedAnswer == null) {
+            cursor.close();
+        }
+        return parsedAnswer;
+    }
+
+}
@@ -0,0 +1,301 @@
+package org.prolog4j.swicli.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.prolog4j.ColumnarTable;
+
+/**
+ * The knowledge base of a {@link SWIPrologCLIProver} as a log of changes.
+ * <p>
+ * Every call of addTheory, assertz or retract appends one entry to the log, so the length of the
+ * log is the version of the theory. Workers remember the version they have loaded and only
+ * receive the entries added since then. The full program text is only rendered for running
+ * goals in a new process.
+ * <p>
+ * The entries added by addTheory before the first assertz or retract form the static part of the
+ * theory, which can be compiled once by the {@link SWIPrologCLITheoryCache}.
+ * <p>
+ * The facts of a {@link ColumnarTable} are kept in the table and only rendered when they are
+ * shipped. Workers receive them in pieces of {@link #TABLE_PIECE_FACTS} facts, see
+ * {@link #getChangePieces(long, long)}, so the full text of a table never has to be held at once.
+ */
+public class SWIPrologCLITheory implements Serializable {
+
+    private static final long serialVersionUID = 2481942405437263874L;
+
+    /** The number of facts of a table that are rendered and shipped to a worker at once. */
+    public static final int TABLE_PIECE_FACTS = 10000;
+
+    protected enum EntryKind {
+        STATIC, UPDATE, DECLARATION, TABLE
+    }
+
+    /**
+     * An entry of the log. The entry of a table refers to the table, which is not serializable,
+     * so it is replaced by an entry holding the rendered facts when it is serialized.
+     */
+    protected static class Entry implements Serializable {
+        private static final long serialVersionUID = -6193270592731018512L;
+
+        private final String text;
+        private final EntryKind kind;
+        private final transient ColumnarTable table;
+
+        public Entry(String text, EntryKind kind) {
+            this(text, kind, null);
+        }
+
+        public Entry(String text, EntryKind kind, ColumnarTable table) {
+            this.text = text;
+            this.kind = kind;
+            this.table = table;
+        }
+
+        /**
+         * Returns the text of the entry. The facts of a table are rendered all at once.
+         *
+         * @return the program text
+         */
+        public String getText() {
+            if (table == null) {
+                return text;
+            }
+            var facts = new StringBuilder();
+            writeFacts(facts, table, 0, table.size());
+            return facts.toString();
+        }
+
+        public EntryKind getKind() {
+            return kind;
+        }
+
+        /**
+         * Returns the table whose facts the entry adds.
+         *
+         * @return the table or <code>null</code> if the entry holds program text
+         */
+        public ColumnarTable getTable() {
+            return table;
+        }
+
+        private Object writeReplace() {
+            return table == null ? this : new Entry(getText(), EntryKind.TABLE);
+        }
+    }
+
+    private final List<Entry> entries = new ArrayList<>();
+    private final Set<String> declarations = new HashSet<>();
+    private long staticVersion = 0;
+    private String renderedText = "";
+    private long renderedFromVersion = 0;
+    private long renderedToVersion = 0;
+
+    /**
+     * Appends Prolog clauses or directives to the theory.
+     *
+     * @param text the clauses or directives
+     */
+    public synchronized void add(String text) {
+        if (staticVersion == entries.size()) {
+            staticVersion++;
+        }
+        entries.add(new Entry(text, EntryKind.STATIC));
+    }
+
+    /**
+     * Appends a directive that modifies the dynamic database such as
+     * <code>:- assertz(foo(1)).</code>.
+     *
+     * @param directive the directive
+     */
+    public synchronized void update(String directive) {
+        entries.add(new Entry(directive, EntryKind.UPDATE));
+    }
+
+    /**
+     * Adds a declaration of a predicate property such as <code>:- dynamic(foo/1).</code> unless
+     * it has been added before. Declarations precede all other clauses in the rendered program.
+     *
+     * @param declaration the declaration directive
+     */
+    public synchronized void declare(String declaration) {
+        if (declarations.add(declaration)) {
+            entries.add(new Entry(declaration, EntryKind.DECLARATION));
+        }
+    }
+
+    /**
+     * Appends the facts of a columnar table. The table is made read-only, so that every worker
+     * loads the same facts.
+     *
+     * @param table the table
+     */
+    public synchronized void addTable(ColumnarTable table) {
+        table.setReadOnly();
+        entries.add(new Entry(null, EntryKind.TABLE, table));
+    }
+
+    /**
+     * Returns the current version of the theory.
+     *
+     * @return the version
+     */
+    public synchronized long getVersion() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the version up to which the given version consists of static entries only.
+     *
+     * @param version the version of the theory
+     * @return the version of the static part
+     */
+    public synchronized long getStaticVersion(long version) {
+        return Math.min(staticVersion, version);
+    }
+
+    /**
+     * Returns the changes between two versions in the order they have been made.
+     *
+     * @param fromVersion the version already known (inclusive)
+     * @param toVersion the version to be reached (exclusive)
+     * @return the program text containing the changes
+     */
+    public synchronized String getChanges(long fromVersion, long toVersion) {
+        var changes = new StringBuilder();
+        for (var entry : entries.subList((int) fromVersion, (int) toVersion)) {
+            changes.append(entry.getText())
+                .append(System.lineSeparator());
+        }
+        return changes.toString();
+    }
+
+    /**
+     * Returns the changes between two versions in the order they have been made, split into
+     * pieces that can be loaded one after the other. Consecutive entries are joined into one
+     * piece, while the facts of tables are rendered piece by piece while iterating.
+     *
+     * @param fromVersion the version already known (inclusive)
+     * @param toVersion the version to be reached (exclusive)
+     * @return the program texts of the pieces
+     */
+    public Iterator<String> getChangePieces(long fromVersion, long toVersion) {
+        List<Entry> changes;
+        synchronized (this) {
+            changes = new ArrayList<>(entries.subList((int) fromVersion, (int) toVersion));
+        }
+        return new Iterator<String>() {
+            private int entryIndex = 0;
+            private int factIndex = 0;
+
+            @Override
+            public boolean hasNext() {
+                return entryIndex < changes.size();
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                var piece = new StringBuilder();
+                var entry = changes.get(entryIndex);
+                if (entry.getTable() != null) {
+                    var table = entry.getTable();
+                    var end = Math.min(table.size(), factIndex + TABLE_PIECE_FACTS);
+                    writeFacts(piece, table, factIndex, end);
+                    factIndex = end;
+                    if (factIndex == table.size()) {
+                        entryIndex++;
+                        factIndex = 0;
+                    }
+                    return piece.toString();
+                }
+                while (entryIndex < changes.size() && changes.get(entryIndex)
+                    .getTable() == null) {
+                    piece.append(changes.get(entryIndex++)
+                        .getText())
+                        .append(System.lineSeparator());
+                }
+                return piece.toString();
+            }
+        };
+    }
+
+    /**
+     * Appends facts of a table as Prolog clauses, one per line.
+     *
+     * @param out the text to append to
+     * @param table the table
+     * @param from the position of the first fact (inclusive)
+     * @param to the position of the last fact (exclusive)
+     */
+    protected static void writeFacts(StringBuilder out, ColumnarTable table, int from, int to) {
+        for (int row = from; row < to; ++row) {
+            PrologTermWriter.writeAtom(out, table.getFunctor());
+            out.append('(');
+            for (int column = 0; column < table.getArity(); ++column) {
+                if (column > 0) {
+                    out.append(',');
+                }
+                switch (table.getType(column)) {
+                case ATOM:
+                    PrologTermWriter.writeAtom(out, table.getAtom(row, column));
+                    break;
+                case INTEGER:
+                    out.append(table.getLong(row, column));
+                    break;
+                default:
+                    var value = table.getDouble(row, column);
+                    PrologTermWriter.writeFloat(out, value, Double.toString(value));
+                }
+            }
+            out.append(").")
+                .append(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Renders the theory of the given version as one program.
+     *
+     * @param version the version to render
+     * @return the program text
+     * @see #getText(long, long)
+     */
+    public String getText(long version) {
+        return getText(0, version);
+    }
+
+    /**
+     * Renders the changes between two versions as one program. The declarations are placed in
+     * front of all other entries. The text of the last rendered versions is reused.
+     *
+     * @param fromVersion the version already known (inclusive)
+     * @param toVersion the version to be reached (exclusive)
+     * @return the program text
+     */
+    public synchronized String getText(long fromVersion, long toVersion) {
+        if (renderedFromVersion != fromVersion || renderedToVersion != toVersion) {
+            var declarationText = new StringBuilder();
+            var clauseText = new StringBuilder();
+            for (var entry : entries.subList((int) fromVersion, (int) toVersion)) {
+                var text = entry.getKind() == EntryKind.DECLARATION ? declarationText : clauseText;
+                text.append(entry.getText())
+                    .append(System.lineSeparator());
+            }
+            renderedText = declarationText.append(System.lineSeparator())
+                .append(clauseText)
+                .toString();
+            renderedFromVersion = fromVersion;
+            renderedToVersion = toVersion;
+        }
+        return renderedText;
+    }
+
+}
@@ -0,0 +1,241 @@
+package org.prolog4j.swicli.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.prolog4j.swicli.SWIPrologExecutable;
+
+/**
+ * A content addressed cache of theories compiled to quick load files (QLF).
+ * <p>
+ * The static part of a theory is compiled with <code>qcompile/1</code> once and stored under the
+ * hash of its text, the executable and the driver, so every process that needs the same theory
+ * loads the compiled file instead of consulting the source text. The executable is identified by
+ * its resolved path, size and modification time, or by its version if it cannot be found on the
+ * file system, so quick load files of another build of SWI-Prolog at the same path are not used.
+ * <p>
+ * The key of the static part of a theory is computed once per static version, later lookups of
+ * the same version neither render nor hash the text again. All predicates defined by a
+ * compiled theory are declared dynamic, so they can still be modified by assertz and retract.
+ * Theories that produce errors or warnings while being compiled are not cached, so that these
+ * messages are still reported when the theory is loaded from source.
+ */
+public class SWIPrologCLITheoryCache {
+
+    private static final String COMPILED_EXTENSION = ".qlf";
+    private static final String SOURCE_EXTENSION = ".pl";
+
+    /** The compiled static part of a theory, valid as long as the static version does not change. */
+    private static class CompiledTheory {
+        private final long staticVersion;
+        private final Path path;
+
+        CompiledTheory(long staticVersion, Path path) {
+            this.staticVersion = staticVersion;
+            this.path = path;
+        }
+    }
+
+    private final SWIPrologExecutable executable;
+    private final Path directory;
+    private final Map<SWIPrologCLITheory, CompiledTheory> compiledTheories = new WeakHashMap<>();
+    private final Object compileLock = new Object();
+    private volatile String executableStamp;
+
+    public SWIPrologCLITheoryCache(SWIPrologExecutable executable, Path directory) {
+        this.executable = executable;
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the compiled static part of a theory and compiles it if it is not in the cache yet.
+     *
+     * @param theory the theory
+     * @param staticVersion the version of the static part of the theory
+     * @return the path of the quick load file
+     * @throws IOException if the theory cannot be compiled
+     */
+    public Path getCompiledTheory(SWIPrologCLITheory theory, long staticVersion) throws IOException {
+        CompiledTheory compiled;
+        synchronized (compiledTheories) {
+            compiled = compiledTheories.get(theory);
+        }
+        if (compiled != null && compiled.staticVersion == staticVersion && Files.isRegularFile(compiled.path)) {
+            return compiled.path;
+        }
+        var path = getCompiledTheory(theory.getChanges(0, staticVersion));
+        synchronized (compiledTheories) {
+            var current = compiledTheories.get(theory);
+            if (current == null || current.staticVersion <= staticVersion) {
+                compiledTheories.put(theory, new CompiledTheory(staticVersion, path));
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Returns the compiled version of a theory and compiles it if it is not in the cache yet.
+     *
+     * @param theory the source text of the theory
+     * @return the path of the quick load file
+     * @throws IOException if the theory cannot be compiled
+     */
+    public Path getCompiledTheory(String theory) throws IOException {
+        var key = computeKey(theory);
+        var compiledTheory = directory.resolve(key + COMPILED_EXTENSION);
+        if (Files.isRegularFile(compiledTheory)) {
+            return compiledTheory;
+        }
+        synchronized (compileLock) {
+            if (Files.isRegularFile(compiledTheory)) {
+                return compiledTheory;
+            }
+            compile(theory, key, compiledTheory);
+        }
+        return compiledTheory;
+    }
+
+    private void compile(String theory, String key, Path compiledTheory) throws IOException {
+
+        // other processes might compile the same theory, so we compile to a unique name first
+        Files.createDirectories(directory);
+        var source = Files.createTempFile(directory, key + "-", SOURCE_EXTENSION);
+        var sourceName = source.getFileName()
+            .toString();
+        var compiledSource = directory
+            .resolve(sourceName.substring(0, sourceName.length() - SOURCE_EXTENSION.length()) + COMPILED_EXTENSION);
+        try {
+            Files.writeString(source, theory, StandardCharsets.UTF_8);
+            String output;
+            try (var worker = new SWIPrologCLIWorker(executable)) {
+                worker.start();
+                output = worker.request(
+                        String.format("'$p4j_qcompile'(%s).", SWIPrologCLIWorker.quote(source.toString())));
+            }
+            if (!output.isBlank() || !Files.isRegularFile(compiledSource)) {
+                throw new IOException("Could not compile the theory: " + output);
+            }
+            Files.move(compiledSource, compiledTheory, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(source);
+            Files.deleteIfExists(compiledSource);
+        }
+    }
+
+    protected String computeKey(String theory) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(getExecutableStamp().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(SWIPrologCLIWorker.DRIVER.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(theory.getBytes(StandardCharsets.UTF_8));
+            var key = new StringBuilder();
+            for (var b : digest.digest()) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns a text that changes whenever the executable is replaced, so that quick load files
+     * compiled by another version of SWI-Prolog are not loaded. It is computed once.
+     *
+     * @return the stamp of the executable
+     */
+    protected String getExecutableStamp() {
+        var stamp = executableStamp;
+        if (stamp == null) {
+            stamp = computeExecutableStamp();
+            executableStamp = stamp;
+        }
+        return stamp;
+    }
+
+    private String computeExecutableStamp() {
+        var stamp = new StringBuilder(executable.getPath());
+        for (var argument : executable.getArguments()) {
+            stamp.append('\0')
+                .append(argument);
+        }
+        var file = findExecutable(executable.getPath());
+        try {
+            if (file != null) {
+                stamp.append('\0')
+                    .append(file.toRealPath())
+                    .append('\0')
+                    .append(Files.size(file))
+                    .append('\0')
+                    .append(Files.getLastModifiedTime(file)
+                        .toMillis());
+                return stamp.toString();
+            }
+            var pb = new ProcessBuilder(executable.getPath(), "--version");
+            pb.environment()
+                .putAll(executable.getEnvironment());
+            pb.redirectErrorStream(true);
+            var process = pb.start();
+            var version = new String(process.getInputStream()
+                .readAllBytes(), StandardCharsets.UTF_8);
+            process.waitFor();
+            stamp.append('\0')
+                .append(version.trim());
+        } catch (IOException e) {
+            // the executable cannot be run either, compiling the theory will fail anyway
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+        }
+        return stamp.toString();
+    }
+
+    /**
+     * Finds the file of an executable, either by its path or by searching the directories of the
+     * <code>PATH</code> environment variable.
+     */
+    private static Path findExecutable(String name) {
+        try {
+            var path = Paths.get(name);
+            if (Files.isRegularFile(path)) {
+                return path;
+            }
+            if (path.getParent() != null) {
+                return null;
+            }
+            var searchPath = System.getenv("PATH");
+            if (searchPath == null) {
+                return null;
+            }
+            for (var directory : searchPath.split(File.pathSeparator)) {
+                if (directory.isEmpty()) {
+                    continue;
+                }
+                for (var candidate : new String[] { name, name + ".exe" }) {
+                    var file = Paths.get(directory, candidate);
+                    if (Files.isRegularFile(file) && Files.isExecutable(file)) {
+                        return file;
+                    }
+                }
+            }
+        } catch (InvalidPathException e) {
+            // not a file name, the version of the executable is used instead
+        }
+        return null;
+    }
+
+}
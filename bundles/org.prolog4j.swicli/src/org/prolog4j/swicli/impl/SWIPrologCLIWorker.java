@@ -0,0 +1,521 @@
+package org.prolog4j.swicli.impl;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+
+import org.prolog4j.swicli.SWIPrologExecutable;
+
+/**
+ * A long-lived SWI Prolog process that answers goals over its standard streams.
+ * <p>
+ * The process is started with a small driver program that reads one request term per line from
+ * standard input, executes it and terminates its response with {@link #END_OF_RESPONSE} on a
+ * line of its own. The theory is shipped as a quoted atom and loaded by <code>load_files/2</code>
+ * from a string stream, so no files are involved and the theory is loaded like the program of a
+ * {@link SWIPrologCLIRun}: its predicates stay static and errors are reported by the loader. Only
+ * the changes made since the last request are shipped, the facts of columnar tables in several
+ * requests of limited size. Every shipped piece is a source of its own, so predicates whose
+ * clauses are spread over several pieces are declared multifile instead of being redefined. If the process dies, it is started again
+ * on the next request and loads the whole theory. If a
+ * {@link SWIPrologCLITheoryCache} is available, a new process loads the static part of the theory
+ * in its compiled form. If {@link SWIPrologCLISavedStates} are available, a new process starts
+ * from the latest saved state and saves its own state after catching up with the theory.
+ * <p>
+ * Goals with a time limit are solved by <code>call_with_time_limit/2</code>, so the process
+ * survives a search that exceeds its limit and reports {@link #TIME_LIMIT_EXCEEDED} instead. If
+ * the process does not respond within {@link #TIME_LIMIT_GRACE_PERIOD} after the limit, or if the
+ * search is cancelled, the process is terminated.
+ */
+public class SWIPrologCLIWorker implements Closeable {
+
+    protected static final String END_OF_RESPONSE = "$P4J_END_OF_RESPONSE";
+
+    /** Printed on a line of its own if a goal exceeded its time limit. */
+    public static final String TIME_LIMIT_EXCEEDED = "$P4J_TIME_LIMIT_EXCEEDED";
+
+    /** The time in milliseconds a process may take beyond a time limit before it is terminated. */
+    public static final long TIME_LIMIT_GRACE_PERIOD = 1000;
+
+    protected static final String END_OF_DRIVER = "'$p4j_driver_end'";
+
+    protected static final String BOOT_GOAL = "repeat,read_term(user_input,C,[]),(C==" + END_OF_DRIVER
+            + "->!;assertz(C),fail)";
+
+    protected static final String MAIN_GOAL = "'$p4j_main'";
+
+    protected static final String DRIVER = String.join("\n",
+            "'$p4j_main' :-",
+            "    retractall('$p4j_engine'(_, _)),",
+            "    set_stream(user_input, encoding(utf8)),",
+            "    set_stream(user_output, encoding(utf8)),",
+            "    set_stream(user_output, alias(user_error)),",
+            "    repeat,",
+            "    '$p4j_read'(user_input, Request),",
+            "    (   Request == end_of_file",
+            "    ->  !",
+            "    ;   '$p4j_handle'(Request),",
+            "        '$p4j_end_of_response',",
+            "        fail",
+            "    ).",
+            "'$p4j_read'(Stream, Term) :-",
+            "    catch(read_term(Stream, Term, []), Error,",
+            "          ( print_message(error, Error), Term = '$p4j_invalid' )).",
+            "'$p4j_handle'('$p4j_invalid') :- !.",
+            "'$p4j_handle'(Goal) :-",
+            "    (   catch(Goal, Error, print_message(error, Error))",
+            "    ->  true",
+            "    ;   true",
+            "    ).",
+            "'$p4j_end_of_response' :-",
+            "    nl, write('" + END_OF_RESPONSE + "'), nl, flush_output.",
+            "'$p4j_time_limit'(Seconds, Goal) :-",
+            "    catch(call_with_time_limit(Seconds, Goal), time_limit_exceeded,",
+            "          ( nl, write('" + TIME_LIMIT_EXCEEDED + "'), nl )).",
+            "'$p4j_load'(Id, Text) :-",
+            "    setup_call_cleanup(open_string(Text, Stream),",
+            "                       '$p4j_load_stream'(Id, Stream),",
+            "                       close(Stream)).",
+            "'$p4j_load_stream'(Id, Stream) :-",
+            "    setup_call_cleanup(",
+            "        asserta((user:term_expansion(Term, _) :-",
+            "                     '$p4j_multifile_expansion'(Term)), Ref),",
+            "        load_files(user:Id, [stream(Stream)]),",
+            "        erase(Ref)).",
+            "'$p4j_multifile_expansion'(Term) :-",
+            "    Term \\== end_of_file,",
+            "    \\+ Term = (:- _),",
+            "    \\+ Term = (?- _),",
+            "    (   Term = (_ --> _)",
+            "    ->  dcg_translate_rule(Term, Clause)",
+            "    ;   Clause = Term",
+            "    ),",
+            "    (   Clause = (Head :- _)",
+            "    ->  true",
+            "    ;   Head = Clause",
+            "    ),",
+            "    callable(Head),",
+            "    \\+ Head = _:_,",
+            "    current_predicate(_, user:Head),",
+            "    \\+ predicate_property(user:Head, imported_from(_)),",
+            "    \\+ predicate_property(user:Head, multifile),",
+            "    predicate_property(user:Head, file(File)),",
+            "    prolog_load_context(source, Source),",
+            "    File \\== Source,",
+            "    functor(Head, Name, Arity),",
+            "    multifile(user:Name/Arity),",
+            "    fail.",
+            "'$p4j_engine_open'(Id, Template, Goal) :-",
+            "    engine_create(Template, Goal, Engine),",
+            "    assertz('$p4j_engine'(Id, Engine)).",
+            "'$p4j_engine_next'(Id) :-",
+            "    (   '$p4j_engine'(Id, Engine)",
+            "    ->  (   catch(engine_next(Engine, Answer), Error,",
+            "                  ( '$p4j_engine_destroy'(Id), throw(Error) ))",
+            "        ->  write(Answer)",
+            "        ;   '$p4j_engine_destroy'(Id),",
+            "            write(false)",
+            "        )",
+            "    ;   write(false)",
+            "    ).",
+            "'$p4j_engine_destroy'(Id) :-",
+            "    forall(retract('$p4j_engine'(Id, Engine)), engine_destroy(Engine)).",
+            "'$p4j_qsave'(File) :-",
+            "    qsave_program(File, [goal('$p4j_main'), toplevel(halt)]).",
+            "'$p4j_load_compiled'(File) :-",
+            "    load_files(user:File, [if(true)]).",
+            "'$p4j_qcompile'(File) :-",
+            "    retractall('$p4j_declared'(_)),",
+            "    setup_call_cleanup(",
+            "        asserta((user:term_expansion(Term, Expanded) :-",
+            "                     '$p4j_dynamic_expansion'(Term, Expanded)), Ref),",
+            "        qcompile(user:File),",
+            "        erase(Ref)).",
+            "'$p4j_dynamic_expansion'(Term, [(:- dynamic(Name/Arity)), Clause]) :-",
+            "    Term \\== end_of_file,",
+            "    \\+ Term = (:- _),",
+            "    \\+ Term = (?- _),",
+            "    (   Term = (_ --> _)",
+            "    ->  dcg_translate_rule(Term, Clause)",
+            "    ;   Clause = Term",
+            "    ),",
+            "    (   Clause = (Head :- _)",
+            "    ->  true",
+            "    ;   Head = Clause",
+            "    ),",
+            "    callable(Head),",
+            "    \\+ Head = _:_,",
+            "    functor(Head, Name, Arity),",
+            "    \\+ '$p4j_declared'(Name/Arity),",
+            "    assertz('$p4j_declared'(Name/Arity)).",
+            END_OF_DRIVER + ".",
+            "");
+
+    private final SWIPrologExecutable executable;
+    private final SWIPrologCLITheoryCache theoryCache;
+    private final SWIPrologCLISavedStates savedStates;
+    private volatile Process process;
+    private BufferedWriter processInput;
+    private BufferedReader processOutput;
+    private long theoryVersion = 0;
+    private SWIPrologCLISavedStates.SavedState startedFrom;
+    private boolean executedGoals = false;
+    private long generation = 0;
+    private long lastEngineId = 0;
+    private int openEngines = 0;
+
+    public SWIPrologCLIWorker(SWIPrologExecutable executable) {
+        this(executable, null, null);
+    }
+
+    public SWIPrologCLIWorker(SWIPrologExecutable executable, SWIPrologCLITheoryCache theoryCache,
+            SWIPrologCLISavedStates savedStates) {
+        this.executable = executable;
+        this.theoryCache = theoryCache;
+        this.savedStates = savedStates;
+    }
+
+    /**
+     * Executes a prepared goal. If the worker has not loaded the given theory version yet, it
+     * loads the changes it is missing first. Workers that already loaded a newer version solve
+     * the goal against the newer version.
+     *
+     * @param theory the theory the goal has to be solved against
+     * @param version the version of the theory
+     * @param goal the prepared goal as built by {@link SWIPrologCLIRun#prepareGoal(String)}
+     * @param cancellation the cancellation handle of the search or <code>null</code>
+     * @return the output of the goal, preceded by the output of loading the theory if any
+     * @throws IOException if the process cannot be started or terminates unexpectedly
+     */
+    public synchronized String execute(SWIPrologCLITheory theory, long version, String goal,
+            SWIPrologCLICancellation cancellation) throws IOException {
+        attach(cancellation);
+        try {
+            var loadOutput = update(theory, version);
+            return loadOutput + request(limitTime(SWIPrologCLIRun.normalizeGoal(goal), cancellation) + ".");
+        } catch (IOException e) {
+            fail();
+            throw e;
+        } finally {
+            detach(cancellation);
+        }
+    }
+
+    /**
+     * Creates an SWI Prolog engine that solves a goal on demand and fetches its first answer.
+     * The engine remains in the process until it has no further answers or the returned cursor
+     * is closed.
+     *
+     * @param theory the theory the goal has to be solved against
+     * @param version the version of the theory
+     * @param answerGoal the goal as built by {@link SWIPrologCLIRun#prepareAnswerGoal(String)}
+     * @param cancellation the cancellation handle of the search for the first answer or
+     *            <code>null</code>
+     * @return the cursor of the engine
+     * @throws IOException if the process cannot be started or terminates unexpectedly
+     */
+    public synchronized SWIPrologCLICursor open(SWIPrologCLITheory theory, long version, String answerGoal,
+            SWIPrologCLICancellation cancellation) throws IOException {
+        attach(cancellation);
+        try {
+            var loadOutput = update(theory, version);
+            var engineId = ++lastEngineId;
+            var firstOutput = request(String.format("'$p4j_engine_open'(%d, %s, (%s)), %s.", engineId,
+                    SWIPrologCLIRun.ANSWER_VARIABLE, answerGoal,
+                    limitTime(String.format("'$p4j_engine_next'(%d)", engineId), cancellation)));
+            openEngines++;
+            return new SWIPrologCLICursor(this, engineId, generation, loadOutput + firstOutput);
+        } catch (IOException e) {
+            fail();
+            throw e;
+        } finally {
+            detach(cancellation);
+        }
+    }
+
+    /**
+     * Fetches the next answer of an engine.
+     *
+     * @param engineId the identifier of the engine
+     * @param engineGeneration the generation of the process that created the engine
+     * @param cancellation the cancellation handle of the search or <code>null</code>
+     * @return the output of the engine, which is <code>false</code> if there are no more answers
+     * @throws IOException if the process has been restarted in between or terminates
+     *             unexpectedly
+     */
+    public synchronized String next(long engineId, long engineGeneration, SWIPrologCLICancellation cancellation)
+            throws IOException {
+        if (engineGeneration != generation || !isAlive()) {
+            throw new IOException("The SWI Prolog worker process has been terminated.");
+        }
+        attach(cancellation);
+        try {
+            return request(limitTime(String.format("'$p4j_engine_next'(%d)", engineId), cancellation) + ".");
+        } catch (IOException e) {
+            fail();
+            throw e;
+        } finally {
+            detach(cancellation);
+        }
+    }
+
+    /**
+     * Destroys an engine.
+     *
+     * @param engineId the identifier of the engine
+     * @param engineGeneration the generation of the process that created the engine
+     */
+    public synchronized void closeEngine(long engineId, long engineGeneration) {
+        if (engineGeneration != generation || !isAlive()) {
+            return;
+        }
+        openEngines--;
+        try {
+            request(String.format("'$p4j_engine_destroy'(%d).", engineId));
+        } catch (IOException e) {
+            fail();
+        }
+    }
+
+    /**
+     * Determines if engines of this worker might still deliver answers, so that the worker must
+     * not be terminated.
+     *
+     * @return <code>true</code> if there are open engines
+     */
+    public synchronized boolean hasOpenEngines() {
+        return openEngines > 0;
+    }
+
+    /**
+     * Terminates the process without waiting for the goal in progress. In contrast to the other
+     * methods, this method can be called while another thread waits for a response of the process.
+     */
+    public void kill() {
+        var runningProcess = process;
+        if (runningProcess != null) {
+            runningProcess.destroyForcibly();
+        }
+    }
+
+    protected void attach(SWIPrologCLICancellation cancellation) {
+        if (cancellation != null) {
+            cancellation.attach(this::kill);
+        }
+    }
+
+    protected void detach(SWIPrologCLICancellation cancellation) {
+        if (cancellation != null) {
+            cancellation.detach();
+        }
+    }
+
+    /**
+     * Wraps a goal, so that it is solved within the time limit of a search.
+     *
+     * @param goal the goal without terminating period
+     * @param cancellation the cancellation handle of the search or <code>null</code>
+     * @return the wrapped goal without terminating period
+     */
+    protected static String limitTime(String goal, SWIPrologCLICancellation cancellation) {
+        if (cancellation == null || cancellation.getTimeout() <= 0) {
+            return goal;
+        }
+        return String.format(Locale.ROOT, "'$p4j_time_limit'(%.3f, (%s))", cancellation.getTimeout() / 1000.0, goal);
+    }
+
+    protected String update(SWIPrologCLITheory theory, long version) throws IOException {
+        if (!isAlive()) {
+            restart();
+        }
+        String loadOutput = "";
+        if (theoryVersion == 0) {
+            loadOutput = loadCompiledTheory(theory, version);
+        }
+        if (theoryVersion < version) {
+            var pieces = theory.getChangePieces(theoryVersion, version);
+            for (int piece = 0; pieces.hasNext(); ++piece) {
+                // every piece is a source file of its own, so loading it does not reload another one
+                var sourceId = String.format("p4j_program_%d_%d", theoryVersion, piece);
+                loadOutput += request(String.format("'$p4j_load'(%s, %s).", sourceId, quote(pieces.next())));
+            }
+            theoryVersion = version;
+        }
+        if (!executedGoals && savedStates != null && savedStates.isOutdated(theoryVersion)) {
+            saveState();
+        }
+        executedGoals = true;
+        return loadOutput;
+    }
+
+    protected void fail() {
+        if (startedFrom != null && !executedGoals) {
+            // do not start further workers from a state that does not work
+            savedStates.discard(startedFrom);
+        }
+        destroy();
+    }
+
+    /**
+     * Starts the process without loading a theory, so that it is warm when the first goal
+     * arrives.
+     *
+     * @throws IOException if the process cannot be started
+     */
+    public synchronized void start() throws IOException {
+        if (!isAlive()) {
+            restart();
+        }
+    }
+
+    public synchronized boolean isAlive() {
+        return process != null && process.isAlive();
+    }
+
+    /**
+     * Returns the version of the theory loaded by the process.
+     *
+     * @return the theory version, <code>0</code> if no theory has been loaded
+     */
+    public synchronized long getTheoryVersion() {
+        return theoryVersion;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (process == null) {
+            return;
+        }
+        try {
+            // the driver halts when its input is closed
+            processInput.close();
+        } catch (IOException e) {
+            // the process is destroyed below anyway
+        }
+        destroy();
+    }
+
+    protected String loadCompiledTheory(SWIPrologCLITheory theory, long version) throws IOException {
+        var staticVersion = theory.getStaticVersion(version);
+        if (theoryCache == null || staticVersion == 0) {
+            return "";
+        }
+        Path compiledTheory;
+        try {
+            compiledTheory = theoryCache.getCompiledTheory(theory, staticVersion);
+        } catch (IOException e) {
+            // the theory is loaded from its source text instead
+            return "";
+        }
+        var output = request(String.format("'$p4j_load_compiled'(%s).", quote(compiledTheory.toString())));
+        theoryVersion = staticVersion;
+        return output;
+    }
+
+    protected void saveState() {
+        try {
+            savedStates.save(this, theoryVersion);
+        } catch (IOException e) {
+            // the process is still usable, later workers just do not benefit
+        }
+    }
+
+    protected void restart() throws IOException {
+        destroy();
+        var savedState = savedStates == null ? null : savedStates.getLatest();
+        var commandLine = SWIPrologCLIRun
+            .createCommandLine(savedState == null ? executable : savedState.getExecutable());
+        // no init file, so that the result does not depend on the environment of the user
+        commandLine.addAll(Arrays.asList("-q", "-f", "none"));
+        if (savedState == null) {
+            commandLine.addAll(Arrays.asList("-g", BOOT_GOAL, "-g", MAIN_GOAL, "-t", "halt"));
+        }
+        // otherwise the saved state contains the driver and runs it on its own
+        var pb = new ProcessBuilder(commandLine);
+        pb.environment().putAll(executable.getEnvironment());
+        pb.redirectErrorStream(true);
+        process = pb.start();
+        processInput = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        processOutput = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        if (savedState == null) {
+            processInput.write(DRIVER);
+            processInput.flush();
+        } else {
+            theoryVersion = savedState.getVersion();
+            startedFrom = savedState;
+        }
+    }
+
+    protected void destroy() {
+        if (process != null) {
+            process.destroyForcibly();
+        }
+        process = null;
+        processInput = null;
+        processOutput = null;
+        theoryVersion = 0;
+        startedFrom = null;
+        executedGoals = false;
+        openEngines = 0;
+        generation++;
+    }
+
+    protected String request(String request) throws IOException {
+        processInput.write(request);
+        processInput.newLine();
+        processInput.flush();
+
+        var response = new StringBuilder();
+        for (var line = processOutput.readLine(); !END_OF_RESPONSE.equals(line); line = processOutput.readLine()) {
+            if (line == null) {
+                throw new IOException("The SWI Prolog worker process terminated unexpectedly.");
+            }
+            response.append(line)
+                .append('\n');
+        }
+        return response.toString();
+    }
+
+    /**
+     * Quotes a text as Prolog atom.
+     *
+     * @param text the text to quote
+     * @return the quoted atom
+     */
+    protected static String quote(String text) {
+        var quoted = new StringBuilder(text.length() + 16);
+        quoted.append('\'');
+        for (int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '\'':
+                quoted.append("\\'");
+                break;
+            case '\\':
+                quoted.append("\\\\");
+                break;
+            case '\n':
+                quoted.append("\\n");
+                break;
+            case '\r':
+                quoted.append("\\r");
+                break;
+            case '\t':
+                quoted.append("\\t");
+                break;
+            default:
+                quoted.append(c);
+            }
+        }
+        return quoted.append('\'')
+            .toString();
+    }
+
+}
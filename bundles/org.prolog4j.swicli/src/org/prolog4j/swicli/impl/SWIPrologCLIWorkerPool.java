@@ -0,0 +1,354 @@
+package org.prolog4j.swicli.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.prolog4j.swicli.SWIPrologCLIParameters;
+import org.prolog4j.swicli.SWIPrologExecutable;
+
+/**
+ * A pool of {@link SWIPrologCLIWorker} processes of one prover. Goals are dispatched to idle
+ * workers, so goals from different threads are solved concurrently.
+ * <p>
+ * The pool starts {@link SWIPrologCLIParameters#POOL_MIN_SIZE} workers up front and grows up to
+ * {@link SWIPrologCLIParameters#POOL_MAX_SIZE} workers on demand. Workers that exceed the minimum
+ * size and have been idle for longer than {@link SWIPrologCLIParameters#POOL_IDLE_TIMEOUT} are
+ * terminated, both when workers are taken or returned and periodically by a reaper, so that
+ * surplus workers do not outlive the traffic. If {@link SWIPrologCLIParameters#SAVED_STATE} is
+ * enabled, new workers start from a saved state of a previous worker. Every worker brings its
+ * theory up to date on its own before solving a goal, so workers that already loaded most of the
+ * theory only receive the latest changes.
+ * <p>
+ * A goal that is solved on demand occupies a worker of its own until its cursor is closed, so
+ * that terminating the worker of another goal, because it has been cancelled, exceeded its time
+ * limit or crashed, never aborts the engine of the cursor. Workers of open cursors do not count
+ * towards the maximum size, otherwise a goal solved while iterating over the answers of another
+ * goal would wait for a worker forever.
+ */
+public class SWIPrologCLIWorkerPool implements Closeable {
+
+    /** Evicts idle workers of all pools periodically. */
+    private static final ScheduledExecutorService REAPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        var reaper = new Thread(r, "SWI Prolog worker reaper");
+        reaper.setDaemon(true);
+        return reaper;
+    });
+
+    /**
+     * Evicts the idle workers of a pool. The pool is referenced weakly, so that the reaper does
+     * not keep a pool alive that is no longer used.
+     */
+    protected static class Reaper implements Runnable {
+        private final WeakReference<SWIPrologCLIWorkerPool> pool;
+        private volatile ScheduledFuture<?> schedule;
+
+        public Reaper(SWIPrologCLIWorkerPool pool) {
+            this.pool = new WeakReference<>(pool);
+        }
+
+        @Override
+        public void run() {
+            var referencedPool = pool.get();
+            if (referencedPool == null) {
+                schedule.cancel(false);
+            } else {
+                referencedPool.reap();
+            }
+        }
+    }
+
+    protected static class IdleWorker {
+        private final SWIPrologCLIWorker worker;
+        private final long idleSince;
+
+        public IdleWorker(SWIPrologCLIWorker worker, long idleSince) {
+            this.worker = worker;
+            this.idleSince = idleSince;
+        }
+
+        public SWIPrologCLIWorker getWorker() {
+            return worker;
+        }
+
+        public long getIdleSince() {
+            return idleSince;
+        }
+    }
+
+    private final SWIPrologExecutable executable;
+    private final SWIPrologCLITheoryCache theoryCache;
+    private final SWIPrologCLISavedStates savedStates;
+    private final boolean streaming;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition workerReleased = lock.newCondition();
+    private final Deque<IdleWorker> idleWorkers = new ArrayDeque<>();
+    private final ScheduledFuture<?> reaperSchedule;
+    private int size = 0;
+    private int cursorWorkers = 0;
+    private boolean closed = false;
+
+    public SWIPrologCLIWorkerPool(SWIPrologExecutable executable, Map<Object, Object> parameters) {
+        this(executable, null, parameters);
+    }
+
+    public SWIPrologCLIWorkerPool(SWIPrologExecutable executable, SWIPrologCLITheoryCache theoryCache,
+            Map<Object, Object> parameters) {
+        this.executable = executable;
+        this.theoryCache = theoryCache;
+        this.savedStates = SWIPrologCLIParameters.getBoolean(parameters, SWIPrologCLIParameters.SAVED_STATE, false)
+                ? new SWIPrologCLISavedStates(executable,
+                        SWIPrologCLIParameters.getPath(parameters, SWIPrologCLIParameters.CACHE_DIRECTORY))
+                : null;
+        this.streaming = SWIPrologCLIParameters.getBoolean(parameters, SWIPrologCLIParameters.STREAMING, false);
+        this.maxSize = Math.max(1, SWIPrologCLIParameters.getInt(parameters, SWIPrologCLIParameters.POOL_MAX_SIZE, 1));
+        this.minSize = Math.min(maxSize,
+                Math.max(0, SWIPrologCLIParameters.getInt(parameters, SWIPrologCLIParameters.POOL_MIN_SIZE, 1)));
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+                SWIPrologCLIParameters.getLong(parameters, SWIPrologCLIParameters.POOL_IDLE_TIMEOUT, 60000));
+        for (int i = 0; i < minSize; ++i) {
+            var worker = new SWIPrologCLIWorker(executable, theoryCache, savedStates);
+            try {
+                worker.start();
+            } catch (IOException e) {
+                // the worker is started again when it is used the first time
+            }
+            idleWorkers.push(new IdleWorker(worker, System.nanoTime()));
+            size++;
+        }
+        if (maxSize > minSize) {
+            // idle workers are evicted at most half of the idle timeout late
+            var period = Math.max(1, TimeUnit.NANOSECONDS.toMillis(idleTimeoutNanos) / 2);
+            var reaper = new Reaper(this);
+            reaperSchedule = REAPER.scheduleWithFixedDelay(reaper, period, period, TimeUnit.MILLISECONDS);
+            reaper.schedule = reaperSchedule;
+        } else {
+            reaperSchedule = null;
+        }
+    }
+
+    /**
+     * Executes a prepared goal on an idle worker. Blocks if all workers are busy and the pool
+     * has reached its maximum size.
+     *
+     * @param theory the theory the goal has to be solved against
+     * @param version the version of the theory
+     * @param goal the prepared goal
+     * @param cancellation the cancellation handle of the search or <code>null</code>
+     * @return the output of the worker
+     * @throws IOException if the worker process fails or the thread has been interrupted while
+     *             waiting for a worker
+     */
+    public String execute(SWIPrologCLITheory theory, long version, String goal, SWIPrologCLICancellation cancellation)
+            throws IOException {
+        var worker = acquire(version);
+        try {
+            return worker.execute(theory, version, goal, cancellation);
+        } finally {
+            release(worker);
+        }
+    }
+
+    /**
+     * Creates an engine on an idle worker that solves a goal on demand. The worker is not
+     * available for other goals until the cursor has been closed. If there is no idle worker, a
+     * new one is started even if the pool has reached its maximum size.
+     *
+     * @param theory the theory the goal has to be solved against
+     * @param version the version of the theory
+     * @param answerGoal the goal as built by {@link SWIPrologCLIRun#prepareAnswerGoal(String)}
+     * @param cancellation the cancellation handle of the search for the first answer or
+     *            <code>null</code>
+     * @return the cursor of the engine
+     * @throws IOException if the worker process fails or the thread has been interrupted while
+     *             waiting for a worker
+     */
+    public SWIPrologCLICursor open(SWIPrologCLITheory theory, long version, String answerGoal,
+            SWIPrologCLICancellation cancellation) throws IOException {
+        var worker = acquireForCursor(version);
+        SWIPrologCLICursor cursor;
+        try {
+            cursor = worker.open(theory, version, answerGoal, cancellation);
+        } catch (IOException | RuntimeException e) {
+            releaseFromCursor(worker);
+            throw e;
+        }
+        cursor.onClose(() -> releaseFromCursor(worker));
+        return cursor;
+    }
+
+    /**
+     * Determines if goals shall be solved on demand by {@link #open(SWIPrologCLITheory, long, String, SWIPrologCLICancellation)}.
+     *
+     * @return <code>true</code> if {@link SWIPrologCLIParameters#STREAMING} is enabled
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    @Override
+    public void close() {
+        if (reaperSchedule != null) {
+            reaperSchedule.cancel(false);
+        }
+        lock.lock();
+        try {
+            closed = true;
+            for (var idleWorker : idleWorkers) {
+                idleWorker.getWorker()
+                    .close();
+            }
+            size -= idleWorkers.size();
+            idleWorkers.clear();
+            if (savedStates != null) {
+                savedStates.close();
+            }
+            workerReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected SWIPrologCLIWorker acquire(long version) throws IOException {
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new IOException("The worker pool has been closed.");
+                }
+                evictIdleWorkers();
+                var idleWorker = pollIdleWorker(version);
+                if (idleWorker != null) {
+                    return idleWorker;
+                }
+                if (size - cursorWorkers < maxSize) {
+                    size++;
+                    return new SWIPrologCLIWorker(executable, theoryCache, savedStates);
+                }
+                workerReleased.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                .interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an SWI Prolog worker.");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected void release(SWIPrologCLIWorker worker) {
+        lock.lock();
+        try {
+            if (closed) {
+                worker.close();
+                size--;
+            } else {
+                idleWorkers.push(new IdleWorker(worker, System.nanoTime()));
+                evictIdleWorkers();
+            }
+            workerReleased.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected SWIPrologCLIWorker acquireForCursor(long version) throws IOException {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IOException("The worker pool has been closed.");
+            }
+            evictIdleWorkers();
+            var worker = pollIdleWorker(version);
+            if (worker == null) {
+                size++;
+                worker = new SWIPrologCLIWorker(executable, theoryCache, savedStates);
+            }
+            cursorWorkers++;
+            return worker;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected void releaseFromCursor(SWIPrologCLIWorker worker) {
+        lock.lock();
+        try {
+            cursorWorkers--;
+            if (!closed && size - cursorWorkers > maxSize) {
+                // the worker has been started beyond the maximum size for the cursor
+                worker.close();
+                size--;
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        release(worker);
+    }
+
+    /**
+     * Takes an idle worker out of the pool. Workers that already loaded the requested theory
+     * version are preferred, so that theories are loaded as rarely as possible.
+     */
+    protected SWIPrologCLIWorker pollIdleWorker(long version) {
+        for (Iterator<IdleWorker> iter = idleWorkers.iterator(); iter.hasNext();) {
+            var worker = iter.next()
+                .getWorker();
+            if (worker.getTheoryVersion() == version) {
+                iter.remove();
+                return worker;
+            }
+        }
+        var idleWorker = idleWorkers.poll();
+        return idleWorker == null ? null : idleWorker.getWorker();
+    }
+
+    /**
+     * Evicts the workers that have been idle for too long, unless the pool has been closed.
+     */
+    protected void reap() {
+        lock.lock();
+        try {
+            if (!closed) {
+                evictIdleWorkers();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected void evictIdleWorkers() {
+        var now = System.nanoTime();
+        // the least recently used workers are at the end of the deque
+        for (Iterator<IdleWorker> iter = idleWorkers.descendingIterator(); iter.hasNext() && size > minSize;) {
+            var idleWorker = iter.next();
+            if (now - idleWorker.getIdleSince() <= idleTimeoutNanos) {
+                break;
+            }
+            // engines of the worker might still deliver answers
+            if (!idleWorker.getWorker()
+                .hasOpenEngines()) {
+                iter.remove();
+                idleWorker.getWorker()
+                    .close();
+                size--;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,63 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.tuprolog;
+
+import java.util.Map;
+
+/**
+ * Parameters understood by the tuProlog binding. The parameters are passed to
+ * {@link TuPrologProverFactory#createProver(Map)}.
+ * 
+ * Values can either be given as typed objects or as strings.
+ */
+public final class TuPrologParameters {
+
+	/**
+	 * The number of tuProlog engines a prover uses for solving goals
+	 * concurrently. Every engine holds a copy of the knowledge base. Expects
+	 * an integer value. Default is <code>1</code>, i.e. a single engine that
+	 * solves one goal at a time.
+	 */
+	public static final String POOL_SIZE = "tuprolog.pool.size";
+
+	private TuPrologParameters() {
+		// intentionally left empty
+	}
+
+	public static int getInt(Map<Object, Object> parameters, String key, int defaultValue) {
+		Object value = parameters.get(key);
+		if (value instanceof Number) {
+			return ((Number) value).intValue();
+		}
+		if (value instanceof String) {
+			try {
+				return Integer.parseInt(((String) value).trim());
+			} catch (NumberFormatException e) {
+				// just ignore it and use default value
+			}
+		}
+		return defaultValue;
+	}
+
+}
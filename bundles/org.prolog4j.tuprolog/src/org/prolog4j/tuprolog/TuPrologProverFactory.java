@@ -30,18 +30,49 @@ import org.prolog4j.ConversionPolicy;
 import org.prolog4j.IProverFactory;
 import org.prolog4j.Prover;
 import org.prolog4j.tuprolog.impl.TuPrologConversionPolicy;
+import org.prolog4j.tuprolog.impl.TuPrologPooledProver;
 import org.prolog4j.tuprolog.impl.TuPrologProver;
 
 /**
- * An implementation of {@link IProverFactory} which always returns
- * {@link TuPrologProver} instances.
+ * An implementation of {@link IProverFactory} which returns
+ * {@link TuPrologProver} instances, or {@link TuPrologPooledProver} instances
+ * if {@link TuPrologParameters#POOL_SIZE} is greater than one.
  */
 @Component(property = { "id=org.prolog4j.tuprolog.proverfactory", "name=TuProlog Interpreter", "needsNativeExecutables=false" })
 public final class TuPrologProverFactory implements IProverFactory {
 
+	/** The conversion policy shared by provers, created on first use. */
+	private volatile ConversionPolicy sharedConversionPolicy;
+
 	@Override
 	public Prover createProver(Map<Object, Object> parameters) {
-		return new TuPrologProver(createConversionPolicy());
+		ConversionPolicy policy = IProverFactory.isSharedConversionPolicy(parameters)
+				? getSharedConversionPolicy() : createConversionPolicy();
+		int poolSize = TuPrologParameters.getInt(parameters, TuPrologParameters.POOL_SIZE, 1);
+		if (poolSize > 1) {
+			return new TuPrologPooledProver(policy, poolSize);
+		}
+		return new TuPrologProver(policy);
+	}
+
+	/**
+	 * Returns the conversion policy shared by the provers created with
+	 * {@link IProverFactory#SHARED_CONVERSION_POLICY}.
+	 * 
+	 * @return the shared conversion policy
+	 */
+	public ConversionPolicy getSharedConversionPolicy() {
+		ConversionPolicy policy = sharedConversionPolicy;
+		if (policy == null) {
+			synchronized (this) {
+				policy = sharedConversionPolicy;
+				if (policy == null) {
+					policy = createConversionPolicy();
+					sharedConversionPolicy = policy;
+				}
+			}
+		}
+		return policy;
 	}
 
 	@Override
@@ -0,0 +1,311 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.tuprolog.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+import org.prolog4j.AbstractProver;
+import org.prolog4j.ColumnarTable;
+import org.prolog4j.ConversionPolicy;
+import org.prolog4j.Query;
+import org.prolog4j.QueryCancelledException;
+import org.prolog4j.tuprolog.impl.libraries.DatabaseLibrary;
+import org.prolog4j.tuprolog.impl.libraries.FactStore;
+import org.prolog4j.tuprolog.impl.libraries.FactTable;
+
+import alice.tuprolog.Prolog;
+import alice.tuprolog.PrologError;
+
+/**
+ * A prover that solves goals concurrently on a pool of tuProlog engines. Every
+ * engine belongs to a {@link TuPrologProver} of the pool and holds its own copy
+ * of the knowledge base, so goals from different threads are solved on
+ * different engines without waiting for each other.
+ * <p>
+ * Modifications of the knowledge base are applied to every engine of the pool
+ * in the order they are made. A modification by the methods of the prover
+ * waits for the goals being solved and blocks new goals until it has been
+ * applied to all engines, so that every goal sees the same knowledge base
+ * regardless of the engine it is solved on.
+ * <p>
+ * Modifications made by goals, e.g. by <code>assertz/1</code>,
+ * <code>retract/1</code> or <code>consult/1</code>, cannot wait for the other
+ * goals, since they are made while a goal is solved. They are applied to every
+ * engine one after the other as soon as they are made, so the knowledge bases
+ * of the engines agree once they have been applied, but a goal solved
+ * concurrently on another engine may or may not see them.
+ * <p>
+ * An engine is occupied only while a goal is solved. All solutions of a goal
+ * are searched for up front, so that the engine can solve the goals of other
+ * threads while the solutions are traversed.
+ * <p>
+ * The facts of stored predicates are kept only once, in a {@link FactStore}
+ * shared by all engines of the pool.
+ */
+public class TuPrologPooledProver extends AbstractProver {
+
+	/** Class version for serialization. */
+	private static final long serialVersionUID = 1L;
+
+	/** The provers of the engines of the pool. */
+	private final TuPrologProver[] members;
+
+	/** The provers whose engines are not solving a goal at the moment. */
+	private final BlockingQueue<TuPrologProver> idleMembers;
+
+	/**
+	 * Shared by the goals being solved, held exclusively while the knowledge
+	 * base is modified. The lock is fair, so that modifications are not
+	 * starved by a steady stream of goals.
+	 */
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+
+	/** The facts of the stored predicates of all engines. */
+	private final FactStore factStore = new FactStore();
+
+	/**
+	 * Held while a modification made by a goal is applied to every engine, so
+	 * that such modifications are applied in the same order on every engine.
+	 */
+	private final Object goalModificationLock = new Object();
+
+	/**
+	 * Creates a pool of tuProlog engines.
+	 * 
+	 * @param conversionPolicy the conversion policy shared by the engines
+	 * @param size the number of engines
+	 */
+	public TuPrologPooledProver(ConversionPolicy conversionPolicy, int size) {
+		super(conversionPolicy);
+		if (size < 1) {
+			throw new IllegalArgumentException("The pool must contain at least one engine.");
+		}
+		members = new TuPrologProver[size];
+		for (int i = 0; i < size; ++i) {
+			members[i] = new TuPrologProver(conversionPolicy, factStore, this::modify);
+		}
+		idleMembers = new ArrayBlockingQueue<TuPrologProver>(size, false, Arrays.asList(members));
+	}
+
+	/**
+	 * Returns the number of engines of the pool.
+	 * 
+	 * @return the number of engines
+	 */
+	public int getPoolSize() {
+		return members.length;
+	}
+
+	@Override
+	public Query query(String goal) {
+		return new TuPrologPooledQuery(this, goal, members[0]);
+	}
+
+	/**
+	 * Takes an idle engine out of the pool. Blocks if all engines are busy or
+	 * the knowledge base is being modified.
+	 * 
+	 * @param goal the goal to be solved, for reporting an interruption
+	 * @return the prover of the engine
+	 * @throws QueryCancelledException if the thread has been interrupted while
+	 *             waiting for an engine
+	 */
+	TuPrologProver acquire(String goal) {
+		lock.readLock().lock();
+		try {
+			return idleMembers.take();
+		} catch (InterruptedException e) {
+			lock.readLock().unlock();
+			Thread.currentThread().interrupt();
+			throw new QueryCancelledException(goal);
+		}
+	}
+
+	/**
+	 * Returns an engine taken by {@link #acquire(String)} to the pool. Must be
+	 * called by the thread that acquired the engine.
+	 * 
+	 * @param member the prover of the engine
+	 */
+	void release(TuPrologProver member) {
+		idleMembers.add(member);
+		lock.readLock().unlock();
+	}
+
+	/**
+	 * Applies a modification of the knowledge base to every engine, after the
+	 * goals being solved have finished.
+	 * 
+	 * @param modification the modification of the knowledge base of an engine
+	 */
+	private void modify(Consumer<TuPrologProver> modification) {
+		lock.writeLock().lock();
+		try {
+			for (TuPrologProver member : members) {
+				modification.accept(member);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		invalidateAnswers();
+	}
+
+	/**
+	 * Applies a modification of the clause database made by a goal to the
+	 * engines of every prover of the pool, see {@link DatabaseLibrary}. The
+	 * modifications made by the methods of this prover and by goals run while
+	 * a theory is consulted are only applied to the engine of the goal, since
+	 * the prover applies the methods and copies consulted theories to every
+	 * engine itself.
+	 * 
+	 * @param origin the engine the goal is solved on
+	 * @param modification the modification
+	 * @return the result of the modification on the engine of the goal
+	 * @throws PrologError if the arguments of the goal are invalid
+	 */
+	private boolean modify(Prolog origin, DatabaseLibrary.Modification modification) throws PrologError {
+		TuPrologProver originMember = null;
+		for (TuPrologProver member : members) {
+			if (member.hasEngine(origin)) {
+				originMember = member;
+			}
+		}
+		if (lock.isWriteLockedByCurrentThread() || Thread.holdsLock(origin.getTheoryManager())) {
+			// the theory being consulted is copied to every engine afterwards
+			return originMember.modify(origin, modification);
+		}
+		synchronized (goalModificationLock) {
+			if (!originMember.modify(origin, modification)) {
+				return false;
+			}
+			for (TuPrologProver member : members) {
+				if (member != originMember) {
+					member.forward(modification);
+				}
+			}
+		}
+		invalidateAnswers();
+		return true;
+	}
+
+	@Override
+	public void assertz(String fact, Object... args) {
+		modify(member -> member.assertz(fact, args));
+	}
+
+	/**
+	 * Asserts the facts on every engine. The rows are collected first, so that
+	 * they are iterated only once. Facts of stored predicates are added to the
+	 * shared fact store once, the engines skip them.
+	 */
+	@Override
+	public void assertAll(String functor, Iterable<Object[]> rows) {
+		List<Object[]> rowList = new ArrayList<Object[]>();
+		for (Object[] row : rows) {
+			rowList.add(row);
+		}
+		lock.writeLock().lock();
+		try {
+			for (Object[] row : rowList) {
+				FactTable table = factStore.getTable(functor, row.length);
+				if (table != null) {
+					table.add(TuPrologProver.fact(getConversionPolicy(), functor, row));
+				}
+			}
+			for (TuPrologProver member : members) {
+				member.assertAll(functor, rowList);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		invalidateAnswers();
+	}
+
+	@Override
+	public void declareStored(String functor, int arity, int[]... indexes) {
+		modify(member -> member.declareStored(functor, arity, indexes));
+	}
+
+	/**
+	 * Attaches the table to the shared fact store once, the engines only add
+	 * the rule that looks its facts up.
+	 */
+	@Override
+	public void addTable(ColumnarTable table, int[]... indexes) {
+		lock.writeLock().lock();
+		try {
+			factStore.attach(table, indexes);
+			for (TuPrologProver member : members) {
+				member.addTable(table, indexes);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		invalidateAnswers();
+	}
+
+	@Override
+	public void retract(String fact) {
+		modify(member -> member.retract(fact));
+	}
+
+	@Override
+	public void loadLibrary(String className) {
+		modify(member -> member.loadLibrary(className));
+	}
+
+	@Override
+	public void loadTheory(InputStream input) throws IOException {
+		byte[] theory = input.readAllBytes();
+		lock.writeLock().lock();
+		try {
+			for (TuPrologProver member : members) {
+				member.loadTheory(new ByteArrayInputStream(theory));
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		invalidateAnswers();
+	}
+
+	@Override
+	public void addTheory(String theory) {
+		modify(member -> member.addTheory(theory));
+	}
+
+	@Override
+	public void addTheory(String... theory) {
+		modify(member -> member.addTheory(theory));
+	}
+
+}
@@ -0,0 +1,79 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.tuprolog.impl;
+
+import org.prolog4j.Query;
+import org.prolog4j.Solution;
+
+/**
+ * The query of a {@link TuPrologPooledProver}. Every call of
+ * {@link #solve(Object...)} takes an idle engine out of the pool and solves
+ * the goal on it. The goal is parsed once and shared by all engines, because
+ * a {@link TuPrologQuery} does not depend on the engine that solves it.
+ */
+public class TuPrologPooledQuery extends Query {
+
+	/** The prover of the pool. */
+	private final TuPrologPooledProver prover;
+
+	/** The parsed goal, solved on the engines of the pool. */
+	private final TuPrologQuery query;
+
+	/**
+	 * Creates a query of a pooled prover.
+	 * 
+	 * @param prover the prover of the pool
+	 * @param goal the Prolog goal to be solved
+	 * @param member the prover of any engine of the pool
+	 */
+	TuPrologPooledQuery(TuPrologPooledProver prover, String goal, TuPrologProver member) {
+		super(goal);
+		this.prover = prover;
+		this.query = new TuPrologQuery(member, goal);
+		addCancellationAction(query::cancel);
+	}
+
+	@Override
+	public <A> Solution<A> solve(Object... actualArgs) {
+		TuPrologProver member = prover.acquire(getGoal());
+		try {
+			return query.solve(member, getTimeout(), true, actualArgs);
+		} finally {
+			prover.release(member);
+		}
+	}
+
+	@Override
+	public Query bind(int argument, Object value) {
+		query.bind(argument, value);
+		return this;
+	}
+
+	@Override
+	public Query bind(String variable, Object value) {
+		query.bind(variable, value);
+		return this;
+	}
+
+}
@@ -23,42 +23,197 @@
  */
 package org.prolog4j.tuprolog.impl;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import org.prolog4j.AbstractProver;
+import org.prolog4j.BoundGoal;
+import org.prolog4j.ColumnarTable;
 import org.prolog4j.ConversionPolicy;
+import org.prolog4j.ErrorSolution;
 import org.prolog4j.Query;
+import org.prolog4j.Solution;
+import org.prolog4j.tuprolog.impl.libraries.DatabaseLibrary;
+import org.prolog4j.tuprolog.impl.libraries.FactStore;
+import org.prolog4j.tuprolog.impl.libraries.FactStoreLibrary;
+import org.prolog4j.tuprolog.impl.libraries.FactTable;
 import org.prolog4j.tuprolog.impl.libraries.ListsLibrary;
 
 import alice.tuprolog.InvalidLibraryException;
 import alice.tuprolog.InvalidTheoryException;
 import alice.tuprolog.Prolog;
+import alice.tuprolog.PrologError;
+import alice.tuprolog.Struct;
+import alice.tuprolog.Term;
 import alice.tuprolog.Theory;
+import alice.tuprolog.Var;
 import alice.tuprolog.event.ExceptionListener;
 import alice.tuprolog.event.WarningListener;
 
 /**
  * Represents a Prolog knowledge base and provides methods for solving queries
  * on it. The prover itself is not responsible for processing the solutions.
+ * <p>
+ * A tuProlog engine can only continue the search of the goal it solved last.
+ * Therefore every solution whose search has not finished yet occupies an
+ * engine of its own, so that several solutions can be traversed interleaved
+ * or nested. The prover starts with a single engine and adds a copy of its
+ * knowledge base whenever a goal is solved while all engines are occupied.
+ * At most {@link #MAX_IDLE_ENGINES} copies are kept once their solutions have
+ * finished.
+ * <p>
+ * Most solutions are only asked for their first solution, e.g. by
+ * <code>solve(goal).get()</code>, although their search could continue. The
+ * engine of such a solution is lent to the prover until a further solution
+ * is requested. A goal solved while all engines are occupied takes the
+ * longest lent engine back instead of copying the knowledge base, and the
+ * solution it was taken from repeats its search on another engine if it is
+ * iterated later.
+ * <p>
+ * The knowledge base is modified on all engines alike, one modification after
+ * the other. This includes the modifications made by goals, e.g. by calling
+ * <code>assertz/1</code> or <code>retract/1</code>, which the
+ * {@link DatabaseLibrary} applies to every engine, and theories added by
+ * goals, which are copied to every engine once they have been consulted.
+ * Engines are copied under the same lock, so a new engine never misses a
+ * modification.
+ * <p>
+ * The facts of stored predicates are kept in a {@link FactStore} shared by
+ * all engines instead of their clause databases, see
+ * {@link #declareStored(String, int, int[]...)} and
+ * {@link #addTable(ColumnarTable, int[]...)}.
  */
 public class TuPrologProver extends AbstractProver {
 
 	/** Class version for serialization. */
 	private static final long serialVersionUID = 1L;
 
+	/**
+	 * The maximal number of copies of the knowledge base kept while they are
+	 * not occupied by a solution.
+	 */
+	static final int MAX_IDLE_ENGINES = 4;
+
+	/**
+	 * The libraries loaded by tuProlog by default, in the order tuProlog
+	 * loads them.
+	 */
+	private static final String[] DEFAULT_LIBRARIES = { "alice.tuprolog.lib.BasicLibrary",
+			"alice.tuprolog.lib.ISOLibrary", "alice.tuprolog.lib.IOLibrary", "alice.tuprolog.lib.OOLibrary" };
+
 	/**
 	 * The tuProlog engine that is used for storing the knowledge base and
 	 * solving queries on it.
 	 */
 	private final Prolog engine;
 
+	/** All engines of the prover, starting with {@link #engine}. */
+	private final List<Prolog> engines = new ArrayList<Prolog>();
+
+	/** The engines that are not occupied by a solution. */
+	private final Deque<Prolog> idleEngines = new ArrayDeque<Prolog>();
+
+	/**
+	 * The engines of solutions that have not requested a further solution
+	 * yet, in the order they have been lent.
+	 */
+	private final Deque<EngineLease> lentEngines = new ArrayDeque<EngineLease>();
+
+	/**
+	 * Whether a modification is being applied to every engine, so that the
+	 * modifications it causes on the engines are not applied again.
+	 */
+	private boolean modifying;
+
+	/** The class names of the libraries loaded into the engines. */
+	private final List<String> libraries = new ArrayList<String>();
+
+	/** The stored predicates whose lookup rules have been added, as functor/arity. */
+	private final Set<String> storedPredicates = new HashSet<String>();
+
+	/** The facts of the stored predicates. */
+	private final FactStore factStore;
+
+	/**
+	 * Whether facts of stored predicates are added to {@link #factStore} by
+	 * the owner of the store instead of this prover.
+	 */
+	private final boolean sharedFactStore;
+
+	/**
+	 * Applies the modifications of the clause database made by goals, either
+	 * {@link #modify(Prolog, DatabaseLibrary.Modification)} or the owner of a
+	 * pool of provers sharing the knowledge base.
+	 */
+	private final DatabaseLibrary.Database database;
+
+	/**
+	 * An engine taken by a solution. Must not refer to the solution, so that
+	 * the solution can be garbage collected.
+	 */
+	static final class EngineLease {
+
+		/** The engine. */
+		private final Prolog engine;
+
+		/**
+		 * Whether the engine has been returned or taken back by the prover.
+		 * Guarded by the lock of the prover.
+		 */
+		private boolean revoked;
+
+		EngineLease(Prolog engine) {
+			this.engine = engine;
+		}
+
+		Prolog getEngine() {
+			return engine;
+		}
+	}
+
 	/**
 	 * Creates a tuProlog prover.
 	 */
 	public TuPrologProver(ConversionPolicy conversionPolicy) {
+		this(conversionPolicy, new FactStore(), false, null);
+	}
+
+	/**
+	 * Creates a tuProlog prover whose stored predicates are kept in a store
+	 * shared with other provers. The owner of the store adds the facts and
+	 * tables of stored predicates to it, {@link #assertAll(String, Iterable)}
+	 * and {@link #addTable(ColumnarTable, int[]...)} of this prover only add
+	 * the rules that look them up. The modifications of the clause database
+	 * made by goals are passed to the given database, which applies them to
+	 * the other provers as well.
+	 * 
+	 * @param conversionPolicy the conversion policy
+	 * @param factStore the shared store
+	 * @param database the database of the provers sharing the knowledge base
+	 */
+	TuPrologProver(ConversionPolicy conversionPolicy, FactStore factStore, DatabaseLibrary.Database database) {
+		this(conversionPolicy, factStore, true, database);
+	}
+
+	private TuPrologProver(ConversionPolicy conversionPolicy, FactStore factStore, boolean sharedFactStore,
+			DatabaseLibrary.Database database) {
 		super(conversionPolicy);
-		engine = new Prolog();
+		this.factStore = factStore;
+		this.sharedFactStore = sharedFactStore;
+		this.database = database == null ? this::modify : database;
+		engine = newEngine();
+		listenToTheory(engine);
+		engines.add(engine);
+		idleEngines.push(engine);
 		loadDefaultLibraries();
 	}
 
@@ -67,7 +222,8 @@ public class TuPrologProver extends AbstractProver {
     }
 
 	/**
-	 * Returns the tuProlog engine used by the prover.
+	 * Returns the tuProlog engine used by the prover. Further engines are only
+	 * used while the engine is occupied by a solution.
 	 * 
 	 * @return the tuProlog engine
 	 */
@@ -75,42 +231,464 @@ public class TuPrologProver extends AbstractProver {
 		return engine;
 	}
 
+	/**
+	 * Takes an engine that is not occupied by a solution. If all engines are
+	 * occupied, the engine lent the longest is taken back, or if no engine
+	 * has been lent, a new engine with a copy of the knowledge base is
+	 * created.
+	 * 
+	 * @return the lease of the engine
+	 */
+	synchronized EngineLease acquireEngine() {
+		Prolog idleEngine = idleEngines.poll();
+		if (idleEngine == null) {
+			EngineLease lent = lentEngines.poll();
+			if (lent != null) {
+				lent.revoked = true;
+				idleEngine = lent.engine;
+				idleEngine.solveEnd();
+			} else {
+				idleEngine = copyEngine();
+				engines.add(idleEngine);
+			}
+		}
+		return new EngineLease(idleEngine);
+	}
+
+	/**
+	 * Lends the engine of a solution to the prover until the solution
+	 * requests a further solution, see {@link #keepEngine(EngineLease)}.
+	 * 
+	 * @param lease the lease of the engine
+	 */
+	synchronized void lendEngine(EngineLease lease) {
+		if (!lease.revoked && !lentEngines.contains(lease)) {
+			lentEngines.add(lease);
+		}
+	}
+
+	/**
+	 * Ends lending the engine of a solution, so that the solution can
+	 * continue its search.
+	 * 
+	 * @param lease the lease of the engine
+	 * @return <code>false</code> if the engine has been taken back meanwhile
+	 */
+	synchronized boolean keepEngine(EngineLease lease) {
+		if (lease.revoked) {
+			return false;
+		}
+		lentEngines.remove(lease);
+		return true;
+	}
+
+	/**
+	 * Returns an engine taken by {@link #acquireEngine()} unless it has been
+	 * taken back already. Copies of the knowledge base beyond
+	 * {@link #MAX_IDLE_ENGINES} are dropped.
+	 * 
+	 * @param lease the lease of the engine
+	 */
+	synchronized void releaseEngine(EngineLease lease) {
+		if (lease.revoked) {
+			return;
+		}
+		lease.revoked = true;
+		lentEngines.remove(lease);
+		if (lease.engine != engine && idleEngines.size() >= MAX_IDLE_ENGINES) {
+			engines.remove(lease.engine);
+			return;
+		}
+		idleEngines.push(lease.engine);
+	}
+
+	/**
+	 * Returns the number of engines, occupied or not, i.e. the number of
+	 * copies of the knowledge base.
+	 * 
+	 * @return the number of engines
+	 */
+	public synchronized int getEngineCount() {
+		return engines.size();
+	}
+
+	/**
+	 * Creates an engine with the default libraries of tuProlog, loaded after
+	 * the {@link DatabaseLibrary} that replaces their predicates modifying the
+	 * clause database, and the {@link FactStoreLibrary}.
+	 * 
+	 * @return the new engine
+	 */
+	private Prolog newEngine() {
+		try {
+			Prolog newEngine = new Prolog(new String[0]);
+			newEngine.loadLibrary(new DatabaseLibrary(database));
+			for (String className : DEFAULT_LIBRARIES) {
+				newEngine.loadLibrary(className);
+			}
+			newEngine.loadLibrary(new FactStoreLibrary(factStore));
+			return newEngine;
+		} catch (InvalidLibraryException e) {
+			throw new IllegalStateException("Could not create a tuProlog engine.", e);
+		}
+	}
+
+	/**
+	 * Creates an engine with the libraries and a copy of the knowledge base
+	 * of {@link #engine}. Must be called holding the lock of the prover, so
+	 * that the knowledge base is not modified while it is copied.
+	 * 
+	 * @return the new engine
+	 */
+	private Prolog copyEngine() {
+		Prolog copy = newEngine();
+		try {
+			for (String className : libraries) {
+				copy.loadLibrary(className);
+			}
+			copy.setTheory(engine.getTheory());
+		} catch (InvalidLibraryException | InvalidTheoryException e) {
+			throw new IllegalStateException("Could not copy the knowledge base.", e);
+		}
+		listenToTheory(copy);
+		return copy;
+	}
+
+	/**
+	 * Copies the theories added to an engine by goals, e.g. by
+	 * <code>consult/1</code>, to every other engine.
+	 * 
+	 * @param target the engine
+	 */
+	private void listenToTheory(Prolog target) {
+		target.addTheoryListener(event -> theoryChanged(target));
+	}
+
+	/**
+	 * Replaces the knowledge base of every engine with the knowledge base of
+	 * an engine whose theory has been changed by a goal.
+	 * 
+	 * @param origin the engine
+	 */
+	private void theoryChanged(Prolog origin) {
+		synchronized (this) {
+			if (modifying) {
+				// the change is being applied to every engine already
+				return;
+			}
+		}
+		String theory = origin.getTheoryManager().getTheory(true);
+		try {
+			database.modify(origin, e -> {
+				if (e != origin) {
+					try {
+						e.setTheory(new Theory(theory));
+					} catch (InvalidTheoryException ex) {
+						throw new IllegalStateException("Could not copy the knowledge base.", ex);
+					}
+				}
+				return true;
+			});
+		} catch (PrologError e) {
+			// the theory has been consulted by the engine already
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Determines whether an engine belongs to the prover.
+	 * 
+	 * @param e the engine
+	 * @return <code>true</code> if the engine belongs to the prover
+	 */
+	synchronized boolean hasEngine(Prolog e) {
+		return engines.contains(e);
+	}
+
+	/**
+	 * Applies a modification of the clause database made by a goal to every
+	 * engine, see {@link DatabaseLibrary}.
+	 * <p>
+	 * Goals run while a theory is consulted, e.g. directives, only modify the
+	 * engine consulting the theory, because the engine holds the lock of its
+	 * database meanwhile. The theory is copied to the other engines once it
+	 * has been consulted.
+	 * 
+	 * @param origin the engine the goal is solved on
+	 * @param modification the modification
+	 * @return the result of the modification on the engine of the goal
+	 * @throws PrologError if the arguments of the goal are invalid
+	 */
+	boolean modify(Prolog origin, DatabaseLibrary.Modification modification) throws PrologError {
+		if (Thread.holdsLock(origin.getTheoryManager())) {
+			return modification.apply(origin);
+		}
+		synchronized (this) {
+			if (modifying) {
+				return modification.apply(origin);
+			}
+			modifying = true;
+			try {
+				if (!modification.apply(origin)) {
+					return false;
+				}
+				for (Prolog e : engines) {
+					if (e != origin) {
+						modification.apply(e);
+					}
+				}
+			} finally {
+				modifying = false;
+			}
+		}
+		invalidateAnswers();
+		return true;
+	}
+
+	/**
+	 * Applies a modification of the clause database made by a goal of another
+	 * prover sharing the knowledge base to every engine.
+	 * 
+	 * @param modification the modification
+	 * @throws PrologError if the modification fails
+	 */
+	void forward(DatabaseLibrary.Modification modification) throws PrologError {
+		synchronized (this) {
+			boolean nested = modifying;
+			modifying = true;
+			try {
+				for (Prolog e : engines) {
+					modification.apply(e);
+				}
+			} finally {
+				modifying = nested;
+			}
+		}
+		invalidateAnswers();
+	}
+
+	/**
+	 * Applies a modification of the knowledge base to every engine. Holds the
+	 * lock of the prover, so that modifications are applied in the same order
+	 * on every engine and engines are not copied in between.
+	 * 
+	 * @param modification the modification of a single engine
+	 */
+	private synchronized void modifyAll(Consumer<Prolog> modification) {
+		boolean nested = modifying;
+		modifying = true;
+		try {
+			for (Prolog e : engines) {
+				modification.accept(e);
+			}
+		} finally {
+			modifying = nested;
+		}
+	}
+
 	@Override
 	public Query query(String goal) {
 		return new TuPrologQuery(this, goal);
 	}
 
+	/**
+	 * Solves the goals one after the other. All solutions of a goal are
+	 * searched for before the next goal is solved, so that the goals do not
+	 * occupy an engine each.
+	 */
+	@Override
+	public <A> List<Solution<A>> solveBatch(List<BoundGoal> goals) {
+		List<Solution<A>> solutions = new ArrayList<Solution<A>>(goals.size());
+		for (BoundGoal goal : goals) {
+			try {
+				checkGoal(goal.getGoal());
+				solutions.add(((TuPrologQuery) cachedQuery(goal.getGoal())).<A>solve(true, goal.getActualArgs()));
+			} catch (RuntimeException e) {
+				solutions.add(new ErrorSolution<A>(e));
+			}
+		}
+		return solutions;
+	}
+
+	/**
+	 * Adds a fact or rule to the knowledge base of every engine. The clause is
+	 * added to the databases directly instead of solving
+	 * <code>assertz/1</code>, so that solutions occupying an engine are not
+	 * disturbed.
+	 */
+	@Override
+	public void assertz(String fact, Object... args) {
+		Term clause = clause(new TuPrologQuery(this, "assertz(" + fact.substring(0, fact.lastIndexOf('.')) + ")."), args);
+		modifyAll(e -> e.getTheoryManager().assertZ(copy(clause), true, null, false));
+		invalidateAnswers();
+	}
+
+	/**
+	 * Adds the facts to the knowledge base of every engine. The arguments are
+	 * converted to tuProlog terms directly and the facts are added to the
+	 * databases without parsing or solving anything. Facts of stored
+	 * predicates are added to the fact store instead.
+	 */
+	@Override
+	public void assertAll(String functor, Iterable<Object[]> rows) {
+		ConversionPolicy cp = getConversionPolicy();
+		synchronized (this) {
+			for (Object[] row : rows) {
+				FactTable table = factStore.getTable(functor, row.length);
+				if (table != null && sharedFactStore) {
+					continue;
+				}
+				Struct fact = fact(cp, functor, row);
+				if (table != null) {
+					table.add(fact);
+					continue;
+				}
+				for (int i = 0; i < engines.size(); ++i) {
+					engines.get(i).getTheoryManager().assertZ(i == 0 ? fact : copy(fact), true, null, false);
+				}
+			}
+		}
+		invalidateAnswers();
+	}
+
+	/**
+	 * Converts the arguments of a fact to tuProlog terms.
+	 * 
+	 * @param cp the conversion policy
+	 * @param functor the functor of the fact
+	 * @param row the arguments of the fact
+	 * @return the fact
+	 */
+	static Struct fact(ConversionPolicy cp, String functor, Object[] row) {
+		if (row.length == 0) {
+			return new Struct(functor);
+		}
+		Term[] args = new Term[row.length];
+		for (int i = 0; i < args.length; ++i) {
+			args[i] = (Term) cp.convertObject(row[i]);
+		}
+		return new Struct(functor, args);
+	}
+
+	/**
+	 * Keeps the facts of the predicate in the fact store of the prover and
+	 * adds a rule to the knowledge base of every engine that looks the facts
+	 * up through {@link FactStoreLibrary}.
+	 */
+	@Override
+	public void declareStored(String functor, int arity, int[]... indexes) {
+		factStore.declare(functor, arity, indexes.length == 0 ? new int[][] { { 0 } } : indexes);
+		addLookupRule(functor, arity);
+		invalidateAnswers();
+	}
+
+	/**
+	 * Keeps the facts of the table in its columns. The facts are converted to
+	 * terms only when a goal of the predicate selects them.
+	 */
+	@Override
+	public void addTable(ColumnarTable table, int[]... indexes) {
+		if (!sharedFactStore) {
+			factStore.attach(table, indexes);
+		}
+		addLookupRule(table.getFunctor(), table.getArity());
+		invalidateAnswers();
+	}
+
+	/**
+	 * Adds the rule that looks up the facts of a stored predicate to the
+	 * knowledge base of every engine, unless it has been added before.
+	 * 
+	 * @param functor the functor of the predicate
+	 * @param arity the arity of the predicate
+	 */
+	private void addLookupRule(String functor, int arity) {
+		synchronized (this) {
+			if (!storedPredicates.add(functor + "/" + arity)) {
+				return;
+			}
+		}
+		Struct rule = FactStoreLibrary.lookupRule(functor, arity);
+		modifyAll(e -> e.getTheoryManager().assertZ(copy(rule), true, null, false));
+	}
+
+	/**
+	 * Removes the first matching fact or rule from the knowledge base of every
+	 * engine. The clause is removed from the databases directly instead of
+	 * solving <code>retract/1</code>, so that solutions occupying an engine
+	 * are not disturbed.
+	 */
+	@Override
+	public void retract(String fact) {
+		int lastDot = fact.lastIndexOf('.');
+		int length = fact.length();
+		if (lastDot == -1 || fact.substring(lastDot, length).trim().length() > 1) {
+			lastDot = length;
+		}
+		Term clause = clause(new TuPrologQuery(this, "retract(" + fact.substring(0, lastDot) + ")."));
+		modifyAll(e -> e.getTheoryManager().retract(copy(clause)));
+		invalidateAnswers();
+	}
+
+	/**
+	 * Returns the clause that is the argument of the goal of a query.
+	 * 
+	 * @param query the query of <code>assertz/1</code> or
+	 *            <code>retract/1</code>
+	 * @param actualArgs the actual arguments of the query
+	 * @return the clause
+	 */
+	private static Term clause(TuPrologQuery query, Object... actualArgs) {
+		Term clause = ((Struct) query.instantiate(actualArgs)).getArg(0).getTerm();
+		if (!(clause instanceof Struct)) {
+			throw new IllegalArgumentException("Not a clause: " + clause);
+		}
+		return clause;
+	}
+
+	/**
+	 * Copies a clause with fresh variables, so that the engines do not share
+	 * variables.
+	 * 
+	 * @param clause the clause
+	 * @return the copy
+	 */
+	private static Struct copy(Term clause) {
+		return (Struct) clause.copyGoal(new LinkedHashMap<Var, Var>(), 0);
+	}
+
 	@Override
 	public void loadLibrary(String className) {
-		try {
-			engine.loadLibrary(className);
-		} catch (InvalidLibraryException e) {
-			throw new RuntimeException(e);
+		synchronized (this) {
+			try {
+				for (Prolog e : engines) {
+					e.loadLibrary(className);
+				}
+			} catch (InvalidLibraryException e) {
+				throw new RuntimeException(e);
+			}
+			libraries.add(className);
 		}
+		invalidateAnswers();
 	}
 
 	@Override
 	public void loadTheory(InputStream input) throws IOException {
-		try {
-			engine.addTheory(new Theory(input));
-		} catch (InvalidTheoryException e) {
-			e.printStackTrace();
-		}
+		byte[] theory = input.readAllBytes();
+		modifyAll(e -> {
+			try {
+				e.addTheory(new Theory(new ByteArrayInputStream(theory)));
+			} catch (IOException | InvalidTheoryException ex) {
+				ex.printStackTrace();
+			}
+		});
+		invalidateAnswers();
 	}
 
 	@Override
 	public void addTheory(String theory) {
-		try {
-			ExceptionListener el = e -> System.err.println(e.getSource() + " | " + e.getMsg());
-			WarningListener wl = w -> System.err.println(w.getSource() + " | " + w.getMsg());
-			engine.addExceptionListener(el);
-			engine.addWarningListener(wl);
-			engine.addTheory(new Theory(theory));
-			engine.removeExceptionListener(el);
-			engine.removeWarningListener(wl);
-		} catch (InvalidTheoryException e) {
-			e.printStackTrace();
-		}
+		modifyAll(e -> addTheory(e, theory));
+		invalidateAnswers();
 	}
 
 	@Override
@@ -119,14 +697,25 @@ public class TuPrologProver extends AbstractProver {
 		for (String factOrRule : theory) {
 			sb.append(factOrRule).append('\n');
 		}
+		addTheory(sb.toString());
+	}
+
+	/**
+	 * Adds a theory to the knowledge base of an engine, reporting errors and
+	 * warnings on the standard error.
+	 * 
+	 * @param target the engine
+	 * @param theory the theory
+	 */
+	private static void addTheory(Prolog target, String theory) {
 		try {
 			ExceptionListener el = e -> System.err.println(e.getSource() + " | " + e.getMsg());
 			WarningListener wl = w -> System.err.println(w.getSource() + " | " + w.getMsg());
-			engine.addExceptionListener(el);
-			engine.addWarningListener(wl);
-			engine.addTheory(new Theory(sb.toString()));
-			engine.removeExceptionListener(el);
-			engine.removeWarningListener(wl);
+			target.addExceptionListener(el);
+			target.addWarningListener(wl);
+			target.addTheory(new Theory(theory));
+			target.removeExceptionListener(el);
+			target.removeWarningListener(wl);
 		} catch (InvalidTheoryException e) {
 			e.printStackTrace();
 		}
@@ -23,9 +23,11 @@
  */
 package org.prolog4j.tuprolog.impl;
 
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import org.prolog4j.ConversionPolicy;
 import org.prolog4j.InvalidQueryException;
@@ -35,33 +37,46 @@ import org.prolog4j.UnknownVariableException;
 
 import alice.tuprolog.InvalidTermException;
 import alice.tuprolog.Parser;
-import alice.tuprolog.Prolog;
 import alice.tuprolog.Struct;
 import alice.tuprolog.Term;
 import alice.tuprolog.Var;
 
 /**
  * The tuProlog implementation of the Query class.
+ * <p>
+ * The goal is parsed once, when the query is created. The parsed goal is
+ * never modified afterwards; every call of {@link #solve(Object...)} copies it
+ * with fresh variables and binds the copies of the placeholders to the actual
+ * arguments. Therefore a query can be solved by several threads at the same
+ * time. Note that a single tuProlog engine still solves one goal at a time,
+ * so goals are only solved in parallel by a {@link TuPrologPooledProver}.
  */
 public class TuPrologQuery extends Query {
-	
+
+	/** The functor of the term that holds the placeholders of the goal. */
+	private static final String PLACEHOLDERS_FUNCTOR = "$placeholders";
+
+	/** Marks the placeholders that have not been bound explicitly. */
+	private static final Object UNBOUND = new Object();
+
 	/** The tuProlog prover used to process this query. */
 	private final TuPrologProver prover;
 	
 	/** The conversion policy of the prover that is used for solving this query. */
 	private final ConversionPolicy cp;
-	
-	/** The tuProlog engine used to process this query. */
-	private final Prolog engine;
 
-	/** The tuProlog representation of the goal to be solved. */
-	private Struct sGoal;
+	/**
+	 * The parsed goal, preceded by a term that holds the variables of the
+	 * placeholders, or the parsed goal only if it has no placeholders.
+	 */
+	private final Struct sGoal;
 
-	/** The tuProlog variables representing the input variables of the goal. */
-	private Var[] inputVars;
-	
-	/** Contains the variables explicitly bound through the bind methods. */
-	private Set<Var> explicitlyBoundVars = new HashSet<Var>();
+	/**
+	 * The values bound explicitly through the bind methods per placeholder,
+	 * {@link #UNBOUND} if a placeholder is bound to the next actual argument.
+	 * The array is replaced on every change.
+	 */
+	private volatile Object[] explicitValues;
 	
 	/**
 	 * Creates a TuProlog query object.
@@ -73,20 +88,23 @@ public class TuPrologQuery extends Query {
 		super(goal);
 		this.prover = prover;
 		this.cp = prover.getConversionPolicy();
-		this.engine = prover.getEngine();
 		List<String> placeholderNames = getPlaceholderNames();
 		int placeholderNo = placeholderNames.size();
-		inputVars = new Var[placeholderNo];
+		explicitValues = new Object[placeholderNo];
+		Arrays.fill(explicitValues, UNBOUND);
 		try {
 			Parser parser = new Parser(getGoal());
-			sGoal = (Struct) parser.nextTerm(true);
-			for (int i = 0, index = 0; i < placeholderNo; ++i, ++index) {
-				Var argVar = new Var(placeholderNames.get(i));
-				Var arg = new Var("J$" + argVar.getOriginalName());
-				sGoal = new Struct(",", new Struct("=", argVar, arg), sGoal);
-				inputVars[index] = arg;
+			Struct parsedGoal = (Struct) parser.nextTerm(true);
+			if (placeholderNo > 0) {
+				// the placeholders are listed in reverse order, as they used to be bound
+				Term[] placeholders = new Term[placeholderNo];
+				for (int i = 0; i < placeholderNo; ++i) {
+					placeholders[placeholderNo - 1 - i] = new Var(placeholderNames.get(i));
+				}
+				parsedGoal = new Struct(",", new Struct(PLACEHOLDERS_FUNCTOR, placeholders), parsedGoal);
 			}
-			sGoal.resolveTerm();
+			parsedGoal.resolveTerm();
+			sGoal = parsedGoal;
 		} catch (InvalidTermException e) {
 			throw new InvalidQueryException(goal, e);
 		}
@@ -94,36 +112,145 @@ public class TuPrologQuery extends Query {
 
 	@Override
 	public <A> Solution<A> solve(Object... actualArgs) {
-		int i = 0;
-		for (Var var: inputVars) {
-			if (explicitlyBoundVars.contains(var)) {
-				continue;
+		return solve(false, actualArgs);
+	}
+
+	/**
+	 * Solves the goal with the given actual arguments.
+	 * 
+	 * @param <A> the type of an element of the solutions
+	 * @param complete whether all solutions are searched for up front
+	 * @param actualArgs the actual arguments of the goal
+	 * @return an object for traversing the solutions
+	 */
+	<A> TuPrologSolution<A> solve(boolean complete, Object... actualArgs) {
+		return solve(prover, getTimeout(), complete, actualArgs);
+	}
+
+	/**
+	 * Solves the goal with the given actual arguments on the engine of a
+	 * prover.
+	 * 
+	 * @param <A> the type of an element of the solutions
+	 * @param engineProver the prover whose engine solves the goal
+	 * @param timeout the time limit of a search in milliseconds, zero for no
+	 *            limit
+	 * @param complete whether all solutions are searched for up front
+	 * @param actualArgs the actual arguments of the goal
+	 * @return an object for traversing the solutions
+	 */
+	<A> TuPrologSolution<A> solve(TuPrologProver engineProver, long timeout, boolean complete,
+			Object... actualArgs) {
+		TuPrologSolution<A> solution = new TuPrologSolution<A>(engineProver, bindGoal(actualArgs), getGoal(), timeout);
+		Runnable cancellation = solution::cancel;
+		addCancellationAction(cancellation);
+		try {
+			if (complete) {
+				solution.solveAll();
+			} else {
+				solution.solve();
+			}
+		} finally {
+			removeCancellationAction(cancellation);
+		}
+		return solution;
+	}
+
+	/**
+	 * Copies the parsed goal with fresh variables and binds the copies of the
+	 * placeholders to the explicitly bound values and to the actual arguments.
+	 * 
+	 * @param actualArgs the actual arguments of the goal
+	 * @return the goal to be solved
+	 */
+	private Term bindGoal(Object... actualArgs) {
+		Struct goal = (Struct) sGoal.copyGoal(new LinkedHashMap<Var, Var>(), 0);
+		if (explicitValues.length == 0) {
+			return goal;
+		}
+		Struct values = new Struct(PLACEHOLDERS_FUNCTOR, placeholderValues(actualArgs));
+		return new Struct(",", new Struct("=", goal.getArg(0), values), goal.getArg(1));
+	}
+
+	/**
+	 * Converts the values of the placeholders, in the order they are listed
+	 * at the start of the parsed goal.
+	 * 
+	 * @param actualArgs the actual arguments of the goal
+	 * @return the values of the placeholders
+	 */
+	private Term[] placeholderValues(Object... actualArgs) {
+		Object[] values = explicitValues;
+		Term[] terms = new Term[values.length];
+		for (int i = 0, iActual = 0; i < values.length; ++i) {
+			Object value = values[i] == UNBOUND ? actualArgs[iActual++] : values[i];
+			terms[values.length - 1 - i] = (Term) cp.convertObject(value);
+		}
+		return terms;
+	}
+
+	/**
+	 * Returns the goal with the placeholders replaced by the explicitly bound
+	 * values and the actual arguments, without solving it.
+	 * 
+	 * @param actualArgs the actual arguments of the goal
+	 * @return the instantiated goal
+	 */
+	Term instantiate(Object... actualArgs) {
+		Struct goal = (Struct) sGoal.copyGoal(new LinkedHashMap<Var, Var>(), 0);
+		if (explicitValues.length == 0) {
+			return goal;
+		}
+		Struct placeholders = (Struct) goal.getArg(0);
+		Term[] values = placeholderValues(actualArgs);
+		Map<Var, Term> substitution = new IdentityHashMap<Var, Term>();
+		for (int i = 0; i < values.length; ++i) {
+			substitution.put((Var) placeholders.getArg(i).getTerm(), values[i]);
+		}
+		return substitute(goal.getArg(1), substitution);
+	}
+
+	/**
+	 * Replaces variables of a term.
+	 * 
+	 * @param term the term
+	 * @param substitution the replacements of the variables
+	 * @return the term with the variables replaced
+	 */
+	private static Term substitute(Term term, Map<Var, Term> substitution) {
+		term = term.getTerm();
+		if (term instanceof Var) {
+			Term replacement = substitution.get(term);
+			return replacement == null ? term : replacement;
+		}
+		if (term instanceof Struct && ((Struct) term).getArity() > 0) {
+			Struct struct = (Struct) term;
+			Term[] args = new Term[struct.getArity()];
+			for (int i = 0; i < args.length; ++i) {
+				args[i] = substitute(struct.getArg(i), substitution);
 			}
-			var.free();
-			engine.unify(var, (Term) cp.convertObject(actualArgs[i++]));
+			return new Struct(struct.getName(), args);
 		}
-		return new TuPrologSolution<A>(prover, sGoal);
+		return term;
 	}
 
 	@Override
 	public Query bind(int argument, Object value) {
-		inputVars[argument].free();
-		explicitlyBoundVars.add(inputVars[argument]);
-		engine.unify(inputVars[argument], (Term) cp.convertObject(value));
+		synchronized (this) {
+			Object[] values = explicitValues.clone();
+			values[argument] = value;
+			explicitValues = values;
+		}
 		return this;
 	}
 
 	@Override
 	public Query bind(String variable, Object value) {
-		for (Var v: inputVars) {
-			if (v.getName().equals(variable)) {
-				v.free();
-				explicitlyBoundVars.add(v);
-				engine.unify(v, (Term) cp.convertObject(value));
-				return this;
-			}
+		int argument = getPlaceholderNames().indexOf(variable);
+		if (argument == -1) {
+			throw new UnknownVariableException(variable);
 		}
-		throw new UnknownVariableException(variable);
+		return bind(argument, value);
 	}
 
 }
@@ -23,12 +23,23 @@
  */
 package org.prolog4j.tuprolog.impl;
 
+import java.lang.ref.Cleaner;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.prolog4j.ConversionPolicy;
+import org.prolog4j.QueryCancelledException;
+import org.prolog4j.QueryTimeoutException;
 import org.prolog4j.Solution;
 import org.prolog4j.SolutionIterator;
 import org.prolog4j.UnknownVariableException;
@@ -43,17 +54,86 @@ import alice.tuprolog.Var;
 /**
  * The <tt>Solution</tt> class is responsible for traversing through the
  * solutions of a query.
+ * <p>
+ * The solution occupies an engine of the prover as long as its search may
+ * find further solutions, so that the prover solves other goals on other
+ * engines in the meantime. The engine is released when the solutions are
+ * exhausted, when the search is cancelled or aborted, or when the solution is
+ * garbage collected.
+ * <p>
+ * Until a further solution is requested, the engine is only lent to the
+ * prover, which takes it back for another goal rather than copying its
+ * knowledge base. A solution whose engine has been taken back repeats its
+ * search on another engine when the next solution is requested, skipping the
+ * first solution. If the knowledge base has been modified meanwhile, the
+ * remaining solutions are those of the modified knowledge base.
  * 
  * @param <S>
  *            the type of the values of the variable that is of special interest
  */
 public class TuPrologSolution<S> extends Solution<S> {
 
+	/** Halts the engines whose searches exceed their time limit. */
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread timer = new Thread(r, "tuProlog query timer");
+		timer.setDaemon(true);
+		return timer;
+	});
+
+	/** Releases the engines of solutions that have not been traversed completely. */
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	/** A search of the tuProlog engine. */
+	private interface Search {
+		SolveInfo run() throws NoMoreSolutionException;
+	}
+
+	/**
+	 * Returns an engine to its prover. Must not refer to the solution, so that
+	 * the solution can be garbage collected.
+	 */
+	private static final class EngineRelease implements Runnable {
+
+		private final TuPrologProver prover;
+		private final TuPrologProver.EngineLease lease;
+
+		EngineRelease(TuPrologProver prover, TuPrologProver.EngineLease lease) {
+			this.prover = prover;
+			this.lease = lease;
+		}
+
+		@Override
+		public void run() {
+			prover.releaseEngine(lease);
+		}
+	}
+
+	/** The tuProlog prover whose engine solves the query. */
+	private final TuPrologProver prover;
+
 	/** The conversion policy of the tuProlog prover that is used for solving this query. */
 	private final ConversionPolicy cp;
 
-	/** The tuProlog engine that is used for solving the query. */
-	private final Prolog engine;
+	/**
+	 * The tuProlog engine that is used for solving the query, null if the
+	 * solution does not occupy an engine.
+	 */
+	private Prolog engine;
+
+	/** The lease of {@link #engine}, null if the solution does not occupy an engine. */
+	private TuPrologProver.EngineLease lease;
+
+	/** Releases the engine, null if the solution does not occupy an engine. */
+	private Cleaner.Cleanable engineRelease;
+
+	/** The goal to be solved. */
+	private final Term goal;
+
+	/** The query as written by the user, for reporting aborted searches. */
+	private final String query;
+
+	/** The time in milliseconds a single search may take, zero if it is not limited. */
+	private final long timeout;
 	
 	/** The list of variables occurring in the query. */
 	private List<Var> vars;
@@ -62,18 +142,63 @@ public class TuPrologSolution<S> extends Solution<S> {
 	private SolveInfo solution;
 	
 	/** True if the query has a solution, otherwise false. */
-	private final boolean success;
+	private boolean success;
+
+	/**
+	 * The solutions after the current one if they have been searched for up
+	 * front, otherwise null.
+	 */
+	private Queue<SolveInfo> remainingSolutions;
+
+	/** True if the engine is searching for a solution at the moment. */
+	private boolean searching;
+
+	/** True if the search has been cancelled. */
+	private boolean cancelled;
+
+	/** True if the current search has exceeded its time limit. */
+	private boolean timedOut;
 
 	/**
 	 * Creates an object, using which the solutions of a query can be accessed.
+	 * The goal is solved by {@link #solve()}.
 	 * 
 	 * @param prover the tuProlog prover
 	 * @param goal the goal to be solved
+	 * @param query the query as written by the user
+	 * @param timeout the time limit of a search in milliseconds, zero for no limit
 	 */
-	TuPrologSolution(TuPrologProver prover, Term goal) {
+	TuPrologSolution(TuPrologProver prover, Term goal, String query, long timeout) {
+		this.prover = prover;
 		this.cp = prover.getConversionPolicy();
-		this.engine = prover.getEngine();
-		solution = engine.solve(goal);
+		this.goal = goal;
+		this.query = query;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Searches for the first solution of the goal. The engine is lent to the
+	 * prover until a further solution is requested.
+	 */
+	void solve() {
+		searchFirst();
+		synchronized (this) {
+			if (lease != null) {
+				prover.lendEngine(lease);
+			}
+		}
+	}
+
+	/**
+	 * Searches for the first solution of the goal on an engine of the prover.
+	 */
+	private void searchFirst() {
+		occupyEngine();
+		try {
+			solution = search(() -> engine.solve(goal));
+		} catch (NoMoreSolutionException e) {
+			throw new IllegalStateException(e);
+		}
 		success = solution.isSuccess();
 		if (!success) {
 			return;
@@ -88,6 +213,154 @@ public class TuPrologSolution<S> extends Solution<S> {
 		}
 	}
 
+	/**
+	 * Searches for all solutions of the goal up front, so that the engine can
+	 * solve other goals before the solutions are traversed.
+	 */
+	void solveAll() {
+		searchFirst();
+		remainingSolutions = new ArrayDeque<SolveInfo>();
+		if (!success) {
+			return;
+		}
+		try {
+			while (hasOpenAlternatives()) {
+				Prolog searchingEngine = engine;
+				SolveInfo next = search(searchingEngine::solveNext);
+				if (!next.isSuccess()) {
+					break;
+				}
+				remainingSolutions.add(next);
+			}
+		} catch (NoMoreSolutionException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Takes an engine of the prover for the search.
+	 */
+	private void occupyEngine() {
+		TuPrologProver.EngineLease newLease = prover.acquireEngine();
+		synchronized (this) {
+			lease = newLease;
+			engine = newLease.getEngine();
+			engineRelease = CLEANER.register(this, new EngineRelease(prover, newLease));
+		}
+	}
+
+	/**
+	 * Prepares the engine for searching for the next solution. If the prover
+	 * has taken the engine back in the meantime, the search is repeated on
+	 * another engine up to the first solution, which is the only one found
+	 * before the engine could be taken back.
+	 * 
+	 * @return true if the search may find further solutions
+	 */
+	private boolean continueSearch() {
+		synchronized (this) {
+			if (lease == null) {
+				return false;
+			}
+			if (prover.keepEngine(lease)) {
+				return engine.hasOpenAlternatives();
+			}
+			releaseEngine();
+		}
+		occupyEngine();
+		try {
+			return search(() -> engine.solve(goal)).isSuccess() && hasOpenAlternatives();
+		} catch (NoMoreSolutionException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Runs a search of the engine. The engine is halted if the search is
+	 * cancelled or exceeds its time limit.
+	 * 
+	 * @param search the search to run
+	 * @return the result of the search
+	 * @throws NoMoreSolutionException if there are no further solutions
+	 */
+	private SolveInfo search(Search search) throws NoMoreSolutionException {
+		ScheduledFuture<?> timer = null;
+		synchronized (this) {
+			if (cancelled) {
+				releaseEngine();
+				throw new QueryCancelledException(query);
+			}
+			searching = true;
+			timedOut = false;
+			if (timeout > 0) {
+				timer = TIMER.schedule(this::expire, timeout, TimeUnit.MILLISECONDS);
+			}
+		}
+		SolveInfo result = null;
+		try {
+			result = search.run();
+			return result;
+		} finally {
+			synchronized (this) {
+				searching = false;
+				if (timer != null) {
+					timer.cancel(false);
+				}
+				if (result == null || timedOut || cancelled || !result.isSuccess() || !engine.hasOpenAlternatives()) {
+					releaseEngine();
+				}
+				if (timedOut) {
+					throw new QueryTimeoutException(query, timeout);
+				}
+				if (cancelled) {
+					throw new QueryCancelledException(query);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Halts the engine because the current search exceeded its time limit.
+	 */
+	private synchronized void expire() {
+		if (searching) {
+			timedOut = true;
+			engine.solveHalt();
+		}
+	}
+
+	/**
+	 * Returns the engine to the prover, because the search cannot find
+	 * further solutions.
+	 */
+	private synchronized void releaseEngine() {
+		if (engineRelease != null) {
+			engineRelease.clean();
+			engineRelease = null;
+			engine = null;
+			lease = null;
+		}
+	}
+
+	/**
+	 * Determines whether the search may find further solutions.
+	 * 
+	 * @return true if the solution occupies an engine with open alternatives
+	 */
+	private synchronized boolean hasOpenAlternatives() {
+		return engine != null && engine.hasOpenAlternatives();
+	}
+
+	@Override
+	public synchronized void cancel() {
+		cancelled = true;
+		if (searching) {
+			engine.solveHalt();
+		} else {
+			releaseEngine();
+		}
+	}
+
 	@Override
 	public boolean isSuccess() {
 		return success;
@@ -133,6 +406,22 @@ public class TuPrologSolution<S> extends Solution<S> {
 		}
 	}
 
+	@Override
+	protected Map<String, Object> getBindings() {
+		Map<String, Object> bindings = new LinkedHashMap<String, Object>();
+		if (!success) {
+			return bindings;
+		}
+		try {
+			for (Var var : vars) {
+				bindings.put(var.getOriginalName(), solution.getVarValue(var.getOriginalName()));
+			}
+		} catch (NoSolutionException e) {
+			throw new IllegalStateException(e);
+		}
+		return bindings;
+	}
+
 	@Override
 	public void collect(Collection<?>... collections) {
 		SolutionIterator<S> it = iterator();
@@ -157,10 +446,24 @@ public class TuPrologSolution<S> extends Solution<S> {
 
 	@Override
 	protected boolean fetch() {
+		if (remainingSolutions != null) {
+			if (remainingSolutions.isEmpty()) {
+				return false;
+			}
+			solution = remainingSolutions.poll();
+			return true;
+		}
 		try {
-			boolean hasNext = engine.hasOpenAlternatives()
-					&& (solution = engine.solveNext()).isSuccess();
-			return hasNext;
+			if (!continueSearch()) {
+				return false;
+			}
+			Prolog searchingEngine = engine;
+			SolveInfo next = search(searchingEngine::solveNext);
+			if (!next.isSuccess()) {
+				return false;
+			}
+			solution = next;
+			return true;
 		} catch (NoMoreSolutionException e) {
 			throw new IllegalStateException(e);
 		}
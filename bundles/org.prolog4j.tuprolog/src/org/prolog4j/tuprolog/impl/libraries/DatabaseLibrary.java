@@ -0,0 +1,112 @@
+package org.prolog4j.tuprolog.impl.libraries;
+
+import java.util.LinkedHashMap;
+
+import alice.tuprolog.BuiltIn;
+import alice.tuprolog.Library;
+import alice.tuprolog.Prolog;
+import alice.tuprolog.PrologError;
+import alice.tuprolog.Term;
+import alice.tuprolog.Var;
+
+/**
+ * Replaces the built-in predicates that modify the clause database, so that
+ * the modifications made by goals reach every engine that shares the
+ * knowledge base, not only the engine the goal is solved on.
+ * <p>
+ * The library has to be loaded before <code>BasicLibrary</code>, because the
+ * rules of <code>assert/1</code>, <code>retract/1</code> and
+ * <code>retractall/1</code> are bound to the primitives that are loaded when
+ * they are consulted.
+ */
+public class DatabaseLibrary extends Library {
+
+    private static final long serialVersionUID = -2961806367815209127L;
+
+    /** Modifies the clause database of a single engine. */
+    @FunctionalInterface
+    public interface Modification {
+
+        /**
+         * Applies the modification to an engine.
+         *
+         * @param engine the engine
+         * @return <code>false</code> if the database has not been modified
+         * @throws PrologError if the arguments of the goal are invalid
+         */
+        boolean apply(Prolog engine) throws PrologError;
+    }
+
+    /** The engines sharing a knowledge base. */
+    @FunctionalInterface
+    public interface Database {
+
+        /**
+         * Applies a modification made by a goal to every engine. The
+         * modification is applied to the engine of the goal first and to the
+         * other engines only if it has modified the database.
+         *
+         * @param origin the engine the goal is solved on
+         * @param modification the modification
+         * @return the result of the modification on the engine of the goal
+         * @throws PrologError if the arguments of the goal are invalid
+         */
+        boolean modify(Prolog origin, Modification modification) throws PrologError;
+    }
+
+    /** A built-in predicate that modifies the clause database. */
+    @FunctionalInterface
+    private interface Primitive {
+
+        boolean apply(BuiltIn builtIn, Term arg) throws PrologError;
+    }
+
+    private final transient Database database;
+
+    private transient BuiltIn builtIn;
+
+    public DatabaseLibrary(Database database) {
+        this.database = database;
+    }
+
+    public boolean asserta_1(Term clause) throws PrologError {
+        return modify(clause, BuiltIn::asserta_1);
+    }
+
+    public boolean assertz_1(Term clause) throws PrologError {
+        return modify(clause, BuiltIn::assertz_1);
+    }
+
+    public boolean $retract_1(Term clause) throws PrologError {
+        return modify(clause, BuiltIn::$retract_1);
+    }
+
+    public boolean abolish_1(Term indicator) throws PrologError {
+        return modify(indicator, BuiltIn::abolish_1);
+    }
+
+    /**
+     * Applies a built-in predicate to every engine. The other engines receive
+     * a copy of the argument taken before the goal has bound any of its
+     * variables, so that <code>retract/1</code> removes the same clause from
+     * every database.
+     */
+    private boolean modify(Term arg, Primitive primitive) throws PrologError {
+        Prolog origin = getEngine();
+        Term pristine = copy(arg);
+        return database.modify(origin, engine -> engine == origin ? primitive.apply(getBuiltIn(), arg)
+                : primitive.apply(new BuiltIn(engine), copy(pristine)));
+    }
+
+    private BuiltIn getBuiltIn() {
+        if (builtIn == null) {
+            builtIn = new BuiltIn(getEngine());
+        }
+        return builtIn;
+    }
+
+    private static Term copy(Term term) {
+        return term.getTerm().copyGoal(new LinkedHashMap<Var, Var>(), 0);
+    }
+
+}
@@ -0,0 +1,192 @@
+package org.prolog4j.tuprolog.impl.libraries;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A hash index of the facts of a {@link FactTable} on a combination of
+ * arguments. The index maps the keys of the arguments, as computed by
+ * {@link FactTable#key(alice.tuprolog.Term)}, to the positions of the facts
+ * holding them.
+ * <p>
+ * Indexes on a single argument keep integer keys in an open addressing table
+ * of primitive longs, so that indexing a column of numbers does not box every
+ * number. Keys of other types and keys of several arguments are kept in a
+ * {@link HashMap}.
+ */
+class FactIndex {
+
+    /** The positions of the facts with the same key, in the order of the facts. */
+    static class RowIds {
+
+        private int[] ids = new int[2];
+        private int size = 0;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int get(int i) {
+            return ids[i];
+        }
+    }
+
+    /** Maps primitive long keys to the positions of the facts by open addressing. */
+    static class LongMap {
+
+        private long[] keys = new long[16];
+        private RowIds[] values = new RowIds[16];
+        private int size = 0;
+
+        RowIds get(long key) {
+            for (int slot = slot(key, keys.length);; slot = (slot + 1) & (keys.length - 1)) {
+                if (values[slot] == null) {
+                    return null;
+                }
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+        }
+
+        RowIds getOrCreate(long key) {
+            if (2 * (size + 1) > keys.length) {
+                resize();
+            }
+            int slot = slot(key, keys.length);
+            while (values[slot] != null) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            keys[slot] = key;
+            values[slot] = new RowIds();
+            size++;
+            return values[slot];
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            RowIds[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new RowIds[oldValues.length * 2];
+            for (int i = 0; i < oldKeys.length; ++i) {
+                if (oldValues[i] != null) {
+                    int slot = slot(oldKeys[i], keys.length);
+                    while (values[slot] != null) {
+                        slot = (slot + 1) & (keys.length - 1);
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int slot(long key, int capacity) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32)) & (capacity - 1);
+        }
+    }
+
+    private final int[] columns;
+    private final LongMap longKeys;
+    private final Map<Object, RowIds> keys = new HashMap<>();
+
+    /**
+     * Creates an empty index.
+     *
+     * @param columns the positions of the indexed arguments, starting from zero
+     */
+    FactIndex(int[] columns) {
+        this.columns = columns.clone();
+        this.longKeys = columns.length == 1 ? new LongMap() : null;
+    }
+
+    /**
+     * Returns the positions of the indexed arguments.
+     *
+     * @return the positions, starting from zero
+     */
+    int[] getColumns() {
+        return columns.clone();
+    }
+
+    /**
+     * Returns the number of indexed arguments.
+     *
+     * @return the number of arguments
+     */
+    int getWidth() {
+        return columns.length;
+    }
+
+    /**
+     * Determines if the index can be used for a lookup.
+     *
+     * @param rowKeys the keys of the arguments of the goal, <code>null</code>
+     *            for the arguments that are not ground
+     * @return <code>true</code> if all indexed arguments are ground
+     */
+    boolean covers(Object[] rowKeys) {
+        for (int column : columns) {
+            if (rowKeys[column] == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a fact to the index.
+     *
+     * @param rowKeys the keys of the arguments of the fact
+     * @param id the position of the fact
+     */
+    void add(Object[] rowKeys, int id) {
+        Object key = key(rowKeys);
+        RowIds ids;
+        if (longKeys != null && key instanceof Long) {
+            ids = longKeys.getOrCreate((Long) key);
+        } else {
+            ids = keys.computeIfAbsent(key, k -> new RowIds());
+        }
+        ids.add(id);
+    }
+
+    /**
+     * Returns the positions of the facts whose indexed arguments have the
+     * keys of a goal.
+     *
+     * @param rowKeys the keys of the arguments of the goal, covering the index
+     * @return the positions of the facts or <code>null</code> if there is no
+     *         such fact
+     */
+    RowIds get(Object[] rowKeys) {
+        Object key = key(rowKeys);
+        if (longKeys != null && key instanceof Long) {
+            return longKeys.get((Long) key);
+        }
+        return keys.get(key);
+    }
+
+    private Object key(Object[] rowKeys) {
+        if (columns.length == 1) {
+            return rowKeys[columns[0]];
+        }
+        Object[] key = new Object[columns.length];
+        for (int i = 0; i < columns.length; ++i) {
+            key[i] = rowKeys[columns[i]];
+        }
+        return Arrays.asList(key);
+    }
+
+}
@@ -0,0 +1,69 @@
+package org.prolog4j.tuprolog.impl.libraries;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.prolog4j.ColumnarTable;
+
+/**
+ * The {@link FactTable}s of the predicates whose facts are kept outside of
+ * the clause database of tuProlog. A store is shared by all engines of a
+ * prover, which access it through a {@link FactStoreLibrary} each.
+ */
+public class FactStore {
+
+    private final Map<String, FactTable> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Declares a stored predicate. If the predicate has been declared already,
+     * only the indexes it does not have yet are added.
+     *
+     * @param functor the functor of the predicate
+     * @param arity the arity of the predicate
+     * @param indexes the positions of the arguments of every index, starting
+     *            from zero
+     * @return the table of the predicate
+     */
+    public FactTable declare(String functor, int arity, int[]... indexes) {
+        FactTable table = tables.computeIfAbsent(functor + "/" + arity, k -> new FactTable(functor, arity));
+        for (int[] columns : indexes) {
+            table.addIndex(columns);
+        }
+        return table;
+    }
+
+    /**
+     * Declares the predicate of a columnar table as stored, with the facts of
+     * the table.
+     *
+     * @param columns the columnar table
+     * @param indexes the positions of the arguments of every index, starting
+     *            from zero
+     * @return the table of the predicate
+     * @throws IllegalStateException if the predicate has been declared already
+     */
+    public FactTable attach(ColumnarTable columns, int[]... indexes) {
+        FactTable table = new FactTable(columns);
+        if (tables.putIfAbsent(columns.getFunctor() + "/" + columns.getArity(), table) != null) {
+            throw new IllegalStateException(
+                    "The predicate is stored already: " + columns.getFunctor() + "/" + columns.getArity());
+        }
+        for (int[] index : indexes) {
+            table.addIndex(index);
+        }
+        return table;
+    }
+
+    /**
+     * Returns the table of a stored predicate.
+     *
+     * @param functor the functor of the predicate
+     * @param arity the arity of the predicate
+     * @return the table or <code>null</code> if the predicate has not been
+     *         declared
+     */
+    public FactTable getTable(String functor, int arity) {
+        return tables.get(functor + "/" + arity);
+    }
+
+}
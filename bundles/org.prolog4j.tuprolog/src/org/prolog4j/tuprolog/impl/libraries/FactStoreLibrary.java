@@ -0,0 +1,94 @@
+package org.prolog4j.tuprolog.impl.libraries;
+
+import alice.tuprolog.Int;
+import alice.tuprolog.Library;
+import alice.tuprolog.Struct;
+import alice.tuprolog.Term;
+import alice.tuprolog.Var;
+
+/**
+ * Resolves the goals of stored predicates through the indexes of a
+ * {@link FactStore}. Every stored predicate is defined by a rule of the form
+ *
+ * <pre>
+ * p(A1, ..., An) :- '$fact_store_member'(p(A1, ..., An), 0).
+ * </pre>
+ *
+ * as built by {@link #lookupRule(String, int)}. The rules of the library
+ * fetch the facts the store has selected by the ground arguments of the goal
+ * one by one on backtracking, so tuProlog only unifies the goal with these
+ * facts instead of scanning the clauses of the predicate, and only the fact
+ * of the current answer is kept as a term.
+ */
+public class FactStoreLibrary extends Library {
+
+    private static final long serialVersionUID = 7016391851402378816L;
+
+    private static final String THEORY = String.join("\n",
+            "'$fact_store_member'(Goal, Position) :-",
+            "    fact_store_fetch(Goal, Position, Fact, Next),",
+            "    '$fact_store_member'(Goal, Fact, Next).",
+            "'$fact_store_member'(Goal, Goal, _).",
+            "'$fact_store_member'(Goal, _, Next) :-",
+            "    '$fact_store_member'(Goal, Next).",
+            "");
+
+    private final transient FactStore store;
+
+    public FactStoreLibrary(FactStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public String getTheory() {
+        return THEORY;
+    }
+
+    /**
+     * Fetches the next stored fact that may unify with a goal.
+     *
+     * @param goal the goal of a stored predicate
+     * @param position the position to start from, <code>0</code> for the
+     *            first fact
+     * @param fact the fact
+     * @param next the position of the fact following the fetched one
+     * @return <code>false</code> if there is no further fact or the predicate
+     *         of the goal is not stored
+     */
+    public boolean fact_store_fetch_4(Term goal, Term position, Term fact, Term next) {
+        Term term = goal.getTerm();
+        Term from = position.getTerm();
+        if (!(term instanceof Struct) || !(from instanceof Int)) {
+            return false;
+        }
+        Struct struct = (Struct) term;
+        FactTable table = store.getTable(struct.getName(), struct.getArity());
+        if (table == null) {
+            return false;
+        }
+        FactTable.Lookup lookup = table.lookup(struct);
+        int found = lookup.find(((Int) from).intValue());
+        if (found < 0) {
+            return false;
+        }
+        return unify(fact, lookup.getFact(found)) && unify(next, new Int(found + 1));
+    }
+
+    /**
+     * Builds the rule that resolves the goals of a stored predicate through
+     * the library.
+     *
+     * @param functor the functor of the predicate
+     * @param arity the arity of the predicate
+     * @return the rule
+     */
+    public static Struct lookupRule(String functor, int arity) {
+        Term[] args = new Term[arity];
+        for (int i = 0; i < arity; ++i) {
+            args[i] = new Var("A" + (i + 1));
+        }
+        Struct head = new Struct(functor, args);
+        return new Struct(":-", head, new Struct("$fact_store_member", head, new Int(0)));
+    }
+
+}
@@ -0,0 +1,375 @@
+package org.prolog4j.tuprolog.impl.libraries;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.prolog4j.ColumnarTable;
+
+import alice.tuprolog.Int;
+import alice.tuprolog.Number;
+import alice.tuprolog.Struct;
+import alice.tuprolog.Term;
+
+/**
+ * The ground facts of a predicate kept outside of the clause database of
+ * tuProlog, together with hash indexes on combinations of their arguments.
+ * <p>
+ * A lookup uses the widest index whose arguments are all ground in the goal
+ * and falls back to scanning all facts if there is no such index. In both
+ * cases only the facts whose arguments equal the ground arguments of the goal
+ * are selected, the rest of the goal is left to unification.
+ * <p>
+ * The facts of a table created from a {@link ColumnarTable} are read from its
+ * columns and converted to terms only when a lookup fetches them. Facts added
+ * to such a table afterwards are kept on the heap, following the facts of the
+ * columns.
+ * <p>
+ * Tables are safe for concurrent use. Lookups run in parallel and wait only
+ * while facts or indexes are added.
+ */
+public class FactTable {
+
+    /** The key of a ground compound term, distinct from the key of an atom of the same text. */
+    private static final class CompoundKey {
+
+        private final String text;
+
+        CompoundKey(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof CompoundKey && ((CompoundKey) obj).text.equals(text);
+        }
+
+        @Override
+        public int hashCode() {
+            return text.hashCode();
+        }
+    }
+
+    private final String functor;
+    private final int arity;
+    private final ColumnarTable columns;
+    private final int columnFacts;
+    private final List<Struct> facts = new ArrayList<>();
+    private final List<FactIndex> indexes = new ArrayList<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Creates an empty table.
+     *
+     * @param functor the functor of the facts
+     * @param arity the arity of the facts
+     */
+    public FactTable(String functor, int arity) {
+        if (arity < 1) {
+            throw new IllegalArgumentException("Only facts with arguments can be stored: " + functor + "/" + arity);
+        }
+        this.functor = functor;
+        this.arity = arity;
+        this.columns = null;
+        this.columnFacts = 0;
+    }
+
+    /**
+     * Creates a table holding the facts of a columnar table. The columnar
+     * table is made read-only, so that its size stays the one seen here.
+     *
+     * @param columns the columnar table
+     */
+    public FactTable(ColumnarTable columns) {
+        columns.setReadOnly();
+        this.functor = columns.getFunctor();
+        this.arity = columns.getArity();
+        this.columns = columns;
+        this.columnFacts = columns.size();
+    }
+
+    public String getFunctor() {
+        return functor;
+    }
+
+    public int getArity() {
+        return arity;
+    }
+
+    /**
+     * Returns the number of facts.
+     *
+     * @return the number of facts
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return columnFacts + facts.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds an index on a combination of arguments, unless there is one
+     * already. The facts of the table are indexed right away.
+     *
+     * @param columns the positions of the arguments, starting from zero
+     */
+    public void addIndex(int... columns) {
+        if (columns.length == 0) {
+            throw new IllegalArgumentException("An index must cover at least one argument.");
+        }
+        for (int column : columns) {
+            if (column < 0 || column >= arity) {
+                throw new IllegalArgumentException("No argument " + column + " in " + functor + "/" + arity);
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            for (FactIndex index : indexes) {
+                if (Arrays.equals(index.getColumns(), columns)) {
+                    return;
+                }
+            }
+            FactIndex index = new FactIndex(columns);
+            for (int id = 0; id < columnFacts + facts.size(); ++id) {
+                index.add(keys(id), id);
+            }
+            indexes.add(index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a fact to the table and its indexes.
+     *
+     * @param fact the fact, which must be ground
+     * @throws IllegalArgumentException if the fact does not belong to the
+     *             table or is not ground
+     */
+    public void add(Struct fact) {
+        if (!fact.getName().equals(functor) || fact.getArity() != arity) {
+            throw new IllegalArgumentException("Not a fact of " + functor + "/" + arity + ": " + fact);
+        }
+        if (!fact.isGround()) {
+            throw new IllegalArgumentException("Stored facts must be ground: " + fact);
+        }
+        Object[] rowKeys = new Object[arity];
+        for (int i = 0; i < arity; ++i) {
+            rowKeys[i] = key(fact.getArg(i));
+        }
+        lock.writeLock().lock();
+        try {
+            int id = columnFacts + facts.size();
+            facts.add(fact);
+            for (FactIndex index : indexes) {
+                index.add(rowKeys, id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Prepares the lookup of the facts that may unify with a goal.
+     *
+     * @param goal the goal, a term of the functor and arity of the table
+     * @return the lookup, which selects the facts whose arguments equal the
+     *         ground arguments of the goal, in the order they have been added
+     */
+    public Lookup lookup(Struct goal) {
+        Object[] goalKeys = new Object[arity];
+        boolean ground = false;
+        for (int i = 0; i < arity; ++i) {
+            Term arg = goal.getArg(i).getTerm();
+            if (arg.isGround()) {
+                goalKeys[i] = key(arg);
+                ground = true;
+            }
+        }
+        FactIndex best = null;
+        lock.readLock().lock();
+        try {
+            if (ground) {
+                for (FactIndex index : indexes) {
+                    if (index.covers(goalKeys) && (best == null || index.getWidth() > best.getWidth())) {
+                        best = index;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new Lookup(goalKeys, ground, best);
+    }
+
+    /**
+     * The selection of the facts that may unify with a goal. The facts are
+     * addressed by positions, which are row ids if the table is scanned and
+     * positions in the row ids of the key of the goal if an index is used.
+     * The facts are converted to terms one by one, so that a lookup selecting
+     * most of a large table does not keep all of its facts on the heap.
+     * Positions remain valid while facts are added, because facts are only
+     * appended.
+     */
+    public final class Lookup {
+
+        private final Object[] goalKeys;
+        private final boolean ground;
+        private final FactIndex index;
+        private final boolean exact;
+
+        private Lookup(Object[] goalKeys, boolean ground, FactIndex index) {
+            this.goalKeys = goalKeys;
+            this.ground = ground;
+            this.index = index;
+            this.exact = index != null && index.getWidth() == countKeys(goalKeys);
+        }
+
+        /**
+         * Finds the next selected fact.
+         *
+         * @param from the position to start from
+         * @return the position of the first selected fact at or after the
+         *         given position or <code>-1</code> if there is none
+         */
+        public int find(int from) {
+            lock.readLock().lock();
+            try {
+                if (index == null) {
+                    for (int id = from; id < columnFacts + facts.size(); ++id) {
+                        if (!ground || matches(id, goalKeys)) {
+                            return id;
+                        }
+                    }
+                } else {
+                    FactIndex.RowIds ids = index.get(goalKeys);
+                    for (int i = from; ids != null && i < ids.size(); ++i) {
+                        if (exact || matches(ids.get(i), goalKeys)) {
+                            return i;
+                        }
+                    }
+                }
+                return -1;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Returns a selected fact.
+         *
+         * @param position the position of the fact as returned by
+         *            {@link #find(int)}
+         * @return the fact
+         */
+        public Struct getFact(int position) {
+            lock.readLock().lock();
+            try {
+                return FactTable.this.getFact(index == null ? position : index.get(goalKeys).get(position));
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+    }
+
+    private static int countKeys(Object[] goalKeys) {
+        int count = 0;
+        for (Object key : goalKeys) {
+            if (key != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean matches(int id, Object[] goalKeys) {
+        for (int i = 0; i < goalKeys.length; ++i) {
+            if (goalKeys[i] != null && !hasKey(id, i, goalKeys[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares an argument of a fact with a key. Arguments in columns are
+     * compared without decoding them.
+     */
+    private boolean hasKey(int id, int column, Object key) {
+        if (id >= columnFacts) {
+            return key.equals(key(facts.get(id - columnFacts).getArg(column)));
+        }
+        switch (columns.getType(column)) {
+        case ATOM:
+            return key.equals(columns.getAtom(id, column));
+        case INTEGER:
+            return key instanceof Long && (Long) key == columns.getLong(id, column);
+        default:
+            return key instanceof Double && Double.compare((Double) key, columns.getDouble(id, column)) == 0;
+        }
+    }
+
+    private Object[] keys(int id) {
+        Object[] rowKeys = new Object[arity];
+        if (id >= columnFacts) {
+            Struct fact = facts.get(id - columnFacts);
+            for (int i = 0; i < arity; ++i) {
+                rowKeys[i] = key(fact.getArg(i));
+            }
+        } else {
+            for (int i = 0; i < arity; ++i) {
+                rowKeys[i] = columns.get(id, i);
+            }
+        }
+        return rowKeys;
+    }
+
+    /**
+     * Returns a fact, converting it to a term if it is kept in the columns.
+     */
+    private Struct getFact(int id) {
+        if (id >= columnFacts) {
+            return facts.get(id - columnFacts);
+        }
+        Term[] args = new Term[arity];
+        for (int i = 0; i < arity; ++i) {
+            switch (columns.getType(i)) {
+            case ATOM:
+                args[i] = new Struct(columns.getAtom(id, i));
+                break;
+            case INTEGER:
+                long value = columns.getLong(id, i);
+                args[i] = value == (int) value ? new Int((int) value) : new alice.tuprolog.Long(value);
+                break;
+            default:
+                args[i] = new alice.tuprolog.Double(columns.getDouble(id, i));
+            }
+        }
+        return new Struct(functor, args);
+    }
+
+    /**
+     * Returns the key of a ground term. Two ground terms have equal keys if
+     * and only if they unify. Integers are keyed by {@link Long}s, so that
+     * indexes on a single argument can keep them as primitives.
+     *
+     * @param term the term
+     * @return the key
+     */
+    static Object key(Term term) {
+        term = term.getTerm();
+        if (term instanceof Number) {
+            Number number = (Number) term;
+            return number.isInteger() ? (Object) number.longValue() : (Object) number.doubleValue();
+        }
+        if (term.isAtom()) {
+            return ((Struct) term).getName();
+        }
+        return new CompoundKey(term.toString());
+    }
+
+}
@@ -0,0 +1,101 @@
+package org.prolog4j.swicli.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.prolog4j.Compound;
+import org.prolog4j.Converter;
+import org.prolog4j.swicli.impl.PrologTermWriter;
+import org.prolog4j.swicli.impl.SWIPrologCLIConversionPolicy;
+
+public class PrologTermWriterTest {
+
+    private final PrologTermWriter writer = new PrologTermWriter(value -> {
+        throw new IllegalArgumentException();
+    });
+
+    @Test
+    public void testAtoms() {
+        assertEquals("socrates", writer.write("socrates"));
+        assertEquals("'Socrates'", writer.write("Socrates"));
+        assertEquals("'Socrates'", writer.write("'Socrates'"));
+        assertEquals("''", writer.write(""));
+        assertEquals("'[]'", writer.write("[]"));
+        assertEquals("'a b'", writer.write("a b"));
+        assertEquals("'it\\'s'", writer.write("it's"));
+        assertEquals("'don\\'t \\'x\\''", writer.write("don't 'x'"));
+        assertEquals("'\\'a\\'b\\''", writer.write("'a'b'"));
+        assertEquals("'\\'\\''", writer.write("''"));
+        assertEquals("a", writer.write("'a'"));
+        assertEquals("'a\\\\b'", writer.write("a\\b"));
+        assertEquals("'a\\nb\\tc'", writer.write("a\nb\tc"));
+        assertEquals("'\\x1\\'", writer.write("\u0001"));
+        assertEquals("'ä'", writer.write("ä"));
+    }
+
+    @Test
+    public void testNumbers() {
+        assertEquals("42", writer.write(42));
+        assertEquals("-1", writer.write(-1));
+        assertEquals("10000000000", writer.write(10000000000L));
+        assertEquals("2.5", writer.write(2.5));
+        assertEquals("1.0E10", writer.write(1e10));
+        assertEquals("1.0Inf", writer.write(Double.POSITIVE_INFINITY));
+        assertEquals("1.5NaN", writer.write(Double.NaN));
+    }
+
+    @Test
+    public void testStructures() {
+        assertEquals("[]", writer.write(Collections.emptyList()));
+        assertEquals("[1,a,'B']", writer.write(Arrays.asList(1, "a", "B")));
+        assertEquals("[1,2]", writer.write(new int[] { 1, 2 }));
+        assertEquals("[[a],[]]", writer.write(new Object[] { Arrays.asList("a"), new String[0] }));
+        assertEquals("f(a,'X',[1])", writer.write(new Compound("f", "a", "X", Arrays.asList(1))));
+        assertEquals("'Foo'(1)", writer.write(new Compound("Foo", 1)));
+        assertEquals("a", writer.write(new Compound("a")));
+    }
+
+    @Test
+    public void testLargeList() {
+        var list = new ArrayList<Integer>();
+        for (int i = 0; i < 10000; ++i) {
+            list.add(i);
+        }
+        var text = writer.write(list);
+        assertEquals(10000, text.split(",").length);
+        assertEquals("[0,1,", text.substring(0, 5));
+    }
+
+    @Test
+    public void testRegisteredConverters() {
+        var cp = new SWIPrologCLIConversionPolicy(null);
+        cp.addObjectConverter(Integer.class, new Converter<Integer>() {
+            @Override
+            public Object convert(Integer value) {
+                return null;
+            }
+        });
+        var converting = new PrologTermWriter(cp::hasDefaultObjectConverter, value -> "converted");
+        assertEquals("[a,converted,2]", converting.write(Arrays.asList("a", 1, 2L)));
+        assertEquals("f(converted,[1.5])", converting.write(new Compound("f", 3, new double[] { 1.5 })));
+        assertEquals("a", converting.write("'a'"));
+    }
+
+    @Test
+    public void testUnquote() {
+        assertEquals("Socrates", SWIPrologCLIConversionPolicy.unquote("'Socrates'"));
+        assertEquals("'a'b'", SWIPrologCLIConversionPolicy.unquote("'a'b'"));
+        assertEquals("don't 'x'", SWIPrologCLIConversionPolicy.unquote("don't 'x'"));
+        assertEquals("''", SWIPrologCLIConversionPolicy.unquote("''"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFallback() {
+        writer.write(new Object());
+    }
+
+}
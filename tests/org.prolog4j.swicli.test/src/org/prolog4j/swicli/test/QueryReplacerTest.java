@@ -0,0 +1,46 @@
+package org.prolog4j.swicli.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.prolog4j.swicli.impl.GoalTemplate;
+import org.prolog4j.swicli.impl.QueryReplacer;
+import org.prolog4j.swicli.impl.SWIPrologCLIConversionPolicy;
+
+public class QueryReplacerTest {
+
+    @Test
+    public void testPlaceholders() {
+        assertEquals("mortal(socrates).", replacer("mortal(?).").getQueryString("socrates"));
+        assertEquals("f(1,'X',a).", replacer("f(?,?X,?).").getQueryString(1, "X", "a"));
+        assertEquals("f(X, Xs, [1,2]).", replacer("f(X, Xs, ?Xs).").getQueryString(Arrays.asList(1, 2)));
+        assertEquals("f('?', 1).", replacer("f('??', ?).").getQueryString(1));
+    }
+
+    @Test
+    public void testBoundPlaceholders() {
+        var replacer = replacer("f(?A, ?B).");
+        replacer.bind("B", 2);
+        assertEquals("f(1, 2).", replacer.getQueryString(1));
+        assertEquals("f(3, 2).", replacer.getQueryString(3));
+    }
+
+    @Test
+    public void testSpecialCharacters() {
+        assertEquals("f('$1\\\\', '$0').", replacer("f(?, ?).").getQueryString("$1\\", "$0"));
+    }
+
+    @Test
+    public void testSharedTemplates() {
+        assertSame(GoalTemplate.of("human(?)."), GoalTemplate.of("human(?)."));
+        assertEquals(2, GoalTemplate.of("f(?, ??, ?X).").getSlotCount());
+    }
+
+    protected static QueryReplacer replacer(String pattern) {
+        return new QueryReplacer(new SWIPrologCLIConversionPolicy(null), null, pattern);
+    }
+
+}
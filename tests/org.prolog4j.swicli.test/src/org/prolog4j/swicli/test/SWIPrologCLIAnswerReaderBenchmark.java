@@ -0,0 +1,67 @@
+package org.prolog4j.swicli.test;
+
+import java.io.StringReader;
+
+import org.palladiosimulator.supporting.prolog.model.prolog.expressions.Expression;
+import org.palladiosimulator.supporting.prolog.parser.antlr.PrologParser;
+import org.prolog4j.swicli.impl.PrologAPIWrapper;
+import org.prolog4j.swicli.impl.SWIPrologCLIAnswerReader;
+import org.prolog4j.swicli.impl.SWIPrologCLISolution;
+
+/**
+ * Compares the time the answer reader and the Xtext parser take to read a large result set. Not a
+ * unit test, run it as a Java application:
+ *
+ * <pre>
+ * java org.prolog4j.swicli.test.SWIPrologCLIAnswerReaderBenchmark [answers]
+ * </pre>
+ */
+public final class SWIPrologCLIAnswerReaderBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    private SWIPrologCLIAnswerReaderBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        var output = new StringBuilder();
+        for (int i = 0; i < rows; ++i) {
+            output.append(String.format("X = %d,\nY = person(p%d,'Name %d',[%d,-%d.5],p%d-%d)\n;\n", i, i, i, i, i,
+                    i, i));
+        }
+        var text = output.append("false")
+            .toString();
+        var parser = new PrologAPIWrapper().getPrologApi()
+            .getParser();
+
+        System.out.println("answers  reader ms  parser ms");
+        long readerTime = Long.MAX_VALUE;
+        long parserTime = Long.MAX_VALUE;
+        for (int round = 0; round <= ROUNDS; ++round) {
+            long start = System.nanoTime();
+            if (SWIPrologCLIAnswerReader.readAnswers(text) == null) {
+                throw new IllegalStateException("The reader does not support the answers.");
+            }
+            long time = System.nanoTime() - start;
+            if (round > 0) {
+                readerTime = Math.min(readerTime, time);
+            }
+
+            start = System.nanoTime();
+            parse(parser, text);
+            time = System.nanoTime() - start;
+            if (round > 0) {
+                parserTime = Math.min(parserTime, time);
+            }
+        }
+        System.out.printf("%7d  %9.1f  %9.1f%n", rows, readerTime / 1e6, parserTime / 1e6);
+    }
+
+    private static void parse(PrologParser parser, String text) {
+        var parseResult = parser.parse(parser.getGrammarAccess()
+            .getExpression_1100_xfyRule(), new StringReader(text));
+        SWIPrologCLISolution.parseResults((Expression) parseResult.getRootASTElement());
+    }
+
+}
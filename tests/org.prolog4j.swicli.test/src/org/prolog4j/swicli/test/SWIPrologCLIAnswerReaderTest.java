@@ -0,0 +1,105 @@
+package org.prolog4j.swicli.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.palladiosimulator.supporting.prolog.model.prolog.expressions.Expression;
+import org.palladiosimulator.supporting.prolog.parser.antlr.PrologParser;
+import org.prolog4j.Compound;
+import org.prolog4j.ConversionPolicy;
+import org.prolog4j.swicli.impl.PrologAPIWrapper;
+import org.prolog4j.swicli.impl.SWIPrologCLIAnswerReader;
+import org.prolog4j.swicli.impl.SWIPrologCLIConversionPolicy;
+import org.prolog4j.swicli.impl.SWIPrologCLISolution;
+
+public class SWIPrologCLIAnswerReaderTest {
+
+    private static PrologParser parser;
+    private static ConversionPolicy cp;
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        parser = new PrologAPIWrapper().getPrologApi()
+            .getParser();
+        cp = new SWIPrologCLIConversionPolicy(parser);
+    }
+
+    @Test
+    public void testSameAnswersAsParser() {
+        assertSameAnswers("false");
+        assertSameAnswers("true\n;\ntrue\n;\nfalse");
+        assertSameAnswers("X = socrates\n;\nX = plato\n;\nfalse");
+        assertSameAnswers("X = 1,\nY = 2.5\n;\nfalse");
+        assertSameAnswers("X = 'Socrates',\nY = 'it\\'s'\n;\nfalse");
+        assertSameAnswers("X = f(a,g(1,'B c'),[x,y])\n;\nfalse");
+        assertSameAnswers("L = [1,2,3]\n;\nL = []\n;\nfalse");
+    }
+
+    @Test
+    public void testUnsupportedSyntax() {
+        assertNull(SWIPrologCLIAnswerReader.readAnswers("X = _123\n;\nfalse"));
+        assertNull(SWIPrologCLIAnswerReader.readAnswers("X = \"text\"\n;\nfalse"));
+        assertNull(SWIPrologCLIAnswerReader.readAnswers("X = [a|_]\n;\nfalse"));
+    }
+
+    @Test
+    public void testOperators() {
+        var answers = convert(SWIPrologCLIAnswerReader.readAnswers(
+                "X = a-b,\nY = -1,\nZ = f(a-1,-2.5,-a,- 1)\n;\nX = (a:-b,c),\nY = 1+2*3,\nZ = 1-2-3\n;\n"
+                        + "X = a:b:c,\nY = [-,\\+a,a=b]\n;\nfalse"));
+        assertEquals(3, answers.size());
+
+        assertEquals(new Compound("-", "a", "b"), answers.get(0)
+            .get("X"));
+        assertEquals(-1L, answers.get(0)
+            .get("Y"));
+        assertEquals(new Compound("f", new Compound("-", "a", 1L), -2.5, new Compound("-", "a"), new Compound("-", 1L)),
+                answers.get(0)
+                    .get("Z"));
+
+        assertEquals(new Compound(":-", "a", new Compound(",", "b", "c")), answers.get(1)
+            .get("X"));
+        assertEquals(new Compound("+", 1L, new Compound("*", 2L, 3L)), answers.get(1)
+            .get("Y"));
+        assertEquals(new Compound("-", new Compound("-", 1L, 2L), 3L), answers.get(1)
+            .get("Z"));
+
+        assertEquals(new Compound(":", "a", new Compound(":", "b", "c")), answers.get(2)
+            .get("X"));
+        assertEquals(Arrays.asList("-", new Compound("\\+", "a"), new Compound("=", "a", "b")), answers.get(2)
+            .get("Y"));
+    }
+
+    protected static void assertSameAnswers(String text) {
+        var readerAnswers = SWIPrologCLIAnswerReader.readAnswers(text);
+        assertNotNull(readerAnswers);
+        assertEquals(convert(parse(text)), convert(readerAnswers));
+    }
+
+    protected static List<Map<String, Object>> parse(String text) {
+        var parseResult = parser.parse(parser.getGrammarAccess()
+            .getExpression_1100_xfyRule(), new StringReader(text));
+        return SWIPrologCLISolution.parseResults((Expression) parseResult.getRootASTElement());
+    }
+
+    protected static List<Map<String, Object>> convert(List<Map<String, Object>> answers) {
+        var convertedAnswers = new ArrayList<Map<String, Object>>();
+        for (var answer : answers) {
+            var convertedAnswer = new LinkedHashMap<String, Object>();
+            answer.forEach((variable, term) -> convertedAnswer.put(variable, cp.convertTerm(term)));
+            convertedAnswers.add(convertedAnswer);
+        }
+        return convertedAnswers;
+    }
+
+}
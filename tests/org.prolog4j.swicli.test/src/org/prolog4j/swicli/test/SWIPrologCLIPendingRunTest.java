@@ -0,0 +1,82 @@
+package org.prolog4j.swicli.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.prolog4j.QueryCancelledException;
+import org.prolog4j.swicli.impl.SWIPrologCLICancellation;
+import org.prolog4j.swicli.impl.SWIPrologCLIPendingRun;
+
+/**
+ * Reads the output of processes that print answers like SWI Prolog, so no SWI Prolog installation
+ * is needed.
+ */
+public class SWIPrologCLIPendingRunTest {
+
+    @Test
+    public void testAnswersOfOneRun() throws IOException, InterruptedException, ExecutionException {
+        var run = start("printf 'X = 1\\n;\\nX = 2\\n;\\nfalse'", new SWIPrologCLICancellation(0, 0));
+        assertEquals("X = 1\n;\n", run.readFirstOutput());
+        assertFalse(run.isComplete());
+        assertEquals("X = 1\n;\n", run.getFirstOutput());
+        assertEquals("X = 2\n;\nfalse", run.readRemainingOutput());
+        assertTrue(run.isComplete());
+        assertEquals("", run.readRemainingOutput());
+    }
+
+    @Test
+    public void testNoAnswer() throws IOException, InterruptedException, ExecutionException {
+        var run = start("printf 'false'", new SWIPrologCLICancellation(0, 0));
+        assertEquals("false\n", run.readFirstOutput());
+        assertTrue(run.isComplete());
+    }
+
+    @Test
+    public void testClose() throws IOException, InterruptedException, ExecutionException {
+        var process = startProcess("printf 'X = 1\\n;\\n'; exec sleep 60");
+        var run = new SWIPrologCLIPendingRun(process, CompletableFuture.completedFuture(null),
+                new SWIPrologCLICancellation(0, 0));
+        run.readFirstOutput();
+        run.close();
+        assertTrue(process.waitFor(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCancel() throws IOException, InterruptedException, ExecutionException {
+        var run = start("printf 'X = 1\\n;\\n'; exec sleep 60", new SWIPrologCLICancellation(0, 0));
+        run.readFirstOutput();
+        CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS)
+            .execute(run::cancel);
+        try {
+            run.readRemainingOutput();
+            fail("The output of a cancelled run has been read.");
+        } catch (IllegalStateException e) {
+            try {
+                run.throwIfAborted("p(X)");
+                fail("The run has not been cancelled.");
+            } catch (QueryCancelledException expected) {
+                // expected
+            }
+        }
+    }
+
+    private static SWIPrologCLIPendingRun start(String script, SWIPrologCLICancellation cancellation)
+            throws IOException {
+        var process = startProcess(script);
+        cancellation.attach(process::destroyForcibly);
+        return new SWIPrologCLIPendingRun(process, CompletableFuture.completedFuture(null), cancellation);
+    }
+
+    private static Process startProcess(String script) throws IOException {
+        return new ProcessBuilder("sh", "-c", script).start();
+    }
+
+}
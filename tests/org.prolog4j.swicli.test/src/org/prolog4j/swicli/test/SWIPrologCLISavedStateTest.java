@@ -0,0 +1,20 @@
+package org.prolog4j.swicli.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.prolog4j.swicli.SWIPrologCLIParameters;
+
+public class SWIPrologCLISavedStateTest extends SWIPrologCLITest {
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        Map<Object, Object> parameters = new HashMap<>();
+        parameters.put(SWIPrologCLIParameters.WORKER, true);
+        parameters.put(SWIPrologCLIParameters.SAVED_STATE, true);
+        p = createProver(parameters);
+        setup();
+    }
+
+}
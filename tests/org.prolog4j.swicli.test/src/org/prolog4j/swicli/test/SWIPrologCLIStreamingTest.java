@@ -0,0 +1,54 @@
+package org.prolog4j.swicli.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.prolog4j.Query;
+import org.prolog4j.QueryCancelledException;
+import org.prolog4j.SolutionIterator;
+import org.prolog4j.swicli.SWIPrologCLIParameters;
+
+public class SWIPrologCLIStreamingTest extends SWIPrologCLITest {
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        Map<Object, Object> parameters = new HashMap<>();
+        parameters.put(SWIPrologCLIParameters.WORKER, true);
+        parameters.put(SWIPrologCLIParameters.STREAMING, true);
+        p = createProver(parameters);
+        setup();
+    }
+
+    @Test(timeout = 30000)
+    public void testCancelWhileIterating() throws InterruptedException {
+        SolutionIterator<Object> open = p.<Object>solve("human(X).").iterator();
+        assertEquals("socrates", open.next());
+        // cancelling the other goal terminates its worker, but not the one of the open cursor
+        final Query q = p.query("repeat, fail.");
+        Thread canceller = new Thread(() -> {
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                return;
+            }
+            q.cancel();
+        });
+        canceller.start();
+        try {
+            q.solve();
+            fail();
+        } catch (QueryCancelledException e) {
+            // expected
+        }
+        canceller.join();
+        assertEquals("plato", open.next());
+        assertFalse(open.hasNext());
+    }
+
+}
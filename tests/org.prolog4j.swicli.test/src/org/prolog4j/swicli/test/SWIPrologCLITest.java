@@ -1,9 +1,17 @@
 package org.prolog4j.swicli.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.junit.BeforeClass;
+import org.junit.Test;
+import org.prolog4j.Prover;
 import org.prolog4j.swicli.DefaultSWIPrologExecutableProvider;
 import org.prolog4j.swicli.SWIPrologCLIProverFactory;
 import org.prolog4j.swicli.SWIPrologExecutableProvider;
@@ -11,9 +19,24 @@ import org.prolog4j.swicli.enabler.SWIPrologEmbeddedFallbackExecutableProvider;
 import org.prolog4j.test.ProverTest;
 
 public class SWIPrologCLITest extends ProverTest {
+
+    /** The parameters of the prover of the current test class. */
+    private static Map<Object, Object> parameters;
     
     @BeforeClass
     public static void setUpBeforeClass() {
+        p = createProver(Collections.emptyMap());
+        setup();
+    }
+
+    /**
+     * Creates a prover that uses the installed executable or the embedded fallback.
+     *
+     * @param parameters the parameters of the prover
+     * @return the prover
+     */
+    protected static Prover createProver(Map<Object, Object> parameters) {
+        SWIPrologCLITest.parameters = parameters;
         var factory = new SWIPrologCLIProverFactory();
         Map<Object, Object> properties = new HashMap<>();
         properties.put(SWIPrologExecutableProvider.PRIORITY_PROPERTY, SWIPrologExecutableProvider.PRIORITY_LOWEST);
@@ -23,8 +46,12 @@ public class SWIPrologCLITest extends ProverTest {
         properties2.put(SWIPrologExecutableProvider.PRIORITY_PROPERTY, SWIPrologExecutableProvider.PRIORITY_LOWEST - 1);
         factory.addProvider(new SWIPrologEmbeddedFallbackExecutableProvider(), properties2);
         
-        p = factory.createProver();
-        setup();
+        return factory.createProver(parameters);
+    }
+
+    @Override
+    protected Prover newProver() {
+        return createProver(parameters);
     }
     
     @Override
@@ -36,6 +63,25 @@ public class SWIPrologCLITest extends ProverTest {
         }
         super.assertFailure(goal, args);
     }
-    
-    
+
+    @Test
+    public void testTheoryIsStatic() throws Exception {
+        var prover = newProver();
+        try {
+            prover.addTheory("color(red).");
+            assertEquals(Arrays.asList("red"), prover.solve("color(C).")
+                .toList());
+            // a worker loads the second clause as a source of its own
+            prover.addTheory("color(green).");
+            assertEquals(Arrays.asList("red", "green"), prover.solve("color(C).")
+                .toList());
+            assertTrue(prover.solve("predicate_property(color(_), defined).")
+                .isSuccess());
+            assertFalse(prover.solve("predicate_property(color(_), dynamic).")
+                .isSuccess());
+        } finally {
+            close(prover);
+        }
+    }
+
 }
@@ -0,0 +1,26 @@
+package org.prolog4j.swicli.test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.prolog4j.swicli.SWIPrologCLIParameters;
+
+public class SWIPrologCLITheoryCacheTest extends SWIPrologCLITest {
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        Map<Object, Object> parameters = new HashMap<>();
+        try {
+            parameters.put(SWIPrologCLIParameters.CACHE_DIRECTORY, Files.createTempDirectory("prolog4j-swicli-cache"));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        p = createProver(parameters);
+        setup();
+    }
+
+}
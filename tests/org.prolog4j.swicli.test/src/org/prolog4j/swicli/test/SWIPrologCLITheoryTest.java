@@ -0,0 +1,87 @@
+package org.prolog4j.swicli.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+
+import org.junit.Test;
+import org.prolog4j.ColumnarTable;
+import org.prolog4j.ColumnarTable.ColumnType;
+import org.prolog4j.swicli.impl.SWIPrologCLITheory;
+
+public class SWIPrologCLITheoryTest {
+
+    @Test
+    public void testTablePieces() {
+        var table = new ColumnarTable("edge", ColumnType.ATOM, ColumnType.INTEGER, ColumnType.FLOAT);
+        var size = SWIPrologCLITheory.TABLE_PIECE_FACTS + 5;
+        for (int i = 0; i < size; ++i) {
+            table.add(i == 0 ? "Start" : "n" + i, (long) i, 0.5);
+        }
+        var theory = new SWIPrologCLITheory();
+        theory.add("a(1).");
+        theory.declare(":- dynamic(edge/3).");
+        theory.addTable(table);
+        theory.update(":- assertz(a(2)).");
+
+        var pieces = new ArrayList<String>();
+        theory.getChangePieces(0, theory.getVersion())
+            .forEachRemaining(pieces::add);
+        assertEquals(4, pieces.size());
+        assertEquals("a(1)." + System.lineSeparator() + ":- dynamic(edge/3)." + System.lineSeparator(),
+                pieces.get(0));
+        assertTrue(pieces.get(1)
+            .startsWith("edge('Start',0,0.5)." + System.lineSeparator() + "edge(n1,1,0.5)."));
+        assertEquals(SWIPrologCLITheory.TABLE_PIECE_FACTS, pieces.get(1)
+            .split(System.lineSeparator()).length);
+        assertEquals(5, pieces.get(2)
+            .split(System.lineSeparator()).length);
+        assertEquals(":- assertz(a(2))." + System.lineSeparator(), pieces.get(3));
+
+        var text = theory.getText(theory.getVersion());
+        assertTrue(text.contains("edge(n" + (size - 1) + "," + (size - 1) + ",0.5)."));
+        assertFalse(theory.getChangePieces(theory.getVersion(), theory.getVersion())
+            .hasNext());
+    }
+
+    @Test
+    public void testSerializedTable() throws IOException, ClassNotFoundException {
+        var table = new ColumnarTable("edge", ColumnType.ATOM, ColumnType.INTEGER);
+        table.add("a", 1L);
+        table.add("b", 2L);
+        var theory = new SWIPrologCLITheory();
+        theory.add("a(1).");
+        theory.addTable(table);
+        try {
+            table.add("c", 3L);
+            fail();
+        } catch (IllegalStateException e) {
+            // the theory has made the table read-only
+        }
+
+        var bytes = new ByteArrayOutputStream();
+        try (var out = new ObjectOutputStream(bytes)) {
+            out.writeObject(theory);
+        }
+        SWIPrologCLITheory copy;
+        try (var in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (SWIPrologCLITheory) in.readObject();
+        }
+        assertEquals(theory.getText(theory.getVersion()), copy.getText(copy.getVersion()));
+        var pieces = new ArrayList<String>();
+        copy.getChangePieces(0, copy.getVersion())
+            .forEachRemaining(pieces::add);
+        assertEquals(1, pieces.size());
+        assertEquals("a(1)." + System.lineSeparator() + "edge(a,1)." + System.lineSeparator() + "edge(b,2)."
+                + System.lineSeparator() + System.lineSeparator(), pieces.get(0));
+    }
+
+}
@@ -0,0 +1,19 @@
+package org.prolog4j.swicli.test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.prolog4j.swicli.SWIPrologCLIParameters;
+
+public class SWIPrologCLIWorkerTest extends SWIPrologCLITest {
+
+    @BeforeClass
+    public static void setUpBeforeClass() {
+        Map<Object, Object> parameters = new HashMap<>();
+        parameters.put(SWIPrologCLIParameters.WORKER, true);
+        p = createProver(parameters);
+        setup();
+    }
+
+}
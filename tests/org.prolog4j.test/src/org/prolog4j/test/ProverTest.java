@@ -36,15 +36,30 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.prolog4j.AbstractProver;
+import org.prolog4j.AnswerCache;
+import org.prolog4j.BoundGoal;
+import org.prolog4j.ColumnarTable;
+import org.prolog4j.ColumnarTable.ColumnType;
 import org.prolog4j.Compound;
 import org.prolog4j.ConversionPolicy;
 import org.prolog4j.Converter;
+import org.prolog4j.ErrorSolution;
 import org.prolog4j.InvalidQueryException;
 import org.prolog4j.Prover;
 import org.prolog4j.Query;
+import org.prolog4j.QueryCache;
+import org.prolog4j.QueryCancelledException;
+import org.prolog4j.QueryTimeoutException;
 import org.prolog4j.Solution;
 import org.prolog4j.UnknownVariableException;
 
@@ -67,6 +82,27 @@ public abstract class ProverTest {
 		p.addTheory("mortal(X) :- human(X).", "human(socrates).", "human(plato).");
 	}
 
+	/**
+	 * Creates a prover of the tested binding that does not share the
+	 * knowledge base of {@link #p}. Tests that add facts which cannot be
+	 * retracted use it, so that the facts do not leak into the other tests.
+	 * 
+	 * @return a new prover
+	 */
+	protected abstract Prover newProver();
+
+	/**
+	 * Releases a prover created by {@link #newProver()}.
+	 * 
+	 * @param prover the prover
+	 * @throws Exception if the prover cannot be closed
+	 */
+	protected static void close(final Prover prover) throws Exception {
+		if (prover instanceof AutoCloseable) {
+			((AutoCloseable) prover).close();
+		}
+	}
+
 	/**
 	 * Asserts that the goal has a solution for the given arguments.
 	 * 
@@ -404,6 +440,88 @@ public abstract class ProverTest {
 		assertEquals(greeksExpected, greeks);
 	}
 
+	@Test
+	public void testAssertAll() {
+		List<Object[]> rows = new ArrayList<Object[]>();
+		for (int i = 0; i < 100; ++i) {
+			rows.add(new Object[] { "n" + i, i });
+		}
+		p.assertAll("bulk", rows);
+		p.assertz(new Compound("bulk", "last", Arrays.asList(1, 2)));
+		try {
+			assertEquals(101, p.solve("bulk(X, Y).").toList().size());
+			assertEquals(42, ((Number) p.solve("bulk(n42, N).").get("N")).intValue());
+			assertEquals("n99", p.solve("bulk(X, 99).").get("X"));
+			assertSuccess("bulk(last, [1, 2]).");
+		} finally {
+			for (int i = 0; i < 100; ++i) {
+				p.retract("bulk(n" + i + ", " + i + ").");
+			}
+			p.retract("bulk(last, _).");
+		}
+		assertFailure("bulk(_, _).");
+	}
+
+	@Test
+	public void testDeclareStored() throws Exception {
+		// stored facts cannot be retracted, so they are kept out of the shared prover
+		Prover prover = newProver();
+		try {
+			prover.declareStored("edge", 3, new int[] { 0 }, new int[] { 1 }, new int[] { 0, 2 });
+			List<Object[]> rows = new ArrayList<Object[]>();
+			for (int i = 0; i < 1000; ++i) {
+				rows.add(new Object[] { "n" + (i % 10), i, i % 7 });
+			}
+			prover.assertAll("edge", rows);
+			prover.assertz(new Compound("edge", "last", 1000, Arrays.asList(1, 2)));
+			assertEquals(1001, prover.solve("edge(S, T, W).").toList().size());
+			assertEquals(100, prover.solve("edge(n3, T, W).").toList().size());
+			assertEquals("n5", prover.solve("edge(S, 15, _).").get("S"));
+			assertEquals(15, prover.solve("edge(n3, T, 6).").toList().size());
+			assertEquals(143, prover.solve("edge(S, T, 4).").toList().size());
+			assertSuccess(prover.solve("edge(n5, 15, 1)."));
+			assertFailure(prover.solve("edge(n5, 15, 2)."));
+			assertFailure(prover.solve("edge(n5, 16, _)."));
+			assertSuccess(prover.solve("edge(last, 1000, [X | _]), X == 1."));
+			assertSuccess(prover.solve("edge(S, 15, W), S == n5, W == 1."));
+
+			prover.declareStored("edge", 3, new int[] { 2 });
+			assertEquals(143, prover.solve("edge(S, T, 4).").toList().size());
+		} finally {
+			close(prover);
+		}
+	}
+
+	@Test
+	public void testAddTable() throws Exception {
+		ColumnarTable table = new ColumnarTable("reading", ColumnType.ATOM, ColumnType.INTEGER, ColumnType.FLOAT);
+		for (int i = 0; i < 500; ++i) {
+			table.add("sensor" + (i % 5), (long) i, i / 4.0);
+		}
+		// the facts of a table cannot be retracted, so they are kept out of the shared prover
+		Prover prover = newProver();
+		try {
+			prover.addTable(table, new int[] { 0 }, new int[] { 1 });
+			try {
+				table.add("sensor0", 500L, 0.0);
+				fail();
+			} catch (IllegalStateException e) {
+				// the table is read-only once it has been added
+			}
+			prover.assertAll("reading", Collections.singletonList(new Object[] { "late", 500, 0.5 }));
+			assertEquals(501, prover.solve("reading(S, T, V).").toList().size());
+			assertEquals(100, prover.solve("reading(sensor3, T, V).").toList().size());
+			assertEquals("sensor2", prover.solve("reading(S, 42, _).").get("S"));
+			assertEquals(10.5, ((Number) prover.solve("reading(_, 42, V).").get("V")).doubleValue(), 0);
+			assertSuccess(prover.solve("reading(sensor4, 499, 124.75)."));
+			assertFailure(prover.solve("reading(sensor4, 499, 124.5)."));
+			assertEquals("sensor2", prover.solve("reading(S, _, 0.5).").get("S"));
+			assertEquals(Arrays.asList("sensor2", "late"), prover.solve("reading(S, _, 0.5).").on("S").toList());
+		} finally {
+			close(prover);
+		}
+	}
+
 	/**
 	 * Tests the dynamic assertion of theories.
 	 */
@@ -475,4 +593,220 @@ public abstract class ProverTest {
 	    assertTrue(List.class.isInstance(results.iterator().next()));
 	    assertEquals(Collections.emptyList(), results.iterator().next());
 	}
+
+	@Test
+	public void testTimeout() {
+		Query q = p.query("repeat, fail.").timeout(500, TimeUnit.MILLISECONDS);
+		try {
+			q.solve();
+			fail();
+		} catch (QueryTimeoutException e) {
+			assertEquals(500, e.getTimeout());
+		}
+		assertFailure(p.query("human(aristotle).").timeout(10, TimeUnit.SECONDS).solve());
+	}
+
+	@Test(timeout = 30000)
+	public void testCancel() throws InterruptedException {
+		final Query q = p.query("repeat, fail.");
+		Thread canceller = new Thread(() -> {
+			try {
+				Thread.sleep(500);
+			} catch (InterruptedException e) {
+				return;
+			}
+			q.cancel();
+		});
+		canceller.start();
+		try {
+			q.solve();
+			fail();
+		} catch (QueryTimeoutException e) {
+			fail();
+		} catch (QueryCancelledException e) {
+			// expected
+		}
+		canceller.join();
+		assertSuccess("human(socrates).");
+	}
+
+	@Test
+	public void testSolveBatch() {
+		List<Solution<Object>> solutions = p.solveBatch(Arrays.asList(
+				new BoundGoal("human(X)."),
+				new BoundGoal("mortal(?).", "plato"),
+				new BoundGoal("human(X"),
+				new BoundGoal("human(aristotle)."),
+				new BoundGoal("mortal(X).")));
+		assertEquals(5, solutions.size());
+		assertEquals(new HashSet<Object>(Arrays.asList("socrates", "plato")), solutions.get(0).toSet());
+		assertSuccess(solutions.get(1));
+		assertTrue(solutions.get(2) instanceof ErrorSolution);
+		assertFailure(solutions.get(3));
+		assertEquals(Arrays.asList("socrates", "plato"), solutions.get(4).toList());
+	}
+
+	@Test
+	public void testSolveAsync() throws InterruptedException, ExecutionException {
+		Solution<Object> solution = p.solveAsync("human(X).").get();
+		assertEquals(new HashSet<Object>(Arrays.asList("socrates", "plato")), solution.toSet());
+		assertSuccess(p.query("mortal(?).").solveAsync("socrates").get());
+		try {
+			p.solveAsync("human(X").get();
+			fail();
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof InvalidQueryException);
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void testCancelAsync() throws InterruptedException {
+		CompletableFuture<Solution<Object>> first = p.solveAsync("repeat, fail.");
+		CompletableFuture<Solution<Object>> second = p.solveAsync("repeat, fail.");
+		Thread.sleep(500);
+		// both calls share the cached query, but cancelling one does not abort the other
+		first.cancel(true);
+		Thread.sleep(500);
+		assertFalse(second.isDone());
+		second.cancel(true);
+		assertTrue(first.isCancelled());
+		assertSuccess("human(socrates).");
+	}
+
+	@Test
+	public void testStream() {
+		assertEquals("socrates", p.solve("human(X).").stream().findFirst().get());
+		assertEquals(Arrays.asList("socrates"), p.solve("human(X).").stream().limit(1).collect(Collectors.toList()));
+		assertEquals(Arrays.asList("socrates", "plato"), p.solve("human(X).").stream().collect(Collectors.toList()));
+		assertEquals(0, p.solve("human(aristotle).").stream().count());
+	}
+
+	@Test(timeout = 30000)
+	public void testPublisher() throws InterruptedException {
+		List<Object> values = Collections.synchronizedList(new ArrayList<Object>());
+		CountDownLatch completed = new CountDownLatch(1);
+		p.solve("human(X).").publisher().subscribe(new Flow.Subscriber<Object>() {
+			private Flow.Subscription subscription;
+
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				this.subscription = subscription;
+				subscription.request(1);
+			}
+
+			@Override
+			public void onNext(Object item) {
+				values.add(item);
+				subscription.request(1);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				completed.countDown();
+			}
+
+			@Override
+			public void onComplete() {
+				completed.countDown();
+			}
+		});
+		completed.await();
+		assertEquals(Arrays.asList("socrates", "plato"), values);
+	}
+
+	@Test
+	public void testQueryCache() {
+		if (!(p instanceof AbstractProver)) {
+			return;
+		}
+		QueryCache cache = ((AbstractProver) p).getQueryCache();
+		long hits = cache.getHits();
+		long misses = cache.getMisses();
+		Solution<Object> first = p.solve("X = f(?).", "a");
+		Solution<Object> second = p.solve("X = f(?).", "b");
+		assertEquals(misses + 1, cache.getMisses());
+		assertEquals(hits + 1, cache.getHits());
+		assertEquals(new Compound("f", "a"), first.get("X"));
+		assertEquals(new Compound("f", "b"), second.get("X"));
+		assertSuccess(p.solve("mortal(?).", "plato"));
+		assertFailure(p.solve("mortal(?).", "zeus"));
+	}
+
+	@Test
+	public void testAnswerCache() {
+		AnswerCache cache = new AnswerCache(100, 10000);
+		p.setAnswerCache(cache);
+		try {
+			assertEquals(Arrays.asList("socrates", "plato"), p.solve("mortal(X).").toList());
+			assertEquals(Arrays.asList("socrates", "plato"), p.solve("mortal(X).").toList());
+			assertSuccess(p.solve("mortal(?).", "plato"));
+			assertFailure(p.solve("mortal(?).", "zeus"));
+			assertFailure(p.solve("mortal(?).", "zeus"));
+			assertEquals(2, cache.getHits());
+			assertEquals(3, cache.getMisses());
+			assertEquals(3, cache.size());
+
+			p.assertz("human(zeus).");
+			try {
+				assertEquals(0, cache.size());
+				assertSuccess(p.solve("mortal(?).", "zeus"));
+			} finally {
+				p.retract("human(zeus).");
+			}
+			assertFailure(p.solve("mortal(?).", "zeus"));
+			assertEquals(2, cache.getInvalidations());
+		} finally {
+			p.setAnswerCache(null);
+		}
+	}
+
+	@Test
+	public void testAnswerCacheConverters() {
+		final ConversionPolicy cp = p.getConversionPolicy();
+		class Thinker {
+			private final String name;
+
+			Thinker(String name) {
+				this.name = name;
+			}
+		}
+		cp.addObjectConverter(Thinker.class, new Converter<Thinker>() {
+			@Override
+			public Object convert(Thinker thinker) {
+				return cp.term(thinker.name);
+			}
+		});
+		AnswerCache cache = new AnswerCache(100, 10000);
+		p.setAnswerCache(cache);
+		try {
+			Thinker thinker = new Thinker("plato");
+			assertSuccess(p.solve("mortal(?).", thinker));
+			assertEquals(1, cache.size());
+			// the same argument is converted to another term by the new converter
+			cp.addObjectConverter(Thinker.class, new Converter<Thinker>() {
+				@Override
+				public Object convert(Thinker thinker) {
+					return cp.term("zeus");
+				}
+			});
+			assertFailure(p.solve("mortal(?).", thinker));
+			assertEquals(1, cache.getInvalidations());
+		} finally {
+			p.setAnswerCache(null);
+		}
+	}
+
+	@Test
+	public void testAnswerCacheEviction() {
+		AnswerCache cache = new AnswerCache(1, 10000);
+		p.setAnswerCache(cache);
+		try {
+			assertSuccess(p.solve("mortal(?).", "plato"));
+			assertSuccess(p.solve("mortal(?).", "socrates"));
+			assertEquals(1, cache.size());
+			assertEquals(1, cache.getEvictions());
+		} finally {
+			p.setAnswerCache(null);
+		}
+	}
 }
@@ -0,0 +1,131 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.tuprolog.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.prolog4j.Converter;
+import org.prolog4j.IProverFactory;
+import org.prolog4j.Prover;
+import org.prolog4j.tuprolog.TuPrologProverFactory;
+import org.prolog4j.tuprolog.impl.TuPrologConversionPolicy;
+
+import alice.tuprolog.Struct;
+
+/**
+ * JUnit test for the converter lookup of the tuProlog conversion policy.
+ */
+public class TuPrologConversionPolicyTest {
+
+	@SuppressWarnings("rawtypes")
+	@Test
+	public void testRegistrationOverridesLookup() {
+		TuPrologConversionPolicy cp = new TuPrologConversionPolicy();
+		assertEquals("[a,b]", cp.convertObject(new ArrayList<Object>(Arrays.asList("a", "b"))).toString());
+		cp.addObjectConverter(ArrayList.class, new Converter<ArrayList>() {
+			@Override
+			public Object convert(ArrayList value) {
+				return new Struct("array_list");
+			}
+		});
+		assertEquals("array_list", cp.convertObject(new ArrayList<Object>()).toString());
+		assertEquals("[a]", cp.convertObject(Arrays.asList("a")).toString());
+	}
+
+	@Test(timeout = 30000)
+	public void testConcurrentConversion() throws Exception {
+		final TuPrologConversionPolicy cp = new TuPrologConversionPolicy();
+		final List<Object> values = Arrays.<Object>asList(1, 2.5, "a", Arrays.asList("b", 3));
+		final CountDownLatch started = new CountDownLatch(4);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> conversions = new ArrayList<Future<?>>();
+			for (int t = 0; t < 4; ++t) {
+				conversions.add(executor.submit(() -> {
+					started.countDown();
+					for (int i = 0; i < 20000; ++i) {
+						assertEquals(values.toString(), cp.convertTerm(cp.convertObject(values)).toString());
+					}
+					return null;
+				}));
+			}
+			started.await();
+			for (int i = 0; i < 1000; ++i) {
+				cp.addTermConverter("f" + i, new Converter<Object>() {
+					@Override
+					public Object convert(Object term) {
+						return null;
+					}
+				});
+			}
+			for (Future<?> conversion : conversions) {
+				conversion.get();
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void testConversionWhileRegistering() throws Exception {
+		final TuPrologConversionPolicy cp = new TuPrologConversionPolicy();
+		final List<Object> values = Arrays.<Object>asList("a", 1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// the registrations hold the lock of the policy, the conversions must not wait for it
+			synchronized (cp) {
+				Future<Object> conversion = executor.submit(() -> cp.convertTerm(cp.convertObject(values)));
+				assertEquals(values.toString(), conversion.get(10, TimeUnit.SECONDS).toString());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testSharedConversionPolicy() {
+		TuPrologProverFactory factory = new TuPrologProverFactory();
+		Prover p1 = factory.createProver(Collections.<Object, Object>singletonMap(IProverFactory.SHARED_CONVERSION_POLICY, true));
+		Prover p2 = factory.createProver(Collections.<Object, Object>singletonMap(IProverFactory.SHARED_CONVERSION_POLICY, "true"));
+		Prover p3 = factory.createProver();
+		assertSame(factory.getSharedConversionPolicy(), p1.getConversionPolicy());
+		assertSame(p1.getConversionPolicy(), p2.getConversionPolicy());
+		assertNotSame(p1.getConversionPolicy(), p3.getConversionPolicy());
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ *
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.tuprolog.test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.prolog4j.Prover;
+import org.prolog4j.tuprolog.TuPrologParameters;
+import org.prolog4j.tuprolog.TuPrologProverFactory;
+
+/**
+ * Measures how the throughput of a pooled tuProlog prover scales with the
+ * number of engines. Every pool is driven by as many threads as it has
+ * engines, so the throughput should grow with the size of the pool up to the
+ * number of cores. Not a unit test, run it as a Java application:
+ *
+ * <pre>
+ * java org.prolog4j.tuprolog.test.TuPrologPooledProverBenchmark [goals per thread] [maximal engines]
+ * </pre>
+ */
+public final class TuPrologPooledProverBenchmark {
+
+	private static final String THEORY = "app([], L, L).\n" //
+			+ "app([H|T], L, [H|R]) :- app(T, L, R).\n" //
+			+ "nrev([], []).\n" //
+			+ "nrev([H|T], R) :- nrev(T, RT), app(RT, [H], R).\n" //
+			+ "range(N, N, [N]) :- !.\n" //
+			+ "range(M, N, [M|Ns]) :- M < N, M1 is M + 1, range(M1, N, Ns).\n";
+
+	private static final String GOAL = "range(1, 30, L), nrev(L, R).";
+
+	private static final int ROUNDS = 5;
+
+	private TuPrologPooledProverBenchmark() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int goals = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+		int cores = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		double single = 0;
+		System.out.println("engines  goals/s  speedup");
+		for (int size = 1; size <= cores; size *= 2) {
+			double throughput = measure(size, goals);
+			if (size == 1) {
+				single = throughput;
+			}
+			System.out.printf("%7d  %7.0f  %7.2f%n", size, throughput, throughput / single);
+		}
+	}
+
+	/**
+	 * Returns the best throughput of several rounds, the first round warms up
+	 * the engines.
+	 */
+	private static double measure(int size, int goals) throws Exception {
+		Map<Object, Object> parameters = new HashMap<Object, Object>();
+		parameters.put(TuPrologParameters.POOL_SIZE, size);
+		Prover prover = new TuPrologProverFactory().createProver(parameters);
+		prover.addTheory(THEORY);
+		ExecutorService executor = Executors.newFixedThreadPool(size);
+		try {
+			double best = 0;
+			for (int round = 0; round <= ROUNDS; ++round) {
+				long start = System.nanoTime();
+				List<Future<?>> threads = new ArrayList<Future<?>>();
+				for (int t = 0; t < size; ++t) {
+					threads.add(executor.submit(() -> {
+						for (int i = 0; i < goals; ++i) {
+							if (!prover.solve(GOAL).isSuccess()) {
+								throw new IllegalStateException(GOAL);
+							}
+						}
+					}));
+				}
+				for (Future<?> thread : threads) {
+					thread.get();
+				}
+				double throughput = size * goals / ((System.nanoTime() - start) / 1e9);
+				if (round > 0) {
+					best = Math.max(best, throughput);
+				}
+			}
+			return best;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
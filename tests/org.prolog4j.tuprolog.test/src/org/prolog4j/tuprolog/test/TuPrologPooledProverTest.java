@@ -0,0 +1,192 @@
+/* 
+ * Copyright (c) 2010 Miklos Espak
+ * All rights reserved.
+ * 
+ * Permission is hereby granted, free  of charge, to any person obtaining
+ * a  copy  of this  software  and  associated  documentation files  (the
+ * "Software"), to  deal in  the Software without  restriction, including
+ * without limitation  the rights to  use, copy, modify,  merge, publish,
+ * distribute,  sublicense, and/or sell  copies of  the Software,  and to
+ * permit persons to whom the Software  is furnished to do so, subject to
+ * the following conditions:
+ * 
+ * The  above  copyright  notice  and  this permission  notice  shall  be
+ * included in all copies or substantial portions of the Software.
+ * 
+ * THE  SOFTWARE IS  PROVIDED  "AS  IS", WITHOUT  WARRANTY  OF ANY  KIND,
+ * EXPRESS OR  IMPLIED, INCLUDING  BUT NOT LIMITED  TO THE  WARRANTIES OF
+ * MERCHANTABILITY,    FITNESS    FOR    A   PARTICULAR    PURPOSE    AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE
+ * LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION
+ * OF CONTRACT, TORT OR OTHERWISE,  ARISING FROM, OUT OF OR IN CONNECTION
+ * WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.prolog4j.tuprolog.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.prolog4j.Prover;
+import org.prolog4j.Query;
+import org.prolog4j.test.ProverTest;
+import org.prolog4j.tuprolog.TuPrologParameters;
+import org.prolog4j.tuprolog.TuPrologProverFactory;
+import org.prolog4j.tuprolog.impl.TuPrologPooledProver;
+
+/**
+ * JUnit test for the tuProlog binding with a pool of engines. Inherits the
+ * common test class.
+ */
+public class TuPrologPooledProverTest extends ProverTest {
+
+	private static final int POOL_SIZE = 4;
+	private static final int THREADS = 8;
+	private static final int GOALS = 200;
+
+	@BeforeClass
+	public static void setUpBeforeClass() {
+		p = createPooledProver();
+
+		setup();
+	}
+
+	@Override
+	protected Prover newProver() {
+		return createPooledProver();
+	}
+
+	private static Prover createPooledProver() {
+		Map<Object, Object> parameters = new HashMap<Object, Object>();
+		parameters.put(TuPrologParameters.POOL_SIZE, POOL_SIZE);
+		return new TuPrologProverFactory().createProver(parameters);
+	}
+
+	@Test
+	public void testPoolSize() {
+		assertTrue(p instanceof TuPrologPooledProver);
+		assertEquals(POOL_SIZE, ((TuPrologPooledProver) p).getPoolSize());
+	}
+
+	@Test(timeout = 60000)
+	public void testConcurrentSolve() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			for (int round = 0; round < 3; ++round) {
+				p.assertz("pooled(?).", round);
+				List<Future<List<Integer>>> results = new ArrayList<Future<List<Integer>>>();
+				for (int i = 0; i < GOALS; ++i) {
+					results.add(executor.submit(() -> toInts(p.solve("pooled(X).").toList())));
+				}
+				List<Integer> expected = new ArrayList<Integer>();
+				for (int i = 0; i <= round; ++i) {
+					expected.add(i);
+				}
+				for (Future<List<Integer>> result : results) {
+					assertEquals(expected, result.get());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+			for (int i = 0; i < 3; ++i) {
+				p.retract("pooled(" + i + ").");
+			}
+		}
+		assertFailure("pooled(_).");
+	}
+
+	@Test(timeout = 60000)
+	public void testConcurrentModification() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> solvers = new ArrayList<Future<?>>();
+			for (int t = 0; t < THREADS - 1; ++t) {
+				solvers.add(executor.submit(() -> {
+					for (int i = 0; i < GOALS; ++i) {
+						// every engine applies the facts in the same order
+						List<Integer> counters = toInts(p.solve("counter(X).").toList());
+						for (int j = 0; j < counters.size(); ++j) {
+							assertEquals(j, counters.get(j).intValue());
+						}
+					}
+				}));
+			}
+			for (int i = 0; i < 50; ++i) {
+				p.assertz("counter(?).", i);
+			}
+			for (Future<?> solver : solvers) {
+				solver.get();
+			}
+			assertEquals(50, p.solve("counter(X).").toList().size());
+		} finally {
+			executor.shutdownNow();
+			for (int i = 0; i < 50; ++i) {
+				p.retract("counter(" + i + ").");
+			}
+		}
+	}
+
+	@Test
+	public void testGoalModifications() {
+		p.addTheory("remember(X) :- assertz(seen(X)).");
+		try {
+			assertSuccess("remember(on).");
+			assertSuccess("add_theory('topic(logic).').");
+			// the idle engines are taken in turn, so every engine solves one of the goals
+			for (int i = 0; i < POOL_SIZE; ++i) {
+				assertSuccess("seen(on), topic(logic).");
+			}
+			assertSuccess("retract(seen(on)).");
+			assertSuccess("retract(topic(logic)).");
+			for (int i = 0; i < POOL_SIZE; ++i) {
+				assertFailure("seen(_).");
+				assertFailure("topic(_).");
+			}
+		} finally {
+			p.retract("remember(X) :- assertz(seen(X)).");
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testSharedQuery() throws Exception {
+		Query query = p.query("member(X, ?List), X > ?Min.").bind("Min", 2);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<List<Integer>>> results = new ArrayList<Future<List<Integer>>>();
+			for (int i = 0; i < GOALS; ++i) {
+				List<Integer> list = Arrays.asList(i, i + 1, i + 2);
+				results.add(executor.submit(() -> toInts(query.<Object>solve(list).on("X").toList())));
+			}
+			for (int i = 0; i < GOALS; ++i) {
+				List<Integer> expected = new ArrayList<Integer>();
+				for (int x = i; x <= i + 2; ++x) {
+					if (x > 2) {
+						expected.add(x);
+					}
+				}
+				assertEquals(expected, results.get(i).get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static List<Integer> toInts(List<Object> values) {
+		List<Integer> ints = new ArrayList<Integer>(values.size());
+		for (Object value : values) {
+			ints.add(((Number) value).intValue());
+		}
+		return ints;
+	}
+
+}
@@ -23,9 +23,28 @@
  */
 package org.prolog4j.tuprolog.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 import org.junit.BeforeClass;
+import org.junit.Test;
+import org.prolog4j.ColumnarTable;
+import org.prolog4j.ColumnarTable.ColumnType;
+import org.prolog4j.Compound;
+import org.prolog4j.Prover;
+import org.prolog4j.Solution;
+import org.prolog4j.SolutionIterator;
 import org.prolog4j.test.ProverTest;
 import org.prolog4j.tuprolog.TuPrologProverFactory;
+import org.prolog4j.tuprolog.impl.TuPrologProver;
 
 /**
  * JUnit test for the jTrolog binding. Inherits the common test class.
@@ -37,4 +56,146 @@ public class TuPrologProverTest extends ProverTest {
 		
 		setup();
 	}
+
+	@Override
+	protected Prover newProver() {
+		return new TuPrologProverFactory().createProver();
+	}
+
+	@Test
+	public void testInterleavedSolutions() {
+		SolutionIterator<Object> humans = p.<Object>solve("human(X).").iterator();
+		SolutionIterator<Object> mortals = p.<Object>solve("mortal(Y).").iterator();
+		assertEquals("socrates", humans.next());
+		assertEquals("socrates", mortals.next());
+		assertEquals("plato", humans.next());
+		assertEquals("plato", mortals.next());
+		assertFalse(humans.hasNext());
+		assertFalse(mortals.hasNext());
+	}
+
+	@Test
+	public void testNestedSolutions() {
+		List<String> pairs = new ArrayList<String>();
+		for (Object x : p.<Object>solve("human(X).")) {
+			for (Object y : p.<Object>solve("mortal(Y), Y \\== ?.", x)) {
+				pairs.add(x + "-" + y);
+			}
+		}
+		assertEquals(Arrays.asList("socrates-plato", "plato-socrates"), pairs);
+	}
+
+	@Test
+	public void testAssertWhileIterating() {
+		List<Object> humans = new ArrayList<Object>();
+		try {
+			for (Object x : p.<Object>solve("human(X).")) {
+				humans.add(x);
+				p.assertz("philosopher(?).", x);
+			}
+			assertEquals(Arrays.asList("socrates", "plato"), humans);
+			assertEquals(humans, p.<Object>solve("philosopher(X).").toList());
+			// the facts are added to every engine, including the ones of open solutions
+			SolutionIterator<Object> open = p.<Object>solve("human(X).").iterator();
+			assertEquals("socrates", open.next());
+			assertEquals(humans, p.<Object>solve("philosopher(X).").toList());
+			assertTrue(open.hasNext());
+		} finally {
+			p.retract("philosopher(socrates).");
+			p.retract("philosopher(plato).");
+		}
+		assertFailure("philosopher(_).");
+	}
+
+	@Test
+	public void testGoalModificationsWhileIterating() {
+		p.addTheory("remember(X) :- assertz(seen(X)).");
+		try {
+			// the goals are solved on other engines or on the engine taken back from the open solution
+			SolutionIterator<Object> open = p.<Object>solve("human(X).").iterator();
+			assertEquals("socrates", open.next());
+			assertSuccess("remember(on).");
+			assertSuccess("add_theory('topic(logic).').");
+			assertEquals("plato", open.next());
+			assertFalse(open.hasNext());
+			assertSuccess("seen(on).");
+			assertSuccess("topic(logic).");
+			open = p.<Object>solve("human(X).").iterator();
+			assertEquals("socrates", open.next());
+			assertSuccess("retract(seen(on)).");
+			assertSuccess("retract(topic(logic)).");
+			assertEquals("plato", open.next());
+			assertFailure("seen(_).");
+			assertFailure("topic(_).");
+		} finally {
+			p.retract("remember(X) :- assertz(seen(X)).");
+		}
+	}
+
+	@Test
+	public void testEngineReuse() throws Exception {
+		Prover prover = newProver();
+		try {
+			prover.addTheory("human(socrates).", "human(plato).");
+			for (int i = 0; i < 10; ++i) {
+				assertEquals("socrates", prover.solve("human(X).").get());
+				assertTrue(prover.solve("human(X).").isSuccess());
+				assertEquals("socrates", prover.<Object>solve("human(X).").stream().findFirst().get());
+			}
+			// the engine of the first solution is taken back and the search is repeated on demand
+			Solution<Object> first = prover.solve("human(X).");
+			assertEquals(Arrays.asList("socrates", "plato"), prover.solve("human(Y).").toList());
+			assertEquals(Arrays.asList("socrates", "plato"), first.toList());
+			assertEquals(1, ((TuPrologProver) prover).getEngineCount());
+		} finally {
+			close(prover);
+		}
+	}
+
+	@Test
+	public void testStoredFacts() throws Exception {
+		Prover prover = newProver();
+		try {
+			prover.declareStored("stock", 2, new int[] { 1 });
+			List<Object[]> rows = new ArrayList<Object[]>();
+			for (int i = 0; i < 100; ++i) {
+				rows.add(new Object[] { "item" + i, i % 5 });
+			}
+			prover.assertAll("stock", rows);
+			// the facts are not in the clause database, only the lookup rule is
+			assertFailure(prover.solve("clause(stock(_, _), true)."));
+			// the goal takes the engine back from the open solution, which repeats its search
+			SolutionIterator<Object> open = prover.<Object>solve("stock(X, 3).").iterator();
+			assertEquals("item3", open.next());
+			assertEquals(20, prover.solve("stock(X, 0).").toList().size());
+			assertEquals("item8", open.next());
+			try {
+				prover.assertz(new Compound("stock", prover.getConversionPolicy().term("X"), 1));
+				fail();
+			} catch (IllegalArgumentException e) {
+			}
+		} finally {
+			close(prover);
+		}
+	}
+
+	@Test
+	public void testMappedTable() throws Exception {
+		Path file = Files.createTempFile("p4j", ".columns");
+		Prover prover = newProver();
+		try (ColumnarTable table = ColumnarTable.mapped(file, "visit", ColumnType.ATOM, ColumnType.INTEGER)) {
+			int size = ColumnarTable.CHUNK_ROWS + 1000;
+			for (int i = 0; i < size; ++i) {
+				table.add("page" + (i % 1000), (long) i);
+			}
+			prover.addTable(table, new int[] { 0 }, new int[] { 1 });
+			assertEquals("page535", prover.solve("visit(P, ?).", size - 1).get("P"));
+			assertEquals(67, prover.solve("visit(page7, T).").toList().size());
+			assertSuccess(prover.solve("visit(page536, 536)."));
+			assertFailure(prover.solve("visit(page536, 537)."));
+		} finally {
+			close(prover);
+			Files.delete(file);
+		}
+	}
 }